@@ -40,6 +40,7 @@ public class FPRework extends JavaPlugin {
     @Override
     public void onDisable() {
         this.providerManager.onDisable();
+        this.fpLogger.close();
     }
 
 }
@@ -0,0 +1,135 @@
+package de.fantasypixel.rework.framework;
+
+import de.fantasypixel.rework.framework.tools.ComponentIndexProcessor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The component-index written by the {@link ComponentIndexProcessor} at compile time, holding the class- and field-names (not the classes themselves).
+ */
+class ComponentIndex {
+
+    /**
+     * The classes per annotation.
+     */
+    private final Map<String, Set<String>> annotatedTypes;
+
+    /**
+     * The fields (as {@code CLASS FIELD}) per annotation.
+     */
+    private final Map<String, Set<String>> annotatedFields;
+
+    /**
+     * The direct subtypes per supertype.
+     */
+    private final Map<String, Set<String>> subTypes;
+    private final int size;
+    private final int classCount;
+
+    private ComponentIndex(@Nonnull BufferedReader reader) throws IOException {
+        this.annotatedTypes = new HashMap<>();
+        this.annotatedFields = new HashMap<>();
+        this.subTypes = new HashMap<>();
+
+        var entries = 0;
+        var classes = -1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            var parts = line.split(" ");
+            switch (parts[0]) {
+                case "type" -> this.annotatedTypes.computeIfAbsent(parts[1], key -> new HashSet<>()).add(parts[2]);
+                case "field" -> this.annotatedFields.computeIfAbsent(parts[1], key -> new HashSet<>()).add(parts[2] + " " + parts[3]);
+                case "subtype" -> this.subTypes.computeIfAbsent(parts[1], key -> new HashSet<>()).add(parts[2]);
+                case "classes" -> {
+                    classes = Integer.parseInt(parts[1]);
+                    continue;
+                }
+                default -> {
+                    continue;
+                }
+            }
+
+            entries++;
+        }
+
+        this.size = entries;
+        this.classCount = classes;
+    }
+
+    /**
+     * Reads the index from the classpath.
+     * @return the index or null if the jar doesn't contain one (for example when the classes weren't compiled by maven)
+     */
+    @Nullable
+    static ComponentIndex load(@Nonnull ClassLoader classLoader) throws IOException {
+        var resource = classLoader.getResourceAsStream(ComponentIndexProcessor.INDEX_FILE);
+        if (resource == null)
+            return null;
+
+        try (var reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
+            return new ComponentIndex(reader);
+        }
+    }
+
+    /**
+     * Like the classpath-scanning, the subtypes of annotated classes are included.
+     * @return the names of the classes having the annotation
+     */
+    @Nonnull
+    Set<String> getTypesAnnotatedWith(@Nonnull String annotationName) {
+        var types = new HashSet<String>();
+        for (var type : this.annotatedTypes.getOrDefault(annotationName, Set.of())) {
+            types.add(type);
+            types.addAll(this.getSubTypesOf(type));
+        }
+
+        return types;
+    }
+
+    /**
+     * @return the fields having the annotation as {@code CLASS FIELD}
+     */
+    @Nonnull
+    Set<String> getFieldsAnnotatedWith(@Nonnull String annotationName) {
+        return this.annotatedFields.getOrDefault(annotationName, Set.of());
+    }
+
+    /**
+     * @return the names of all classes extending or implementing the type, directly or indirectly
+     */
+    @Nonnull
+    Set<String> getSubTypesOf(@Nonnull String typeName) {
+        var result = new HashSet<String>();
+        var pending = new ArrayDeque<String>();
+        pending.add(typeName);
+
+        while (!pending.isEmpty()) {
+            for (var subType : this.subTypes.getOrDefault(pending.poll(), Set.of()))
+                if (result.add(subType))
+                    pending.add(subType);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the amount of entries in the index
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the amount of top-level classes compiled with the index, -1 if the index doesn't contain it
+     */
+    int getClassCount() {
+        return this.classCount;
+    }
+
+}
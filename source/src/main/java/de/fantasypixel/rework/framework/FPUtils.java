@@ -3,37 +3,143 @@ package de.fantasypixel.rework.framework;
 import com.google.gson.Gson;
 import de.fantasypixel.rework.FPRework;
 import de.fantasypixel.rework.framework.log.FPLogger;
+import de.fantasypixel.rework.framework.tools.ComponentIndexProcessor;
 import org.reflections.Reflections;
 import org.reflections.scanners.Scanners;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.jar.JarFile;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
 
 /**
  * Holds utility methods for the framework. Mainly focused on reflections but can also be used for misc purposes.
  * <br>
- * Note: When adding new reflection methods, make sure to add the corresponding {@link Scanners} in the constructor.
+ * The annotated classes, fields and subtypes are looked up in the {@link ComponentIndex} written at compile time. Only if the jar doesn't contain one
+ * or it doesn't cover all compiled classes (for example after a partial compile by an IDE), the package is scanned with {@link Reflections} instead.
+ * <br>
+ * Note: When adding new reflection methods, make sure to add the corresponding entries to the {@link ComponentIndexProcessor} and the {@link Scanners} in the constructor.
  */
 public class FPUtils {
 
     private final String CLASS_NAME = FPUtils.class.getSimpleName();
     private final FPLogger logger;
-    private final Reflections reflections;
+    private final ClassLoader classLoader;
+
+    /**
+     * Null if the component-index couldn't be loaded, {@link #reflections} is used then.
+     */
+    @Nullable private final ComponentIndex componentIndex;
+    @Nullable private final Reflections reflections;
 
     public FPUtils(@Nonnull FPLogger logger) {
         this.logger = logger;
-        this.reflections = new Reflections(
-                "de.fantasypixel.rework",
-                Scanners.TypesAnnotated,
-                Scanners.FieldsAnnotated,
-                Scanners.SubTypes.filterResultsBy(s -> true)
-        );
+        this.classLoader = FPUtils.class.getClassLoader();
+        this.componentIndex = this.loadComponentIndex();
+        this.reflections = this.componentIndex == null
+                ? new Reflections(
+                        "de.fantasypixel.rework",
+                        Scanners.TypesAnnotated,
+                        Scanners.FieldsAnnotated,
+                        Scanners.SubTypes.filterResultsBy(s -> true)
+                )
+                : null;
+    }
+
+    @Nullable
+    private ComponentIndex loadComponentIndex() {
+        try {
+            var index = ComponentIndex.load(this.classLoader);
+            if (index == null) {
+                this.logger.warning("No component-index found, scanning the classes instead.");
+                return null;
+            }
+
+            var compiledClasses = this.countCompiledClasses();
+            if (compiledClasses >= 0 && index.getClassCount() != compiledClasses) {
+                this.logger.warning("The component-index covers {0} of {1} classes, scanning the classes instead.", index.getClassCount(), compiledClasses);
+                return null;
+            }
+
+            this.logger.debug("Loaded the component-index with {0} entries.", index.size());
+            return index;
+        } catch (IOException ex) {
+            this.logger.warning("Couldn't read the component-index, scanning the classes instead.");
+            this.logger.error(CLASS_NAME, "loadComponentIndex", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Counts the top-level classes of the plugin's package in the jar (or class-directory) without loading them, to validate the component-index.
+     * @return the amount of classes or -1 if the classes' location can't be listed
+     */
+    private int countCompiledClasses() {
+        var packagePath = ComponentIndexProcessor.INDEXED_PACKAGE.replace('.', '/');
+        Predicate<String> isTopLevelClass = name -> name.startsWith(packagePath) && name.endsWith(".class") && !name.contains("$") && !name.endsWith("package-info.class");
+
+        try {
+            var codeSource = FPUtils.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null)
+                return -1;
+
+            var location = Path.of(codeSource.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                try (var files = Files.walk(location)) {
+                    return (int) files
+                            .filter(Files::isRegularFile)
+                            .map(file -> location.relativize(file).toString().replace(File.separatorChar, '/'))
+                            .filter(isTopLevelClass)
+                            .count();
+                }
+            }
+
+            try (var jar = new JarFile(location.toFile())) {
+                return (int) jar.stream().map(ZipEntry::getName).filter(isTopLevelClass).count();
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException | FileSystemNotFoundException ex) {
+            this.logger.debug("Couldn''t list the compiled classes to validate the component-index: {0}", ex.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Loads the classes named in the component-index. Classes that can't be loaded (the index is outdated) are skipped.
+     */
+    @Nonnull
+    private Set<Class<?>> loadClasses(@Nonnull Set<String> classNames) {
+        var classes = new HashSet<Class<?>>();
+        for (var className : classNames) {
+            var clazz = this.loadClass(className);
+            if (clazz != null)
+                classes.add(clazz);
+        }
+
+        return classes;
+    }
+
+    @Nullable
+    private Class<?> loadClass(@Nonnull String className) {
+        try {
+            return Class.forName(className, false, this.classLoader);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            this.logger.warning("Couldn't load class {0} of the component-index.", className);
+            return null;
+        }
     }
 
     /**
@@ -42,6 +148,9 @@ public class FPUtils {
      */
     @Nonnull
     public Set<Class<?>> getClassesAnnotatedWith(@Nonnull Class<? extends Annotation> annotationClass) {
+        if (this.componentIndex != null)
+            return this.loadClasses(this.componentIndex.getTypesAnnotatedWith(annotationClass.getName()));
+
         return this.reflections.getTypesAnnotatedWith(annotationClass);
     }
 
@@ -65,14 +174,50 @@ public class FPUtils {
      */
     @Nonnull
     public Set<Field> getFieldsAnnotatedWith(@Nonnull Class<? extends Annotation> annotationClass) {
-        return this.reflections.getFieldsAnnotatedWith(annotationClass)
-                .stream()
+        var fields = this.componentIndex != null
+                ? this.loadFields(this.componentIndex.getFieldsAnnotatedWith(annotationClass.getName()))
+                : this.reflections.getFieldsAnnotatedWith(annotationClass);
+
+        return fields.stream()
                 .filter(e -> !e.isSynthetic())
                 .peek(field -> field.setAccessible(true))
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Loads the fields named in the component-index (as {@code CLASS FIELD}).
+     */
+    @Nonnull
+    private Set<Field> loadFields(@Nonnull Set<String> fieldNames) {
+        var fields = new HashSet<Field>();
+        for (var fieldName : fieldNames) {
+            var parts = fieldName.split(" ");
+            var clazz = this.loadClass(parts[0]);
+            if (clazz == null)
+                continue;
+
+            try {
+                fields.add(clazz.getDeclaredField(parts[1]));
+            } catch (NoSuchFieldException ex) {
+                this.logger.warning("Couldn't find field {0} of the component-index.", fieldName);
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * @return all classes extending or implementing the class, directly or indirectly
+     */
+    @SuppressWarnings("unchecked")
     public <T> Set<Class<? extends T>> getClassesExtending(@Nonnull Class<T> superClass) {
+        if (this.componentIndex != null) {
+            var classes = new HashSet<Class<? extends T>>();
+            this.loadClasses(this.componentIndex.getSubTypesOf(superClass.getName()))
+                    .forEach(clazz -> classes.add((Class<? extends T>) clazz));
+            return classes;
+        }
+
         return this.reflections.getSubTypesOf(superClass);
     }
 
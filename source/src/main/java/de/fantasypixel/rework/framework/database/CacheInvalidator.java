@@ -0,0 +1,122 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the repository-caches of multiple nodes (plugin-instances) sharing one database consistent.
+ * <br><br>
+ * The repositories record their committed changes, which are sent to the other nodes by the {@link InvalidationTransport} with the next {@link #poll()}.
+ * The invalidations received from the other nodes refresh only the affected entities, see {@link DataRepoProvider#refresh(Collection)}.
+ * The poll is run every {@link DatabaseConfig#getInvalidationInterval()} ticks.
+ */
+public class CacheInvalidator {
+
+    private final static String CLASS_NAME = CacheInvalidator.class.getSimpleName();
+
+    private final FPRework plugin;
+    private final Map<String, List<DataRepoProvider<?>>> repositories;
+    private final Queue<InvalidationTransport.Invalidation> outgoing;
+    private volatile InvalidationTransport transport;
+
+    public CacheInvalidator(@Nonnull FPRework plugin, @Nonnull InvalidationTransport transport) {
+        this.plugin = plugin;
+        this.repositories = new ConcurrentHashMap<>();
+        this.outgoing = new ConcurrentLinkedQueue<>();
+        this.transport = transport;
+    }
+
+    /**
+     * Registers a repository, so the invalidations of its table are applied to it.
+     */
+    public void register(@Nonnull String table, @Nonnull DataRepoProvider<?> repository) {
+        this.repositories.computeIfAbsent(table, key -> new CopyOnWriteArrayList<>()).add(repository);
+    }
+
+    /**
+     * Records a committed change of this node, to be sent with the next poll.
+     * @param entityId the id of the changed entity, {@link InvalidationTransport.Invalidation#ALL} if the whole table changed
+     */
+    public void record(@Nonnull String table, int entityId) {
+        this.outgoing.add(new InvalidationTransport.Invalidation(table, entityId));
+    }
+
+    /**
+     * Replaces the transport, the previous one is closed.
+     */
+    public void setTransport(@Nonnull InvalidationTransport transport) {
+        var previous = this.transport;
+        this.transport = transport;
+        previous.close();
+    }
+
+    /**
+     * Sends the recorded changes of this node and applies the invalidations received from the others.
+     */
+    public synchronized void poll() {
+        this.send();
+
+        List<InvalidationTransport.Invalidation> received;
+        try {
+            received = this.transport.receive();
+        } catch (Exception ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "poll", ex);
+            return;
+        }
+
+        if (received.isEmpty())
+            return;
+
+        // the ids are collected per table, so every repository is refreshed once
+        var changedIds = new HashMap<String, Set<Integer>>();
+        var changedTables = new HashSet<String>();
+
+        for (var invalidation : received) {
+            if (invalidation.entityId() == InvalidationTransport.Invalidation.ALL)
+                changedTables.add(invalidation.table());
+            else
+                changedIds.computeIfAbsent(invalidation.table(), key -> new HashSet<>()).add(invalidation.entityId());
+        }
+
+        changedTables.forEach(table -> {
+            changedIds.remove(table);
+            this.repositories.getOrDefault(table, List.of()).forEach(DataRepoProvider::clearCache);
+        });
+
+        changedIds.forEach((table, ids) -> this.repositories.getOrDefault(table, List.of()).forEach(repository -> repository.refresh(ids)));
+
+        this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE", "Applied {0} cache-invalidations of other nodes.", received.size());
+    }
+
+    /**
+     * Sends the remaining changes and closes the transport.
+     */
+    public synchronized void close() {
+        this.send();
+        this.transport.close();
+    }
+
+    private void send() {
+        var invalidations = new ArrayList<InvalidationTransport.Invalidation>();
+
+        InvalidationTransport.Invalidation invalidation;
+        while ((invalidation = this.outgoing.poll()) != null)
+            invalidations.add(invalidation);
+
+        if (invalidations.isEmpty())
+            return;
+
+        try {
+            this.transport.send(invalidations);
+        } catch (Exception ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "send", ex);
+            this.outgoing.addAll(invalidations);
+        }
+    }
+
+}
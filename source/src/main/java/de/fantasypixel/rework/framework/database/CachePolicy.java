@@ -0,0 +1,24 @@
+package de.fantasypixel.rework.framework.database;
+
+/**
+ * How the {@link DataRepoProvider} of an {@link Entity} caches its entities, see {@link Entity#cachePolicy()}.
+ */
+public enum CachePolicy {
+
+    /**
+     * The whole table is loaded into the cache when the repository is created (up to {@link Entity#maxCacheEntries()}).
+     * If the table fits into the cache, lookups that find nothing in the cache don't ask the database.
+     */
+    EAGER,
+
+    /**
+     * Entities are cached when they are read or written.
+     */
+    LAZY,
+
+    /**
+     * Nothing is cached, every lookup asks the database.
+     */
+    NONE
+
+}
@@ -0,0 +1,214 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * The default {@link InvalidationTransport}, which needs nothing but the shared database.
+ * Every node appends its changes to the table {@value #CHANGE_LOG_TABLE} and polls the rows of the other nodes above its high-water mark.
+ * <br><br>
+ * Ids are assigned before the insert is committed, so a row can become visible after rows with higher ids. Ids skipped by a poll are therefore
+ * looked up again by the following polls, until they are found or {@link #GAP_TIMEOUT} passed (ids of rolled back inserts are never used).
+ * Rows older than {@link #RETENTION} are deleted.
+ * <br><br>
+ * With SQLite, the writes are handed to the {@link SqliteWriter} like the writes of the repositories.
+ */
+public class ChangeLogTransport implements InvalidationTransport {
+
+    private final static String CLASS_NAME = ChangeLogTransport.class.getSimpleName();
+    private final static String CHANGE_LOG_TABLE = "fp_change_log";
+    private final static int MAX_ROWS_PER_STATEMENT = 500;
+    private final static int MAX_TRACKED_GAPS = 1000;
+    private final static long GAP_TIMEOUT = 30_000;
+    private final static long RETENTION = 10 * 60_000;
+    private final static long PRUNE_INTERVAL = 60_000;
+
+    private final FPRework plugin;
+    private final ConnectionPool connectionPool;
+    @Nullable private final SqliteWriter sqliteWriter;
+    private final DatabaseType databaseType;
+    private final String nodeId;
+
+    /**
+     * Skipped ids mapped by the time they were first missed.
+     */
+    private final Map<Long, Long> gaps;
+    private long highWaterMark;
+    private long lastPrune;
+
+    /**
+     * Creates the change-log table if necessary and starts at its current end, as the caches were just loaded.
+     * @throws SQLException if the table couldn't be created or read
+     */
+    public ChangeLogTransport(@Nonnull FPRework plugin, @Nonnull ConnectionPool connectionPool, @Nullable SqliteWriter sqliteWriter, @Nonnull DatabaseConfig config) throws SQLException {
+        this.plugin = plugin;
+        this.connectionPool = connectionPool;
+        this.sqliteWriter = sqliteWriter;
+        this.databaseType = config.getType();
+        this.nodeId = config.getNodeId();
+        this.gaps = new LinkedHashMap<>();
+
+        this.executeWrite(conn -> {
+            this.createTable(conn);
+            return null;
+        });
+
+        try (
+                var conn = this.connectionPool.getConnection();
+                var statement = conn.prepareStatement(String.format("SELECT COALESCE(MAX(id), 0) FROM %s", CHANGE_LOG_TABLE));
+                var rs = statement.executeQuery()
+        ) {
+            rs.next();
+            this.highWaterMark = rs.getLong(1);
+        }
+
+        this.plugin.getFpLogger().debug("Created change-log transport for node {0}, starting after change {1}.", this.nodeId, this.highWaterMark);
+    }
+
+    private void createTable(@Nonnull Connection conn) throws SQLException {
+        // sqlite's AUTOINCREMENT never reuses the ids of pruned rows
+        var idColumn = switch (this.databaseType) {
+            case MYSQL -> "id bigint NOT NULL AUTO_INCREMENT PRIMARY KEY";
+            case POSTGRESQL -> "id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY";
+            case SQLITE -> "id integer PRIMARY KEY AUTOINCREMENT";
+        };
+
+        var statementStr = String.format(
+                "CREATE TABLE IF NOT EXISTS %s (%s, node_id varchar(64) NOT NULL, table_name varchar(64) NOT NULL, entity_id int NOT NULL, created_at bigint NOT NULL)",
+                CHANGE_LOG_TABLE,
+                idColumn
+        );
+
+        if (this.databaseType == DatabaseType.MYSQL)
+            statementStr += " ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin";
+
+        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Executing SQL: \"{0}\"", statementStr);
+        try (var statement = conn.createStatement()) {
+            statement.execute(statementStr);
+        }
+    }
+
+    @Override
+    public void send(@Nonnull List<Invalidation> invalidations) throws SQLException {
+        if (invalidations.isEmpty())
+            return;
+
+        var now = System.currentTimeMillis();
+
+        this.executeWrite(conn -> {
+            for (var from = 0; from < invalidations.size(); from += MAX_ROWS_PER_STATEMENT) {
+                var chunk = invalidations.subList(from, Math.min(invalidations.size(), from + MAX_ROWS_PER_STATEMENT));
+                var statementStr = String.format(
+                        "INSERT INTO %s (node_id, table_name, entity_id, created_at) VALUES %s",
+                        CHANGE_LOG_TABLE,
+                        String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?, ?)"))
+                );
+
+                try (var statement = conn.prepareStatement(statementStr)) {
+                    var index = 1;
+                    for (var invalidation : chunk) {
+                        statement.setString(index++, this.nodeId);
+                        statement.setString(index++, invalidation.table());
+                        statement.setInt(index++, invalidation.entityId());
+                        statement.setLong(index++, now);
+                    }
+
+                    statement.executeUpdate();
+                }
+            }
+
+            return null;
+        });
+
+        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Sent {0} cache-invalidations.", invalidations.size());
+    }
+
+    @Nonnull
+    @Override
+    public synchronized List<Invalidation> receive() throws SQLException {
+        var result = new ArrayList<Invalidation>();
+        var now = System.currentTimeMillis();
+
+        try (var conn = this.connectionPool.getConnection()) {
+            this.receiveGaps(conn, result, now);
+
+            var statementStr = String.format("SELECT id, node_id, table_name, entity_id FROM %s WHERE id > ? ORDER BY id", CHANGE_LOG_TABLE);
+            try (var statement = conn.prepareStatement(statementStr)) {
+                statement.setLong(1, this.highWaterMark);
+
+                try (var rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        var id = rs.getLong(1);
+
+                        for (var gap = this.highWaterMark + 1; gap < id && this.gaps.size() < MAX_TRACKED_GAPS; gap++)
+                            this.gaps.put(gap, now);
+
+                        this.highWaterMark = id;
+                        if (!this.nodeId.equals(rs.getString(2)))
+                            result.add(new Invalidation(rs.getString(3), rs.getInt(4)));
+                    }
+                }
+            }
+        }
+
+        if (now - this.lastPrune >= PRUNE_INTERVAL) {
+            this.lastPrune = now;
+
+            this.executeWrite(conn -> {
+                try (var statement = conn.prepareStatement(String.format("DELETE FROM %s WHERE created_at < ?", CHANGE_LOG_TABLE))) {
+                    statement.setLong(1, now - RETENTION);
+                    return statement.executeUpdate();
+                }
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * Executes a write on the {@link SqliteWriter} or, for other databases, on a pooled connection.
+     */
+    private <T> T executeWrite(@Nonnull SqliteWriter.Write<T> write) throws SQLException {
+        if (this.sqliteWriter != null)
+            return this.sqliteWriter.execute(write);
+
+        try (var conn = this.connectionPool.getConnection()) {
+            return write.execute(conn);
+        }
+    }
+
+    /**
+     * Looks up the rows of the skipped ids, drops the gaps that are found or timed out.
+     */
+    private void receiveGaps(@Nonnull Connection conn, @Nonnull List<Invalidation> result, long now) throws SQLException {
+        this.gaps.values().removeIf(missedAt -> now - missedAt > GAP_TIMEOUT);
+        if (this.gaps.isEmpty())
+            return;
+
+        var gapIds = new ArrayList<>(this.gaps.keySet());
+        var statementStr = String.format(
+                "SELECT id, node_id, table_name, entity_id FROM %s WHERE id IN (%s)",
+                CHANGE_LOG_TABLE,
+                String.join(", ", Collections.nCopies(gapIds.size(), "?"))
+        );
+
+        try (var statement = conn.prepareStatement(statementStr)) {
+            for (var i = 0; i < gapIds.size(); i++)
+                statement.setLong(i + 1, gapIds.get(i));
+
+            try (var rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    this.gaps.remove(rs.getLong(1));
+                    if (!this.nodeId.equals(rs.getString(2)))
+                        result.add(new Invalidation(rs.getString(3), rs.getInt(4)));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package de.fantasypixel.rework.framework.database;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares a database-index over multiple columns of an {@link Entity}, created by the {@link SchemaMigrator}.
+ * Single columns are indexed with {@link Indexed}.
+ * <br><br>
+ * The order of the columns matters: the index also serves lookups of its first columns only.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(CompositeIndex.List.class)
+public @interface CompositeIndex {
+
+    /**
+     * The names of the indexed columns.
+     */
+    String[] columns();
+
+    /**
+     * Whether the index is a unique constraint.
+     */
+    boolean unique() default false;
+
+    /**
+     * The name of the index, generated from the table- and column-names if empty.
+     */
+    String name() default "";
+
+    /**
+     * Holds multiple {@link CompositeIndex} annotations of one entity.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface List {
+        CompositeIndex[] value();
+    }
+
+}
@@ -0,0 +1,273 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of database-connections that is shared by all {@link DataRepoProvider} instances.
+ * <br><br>
+ * Connections handed out by the pool are proxies, calling {@link Connection#close()} on them returns the physical connection to the pool.
+ * Idle connections are validated before they are handed out again if they were idle for longer than {@link DatabaseConfig#getPoolValidationInterval()}.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final static String CLASS_NAME = ConnectionPool.class.getSimpleName();
+
+    /**
+     * A snapshot of the pool's statistics.
+     * @param maxSize the maximum amount of physical connections
+     * @param open the amount of currently open physical connections
+     * @param idle the amount of connections waiting in the pool
+     * @param active the amount of connections currently borrowed
+     * @param waiting the amount of threads currently waiting for a connection
+     * @param created the total amount of physical connections created
+     * @param discarded the total amount of physical connections closed by the pool (invalid or on shutdown)
+     * @param borrowed the total amount of successful borrows
+     * @param timeouts the total amount of borrows that timed out
+     */
+    public record Stats(int maxSize, int open, int idle, int active, int waiting, long created, long discarded, long borrowed, long timeouts) {}
+
+    /**
+     * A physical connection in the pool and the time it was returned.
+     */
+    private record IdleConnection(Connection connection, long idleSince) {}
+
+    private final FPRework plugin;
+    private final DatabaseConfig config;
+    private final String host;
+    private final String port;
+    private final BlockingDeque<IdleConnection> idleConnections;
+    private final Semaphore permits;
+    private final AtomicBoolean closed;
+    private final AtomicInteger openConnections;
+    private final AtomicInteger waitingThreads;
+    private final AtomicLong createdConnections;
+    private final AtomicLong discardedConnections;
+    private final AtomicLong borrowedConnections;
+    private final AtomicLong timedOutBorrows;
+
+    public ConnectionPool(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config) {
+        this(plugin, config, config.getHost(), config.getPort());
+    }
+
+    /**
+     * Creates a pool of connections to the given endpoint instead of the config's host, used for the read-replicas (see {@link ReplicaRouter}).
+     */
+    public ConnectionPool(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config, @Nonnull String host, @Nonnull String port) {
+        this.plugin = plugin;
+        this.config = config;
+        this.host = host;
+        this.port = port;
+        this.idleConnections = new LinkedBlockingDeque<>();
+        this.permits = new Semaphore(Math.max(1, config.getPoolSize()), true);
+        this.closed = new AtomicBoolean(false);
+        this.openConnections = new AtomicInteger();
+        this.waitingThreads = new AtomicInteger();
+        this.createdConnections = new AtomicLong();
+        this.discardedConnections = new AtomicLong();
+        this.borrowedConnections = new AtomicLong();
+        this.timedOutBorrows = new AtomicLong();
+
+        this.plugin.getFpLogger().debug(
+                "Created connection-pool with a size of {0}, an acquire-timeout of {1}ms and a validation-interval of {2}ms.",
+                config.getPoolSize(),
+                config.getPoolTimeout(),
+                config.getPoolValidationInterval()
+        );
+    }
+
+    /**
+     * Borrows a connection from the pool. If no connection is idle and the pool isn't exhausted, a new physical connection is established.
+     * The returned connection must be closed to return it to the pool.
+     * @throws SQLTimeoutException if no connection became available within {@link DatabaseConfig#getPoolTimeout()}
+     * @throws SQLException if the pool is closed or a physical connection couldn't be established
+     */
+    @Nonnull
+    public Connection getConnection() throws SQLException {
+        if (this.closed.get())
+            throw new SQLException("The connection-pool is closed.");
+
+        this.waitingThreads.incrementAndGet();
+        try {
+            if (!this.permits.tryAcquire(this.config.getPoolTimeout(), TimeUnit.MILLISECONDS)) {
+                this.timedOutBorrows.incrementAndGet();
+                throw new SQLTimeoutException(String.format("Couldn't acquire a database-connection within %dms.", this.config.getPoolTimeout()));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database-connection.", ex);
+        } finally {
+            this.waitingThreads.decrementAndGet();
+        }
+
+        try {
+            var physicalConnection = this.takeIdleConnection();
+            if (physicalConnection == null)
+                physicalConnection = this.createConnection();
+
+            this.borrowedConnections.incrementAndGet();
+            return this.wrap(physicalConnection);
+        } catch (RuntimeException ex) {
+            this.permits.release();
+            throw new SQLException("Couldn't establish a database-connection.", ex);
+        }
+    }
+
+    /**
+     * Takes the most recently returned idle connection that is still valid.
+     * @return the connection or null if no valid idle connection is available
+     */
+    private Connection takeIdleConnection() {
+        IdleConnection idleConnection;
+
+        while ((idleConnection = this.idleConnections.pollFirst()) != null) {
+            var idleTime = System.currentTimeMillis() - idleConnection.idleSince();
+
+            if (idleTime < this.config.getPoolValidationInterval() || this.isValid(idleConnection.connection()))
+                return idleConnection.connection();
+
+            this.plugin.getFpLogger().debugGrouped("DATABASE_POOL", "Discarding invalid connection that was idle for {0}ms.", idleTime);
+            this.discard(idleConnection.connection());
+        }
+
+        return null;
+    }
+
+    private boolean isValid(@Nonnull Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(Math.max(1, (int) (this.config.getPoolTimeout() / 1000)));
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    @Nonnull
+    private Connection createConnection() {
+        var connection = DataRepoProvider.getConnection(this.plugin, this.config, this.host, this.port);
+        this.openConnections.incrementAndGet();
+        this.createdConnections.incrementAndGet();
+        this.plugin.getFpLogger().debugGrouped("DATABASE_POOL", "Opened a new database-connection ({0}/{1}).", this.openConnections.get(), this.config.getPoolSize());
+        return connection;
+    }
+
+    private void discard(@Nonnull Connection connection) {
+        this.openConnections.decrementAndGet();
+        this.discardedConnections.incrementAndGet();
+
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "discard", ex);
+        }
+    }
+
+    /**
+     * Gives a physical connection back to the pool. Uncommitted work is rolled back and the auto-commit mode is restored.
+     */
+    private void release(@Nonnull Connection connection) {
+        try {
+            if (this.closed.get() || connection.isClosed()) {
+                this.discard(connection);
+                return;
+            }
+
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            this.idleConnections.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "release", ex);
+            this.discard(connection);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Wraps the physical connection into a proxy that returns it to the pool when closed.
+     */
+    @Nonnull
+    private Connection wrap(@Nonnull Connection physicalConnection) {
+        var released = new AtomicBoolean(false);
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        if (released.compareAndSet(false, true))
+                            this.release(physicalConnection);
+                        yield null;
+                    }
+                    case "isClosed" -> released.get() || physicalConnection.isClosed();
+                    case "unwrap" -> physicalConnection.unwrap((Class<?>) args[0]);
+                    case "isWrapperFor" -> physicalConnection.isWrapperFor((Class<?>) args[0]);
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Pooled" + physicalConnection;
+                    default -> {
+                        if (released.get())
+                            throw new SQLException("The connection was already returned to the pool.");
+
+                        try {
+                            yield method.invoke(physicalConnection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                }
+        );
+    }
+
+    /**
+     * @return a snapshot of the pool's current statistics
+     */
+    @Nonnull
+    public Stats getStats() {
+        var idle = this.idleConnections.size();
+        var open = this.openConnections.get();
+
+        return new Stats(
+                this.config.getPoolSize(),
+                open,
+                idle,
+                Math.max(0, open - idle),
+                this.waitingThreads.get(),
+                this.createdConnections.get(),
+                this.discardedConnections.get(),
+                this.borrowedConnections.get(),
+                this.timedOutBorrows.get()
+        );
+    }
+
+    /**
+     * Closes all idle connections and refuses further borrows. Borrowed connections are closed once they are returned.
+     */
+    @Override
+    public void close() {
+        if (!this.closed.compareAndSet(false, true))
+            return;
+
+        IdleConnection idleConnection;
+        while ((idleConnection = this.idleConnections.pollFirst()) != null)
+            this.discard(idleConnection.connection());
+
+        this.plugin.getFpLogger().debug("Closed the connection-pool. Stats: {0}", this.getStats());
+    }
+
+}
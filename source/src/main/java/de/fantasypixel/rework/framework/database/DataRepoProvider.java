@@ -4,14 +4,22 @@ import de.fantasypixel.rework.FPRework;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An endpoint to the mysql-database. Supports creating, editing, querying and deleting of data.
@@ -21,26 +29,144 @@ public class DataRepoProvider<E> {
     
     private final static String CLASS_NAME = DataRepoProvider.class.getSimpleName();
 
+    /**
+     * The maximum amount of placeholders in one statement (SQLite's default limit, MySQL and PostgreSQL allow 65535).
+     */
+    private final static int MAX_BIND_PARAMETERS = 32766;
+
+    /**
+     * The maximum amount of rows inserted by one statement of {@link #insertAll(Collection)}.
+     */
+    private final static int MAX_BULK_INSERT_ROWS = 500;
+
+    /**
+     * The amount of rows fetched at once by streaming reads and the page-size of keyset-paginated reads, see {@link #forEach(Query, Consumer)}.
+     */
+    private final static int STREAM_BATCH_SIZE = 1000;
+
+    /**
+     * The reads that fill the {@link #cache} or the {@link #negativeCache}, which must not miss rows a lagging read-replica doesn't have yet,
+     * as the caches would keep the stale result. Only the uncached reads go to the replicas.
+     */
+    private final static Set<String> PRIMARY_READS = Set.of("preload", "get", "getMultiple", "getOrCreate", "exists");
+
+    /**
+     * The result of {@link #getOrCreate(Query, Supplier)}.
+     * @param entity the found or created entity, null if an error occurred
+     * @param created whether the entity was created
+     */
+    public record GetOrCreateResult<T>(@Nullable T entity, boolean created) {}
+
+    /**
+     * An update that is about to be flushed, holds the values read from the entity at the time of the flush.
+     */
+    private record PendingUpdate<T>(int id, T entity, Object[] values) {}
+
     private final Class<E> typeParameterClass;
-    private final Set<E> cache;
+    private final EntityModel<E> model;
+    private final EntityCache<E> cache;
+    private final NegativeCache<E> negativeCache;
+
+    /**
+     * The store of {@link LinkEntity link-entities}, used instead of the {@link #cache}. Null for other entities.
+     */
+    @Nullable private final LinkStore linkStore;
+    @Nullable private final EntityModel.Column leftColumn;
+    @Nullable private final EntityModel.Column rightColumn;
     private final FPRework plugin;
     private final String tableName;
     private final DatabaseConfig config;
+    private final ConnectionPool connectionPool;
+    private final DatabaseExecutor executor;
+    private final CachePolicy cachePolicy;
+
+    /**
+     * The queued write-behind updates mapped by the entity-id, see {@link #queueUpdate(Object)}.
+     */
+    private final Map<Integer, E> pendingUpdates;
+    private final Object flushLock;
 
-    public DataRepoProvider(@Nonnull Class<E> typeParameterClass, @Nonnull FPRework plugin, @Nonnull DatabaseConfig config) {
+    /**
+     * The amount of rows in the table, -1 if unknown. Set by the preload and kept up to date by the writes of this repository, see {@link #getEntryCount()}.
+     */
+    private final AtomicInteger entryCount;
+    private final DatabaseMetrics.RepositoryMetrics metrics;
+    private final TransactionManager transactionManager;
+    private final EntityChangePublisher changePublisher;
+    @Nullable private final CacheInvalidator invalidator;
+    @Nullable private final ReplicaRouter replicaRouter;
+    @Nullable private final SqliteWriter sqliteWriter;
+
+    /**
+     * The time until which the reads go to the primary, as the read-replicas might not have the last write yet.
+     */
+    private volatile long primaryPinnedUntil;
+
+    public DataRepoProvider(@Nonnull Class<E> typeParameterClass, @Nonnull DatabaseContext context) {
         this.typeParameterClass = typeParameterClass;
-        this.cache = new HashSet<>();
-        this.plugin = plugin;
-        this.config = config;
+        this.plugin = context.getPlugin();
+        this.config = context.getConfig();
+        this.connectionPool = context.getConnectionPool();
+        this.executor = context.getExecutor();
+        this.transactionManager = context.getTransactionManager();
+        this.changePublisher = context.getChangePublisher();
+        this.invalidator = context.getInvalidator();
+        this.replicaRouter = context.getReplicaRouter();
+        this.sqliteWriter = context.getSqliteWriter();
+        this.pendingUpdates = new LinkedHashMap<>();
+        this.flushLock = new Object();
+        this.entryCount = new AtomicInteger(-1);
 
         var entityAnnotation = typeParameterClass.getAnnotation(Entity.class);
+        this.tableName = entityAnnotation != null ? entityAnnotation.tableName() : "ERROR";
+        this.cachePolicy = entityAnnotation != null ? entityAnnotation.cachePolicy() : CachePolicy.NONE;
+        this.model = new EntityModel<>(typeParameterClass, this.tableName, this.config.getType());
+
+        var linkAnnotation = typeParameterClass.getAnnotation(LinkEntity.class);
+        this.leftColumn = linkAnnotation != null ? this.getLinkColumn(linkAnnotation.left()) : null;
+        this.rightColumn = linkAnnotation != null ? this.getLinkColumn(linkAnnotation.right()) : null;
+
+        if (this.leftColumn != null && this.rightColumn != null && this.model.getValueColumns().size() == 2)
+            this.linkStore = new LinkStore();
+        else {
+            this.linkStore = null;
+
+            if (linkAnnotation != null)
+                this.plugin.getFpLogger().warning(
+                        "The link-entity {0} must only have the int-columns {1} and {2} besides the id. The entities are cached normally.",
+                        typeParameterClass.getSimpleName(),
+                        linkAnnotation.left(),
+                        linkAnnotation.right()
+                );
+        }
+
+        // link-entities are kept in the link-store, which always holds the whole table
+        var useCache = this.cachePolicy != CachePolicy.NONE && this.linkStore == null;
+        this.cache = new EntityCache<>(
+                this.model,
+                this.plugin.getFpLogger(),
+                useCache ? entityAnnotation.maxCacheEntries() : 0,
+                useCache ? entityAnnotation.expireAfterAccess() * 1000 : 0
+        );
+
+        this.negativeCache = new NegativeCache<>(
+                this.model,
+                useCache ? this.config.getNegativeCacheTtl() : 0,
+                this.config.getNegativeCacheSize()
+        );
+
+        this.metrics = context.getMetrics().register(typeParameterClass.getSimpleName(), this.cache::getStats, this.negativeCache::getHits);
+
+        if (this.invalidator != null)
+            this.invalidator.register(this.tableName, this);
+
         if (entityAnnotation != null) {
-            this.tableName = entityAnnotation.tableName();
-            if (this.config.isPreload())
+            if (this.linkStore != null)
+                this.preloadLinks();
+            else if (this.cachePolicy == CachePolicy.EAGER)
                 this.preload();
         }
         else {
-            this.tableName = "ERROR";
             this.plugin.getFpLogger().warning(
                     "Data-provider couldn't be setup correctly with typeParameterClass {0} as the passed class doesn't have Entity annotated. The server will shutdown.",
                     typeParameterClass.getName()
@@ -107,26 +233,27 @@ public class DataRepoProvider<E> {
             return 0;
         }
 
-        try {
-            var idField = entity.getClass().getDeclaredField("id");
-            idField.setAccessible(true);
-            var idValue = idField.get(entity);
-            return (idValue instanceof Integer) ? (Integer) idValue : 0;
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "getId", e);
-            return 0;
-        }
+        var id = this.model.getId(entity);
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Establishes a physical database connection. Repositories borrow their connections from the {@link ConnectionPool} instead.
+     */
+    @Nonnull
+    static Connection getConnection(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config) {
+        return getConnection(plugin, config, config.getHost(), config.getPort());
     }
 
     /**
-     * Establishes a database connection.
+     * Establishes a physical database connection to the given endpoint (like a read-replica) with the credentials of the config.
      */
     @Nonnull
-    private static Connection getConnection(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config) {
+    static Connection getConnection(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config, @Nonnull String host, @Nonnull String port) {
         try {
             return switch (config.getType()) {
-                case MYSQL, POSTGRESQL -> DriverManager.getConnection(String.format("jdbc:%s://%s:%s/%s", config.getType().name().toLowerCase(), config.getHost(), config.getPort(), config.getName()), config.getUser(), config.getPassword());
-                case SQLITE -> DriverManager.getConnection(String.format("jdbc:sqlite:%s", config.getName()));
+                case MYSQL, POSTGRESQL -> DriverManager.getConnection(String.format("jdbc:%s://%s:%s/%s", config.getType().name().toLowerCase(), host, port, config.getName()), config.getUser(), config.getPassword());
+                case SQLITE -> DriverManager.getConnection(String.format("jdbc:sqlite:%s", config.getName()), getSqliteProperties(config));
             };
         } catch (Exception ex) {
             plugin.getFpLogger().warning("Could not establish db-connection!");
@@ -136,126 +263,546 @@ public class DataRepoProvider<E> {
     }
 
     /**
-     * Establishes a connection to the database that can be used for queries.
-     * @see DataRepoProvider#getConnection(FPRework, DatabaseConfig)
+     * The pragmas of every SQLite connection. The WAL-journal lets reads continue while the {@link SqliteWriter} commits,
+     * with it the synchronous-mode NORMAL only syncs on checkpoints. Transactions take the write-lock when they begin,
+     * so they wait (up to the busy-timeout) instead of failing when they start writing after a read.
+     */
+    @Nonnull
+    private static Properties getSqliteProperties(@Nonnull DatabaseConfig config) {
+        var properties = new Properties();
+        properties.setProperty("journal_mode", "WAL");
+        properties.setProperty("synchronous", config.getSqliteSynchronous());
+        properties.setProperty("cache_size", String.valueOf(-config.getSqliteCacheSize()));
+        properties.setProperty("mmap_size", String.valueOf(config.getSqliteMmapSize()));
+        properties.setProperty("busy_timeout", String.valueOf(config.getPoolTimeout()));
+        properties.setProperty("transaction_mode", "IMMEDIATE");
+        return properties;
+    }
+
+    /**
+     * Gets the connection of the {@link Transaction} running on the current thread or borrows one from the {@link ConnectionPool}.
+     * Closing the connection returns it to the pool, the transaction's connection stays open.
+     * @throws SQLException if no connection could be acquired
+     */
+    @Nonnull
+    private Connection getConnection() throws SQLException {
+        var transaction = this.transactionManager.getCurrent();
+        if (transaction != null)
+            return transaction.getBoundConnection();
+
+        return this.getPooledConnection();
+    }
+
+    /**
+     * Borrows a connection from the {@link ConnectionPool}, even if a {@link Transaction} is running on the current thread. Closing the connection returns it to the pool.
+     * The time spent waiting for the connection is recorded in the {@link #metrics}.
+     * @throws SQLException if no connection could be acquired
+     */
+    @Nonnull
+    private Connection getPooledConnection() throws SQLException {
+        var startTime = System.nanoTime();
+        var conn = this.connectionPool.getConnection();
+        this.metrics.recordConnectionWait(System.nanoTime() - startTime);
+        return conn;
+    }
+
+    /**
+     * Gets a connection for a read. Reads are load-balanced across the read-replicas (see {@link ReplicaRouter}), unless a transaction is running
+     * on the current thread, the repository wrote within the last {@link DatabaseConfig#getReplicaPinDuration()} milliseconds or the read fills the cache.
+     * If no replica can hand out a connection, the primary is used.
+     * @param operation the read's operation, see {@link #PRIMARY_READS}
+     * @throws SQLException if no connection could be acquired
+     */
+    @Nonnull
+    private Connection getReadConnection(@Nonnull String operation) throws SQLException {
+        if (this.replicaRouter == null || this.isInTransaction() || PRIMARY_READS.contains(operation) || System.currentTimeMillis() < this.primaryPinnedUntil)
+            return this.getConnection();
+
+        var startTime = System.nanoTime();
+        try {
+            var conn = this.replicaRouter.getConnection();
+            this.metrics.recordConnectionWait(System.nanoTime() - startTime);
+            return conn;
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().debugGrouped("DATABASE_POOL", "No read-replica available for {0} of {1}, reading from the primary.", operation, this.tableName);
+            return this.getPooledConnection();
+        }
+    }
+
+    /**
+     * Routes the reads to the primary for the next {@link DatabaseConfig#getReplicaPinDuration()} milliseconds, called after writes.
+     */
+    private void pinToPrimary() {
+        if (this.replicaRouter != null)
+            this.primaryPinnedUntil = System.currentTimeMillis() + this.config.getReplicaPinDuration();
+    }
+
+    /**
+     * Executes a write on the primary. With SQLite, writes outside of transactions are handed to the {@link SqliteWriter}, which commits them in groups.
+     * The caches must only be changed after this returned, as the write is committed then.
+     * @throws SQLException if the write failed or no connection could be acquired
+     */
+    private <T> T executeWrite(@Nonnull SqliteWriter.Write<T> write) throws SQLException {
+        if (this.sqliteWriter != null && !this.isInTransaction())
+            return this.sqliteWriter.execute(write);
+
+        try (var conn = this.getConnection()) {
+            return write.execute(conn);
+        }
+    }
+
+    private boolean isInTransaction() {
+        return this.transactionManager.getCurrent() != null;
+    }
+
+    /**
+     * Runs the action once the {@link Transaction} running on the current thread is committed, or right away if there is none.
+     * Used for all cache-changes of writes, so rolled back writes don't change the caches.
+     */
+    private void afterCommit(@Nonnull Runnable action) {
+        var transaction = this.transactionManager.getCurrent();
+        if (transaction != null)
+            transaction.afterCommit(action);
+        else
+            action.run();
+    }
+
+    /**
+     * Runs the action if the {@link Transaction} running on the current thread is rolled back, does nothing if there is none.
+     */
+    private void afterRollback(@Nonnull Runnable action) {
+        var transaction = this.transactionManager.getCurrent();
+        if (transaction != null)
+            transaction.afterRollback(action);
+    }
+
+    /**
+     * Publishes a committed change of the repository's entities to the methods annotated with {@link OnEntityChange} and to the other nodes (see {@link CacheInvalidator}).
+     */
+    private void publishChange(@Nonnull EntityChange.Type type, @Nullable E entity) {
+        this.pinToPrimary();
+
+        if (this.invalidator != null)
+            this.invalidator.record(this.tableName, entity != null ? this.getId(entity) : InvalidationTransport.Invalidation.ALL);
+
+        if (this.changePublisher.hasSubscribers(this.typeParameterClass))
+            this.changePublisher.publish(this.typeParameterClass, new EntityChange<>(type, entity));
+    }
+
+    /**
+     * Logs the error of a failed operation. A {@link Transaction} running on the current thread is marked to be rolled back, as its work is incomplete.
+     */
+    private void handleError(@Nonnull String method, @Nonnull Exception ex) {
+        this.plugin.getFpLogger().error(CLASS_NAME, method, ex);
+
+        var transaction = this.transactionManager.getCurrent();
+        if (transaction != null)
+            transaction.setRollbackOnly();
+    }
+
+    /**
+     * @return the int-column of a link-entity or null if there is no such column
+     */
+    @Nullable
+    private EntityModel.Column getLinkColumn(@Nonnull String columnName) {
+        var column = this.model.getColumn(columnName);
+        return column != null && (column.type() == int.class || column.type() == Integer.class)
+                ? column
+                : null;
+    }
+
+    /**
+     * @return whether the {@link #cache} or the {@link #linkStore} holds the whole table
+     */
+    private boolean isCacheComplete() {
+        return this.linkStore != null
+                ? this.linkStore.isComplete()
+                : this.cache.isComplete();
+    }
+
+    /**
+     * Searches the {@link #cache} or the {@link #linkStore} for entities matching the query, order and paging are ignored.
+     */
+    @Nonnull
+    private Set<E> findCached(@Nonnull Query query) {
+        return this.linkStore != null
+                ? this.findLinks(query)
+                : this.cache.find(query);
+    }
+
+    /**
+     * Searches the {@link #linkStore} for links matching the query and creates their entities.
+     * Queries for the id, the left or the right column only visit the links with that value, other queries visit all links.
      */
     @Nonnull
-    private Connection getConnection() {
-        return DataRepoProvider.getConnection(this.plugin, this.config);
+    private Set<E> findLinks(@Nonnull Query query) {
+        var result = new HashSet<E>();
+
+        for (var column : query.getWhereColumns()) {
+            if (this.model.getColumn(column) == null) {
+                this.plugin.getFpLogger().warning(CLASS_NAME, "findLinks", "Tried to query column {0}, but {1} doesn't have such a field!", column, this.typeParameterClass.getSimpleName());
+                return result;
+            }
+        }
+
+        LinkStore.LinkConsumer collector = (id, left, right) -> {
+            var entity = this.createLink(id, left, right);
+            if (query.matches(column -> this.model.getValue(this.model.getColumn(column), entity)))
+                result.add(entity);
+        };
+
+        var where = query.getWhereMap();
+        if (where.get("id") instanceof Number id)
+            this.linkStore.forId(id.intValue(), collector);
+        else if (where.get(this.leftColumn.name()) instanceof Number left)
+            this.linkStore.forLeft(left.intValue(), collector);
+        else if (where.get(this.rightColumn.name()) instanceof Number right)
+            this.linkStore.forRight(right.intValue(), collector);
+        else
+            this.linkStore.forEach(collector);
+
+        return result;
+    }
+
+    @Nonnull
+    private E createLink(int id, int left, int right) {
+        var entity = this.model.newInstance();
+        this.model.setId(entity, id);
+        this.model.setValue(this.leftColumn, entity, left);
+        this.model.setValue(this.rightColumn, entity, right);
+        return entity;
+    }
+
+    /**
+     * Stores the link-entity in the {@link #linkStore}, does nothing for other entities.
+     */
+    private void putLink(@Nonnull E entity) {
+        var entityId = this.getId(entity);
+        if (this.linkStore == null || entityId == 0)
+            return;
+
+        this.linkStore.put(
+                entityId,
+                ((Number) this.model.getValue(this.leftColumn, entity)).intValue(),
+                ((Number) this.model.getValue(this.rightColumn, entity)).intValue()
+        );
     }
 
-    // todo: javadoc
+    /**
+     * Prepares a statement whose rows are streamed from the database instead of being buffered completely by the driver.
+     * MySQL only streams with a fetch-size of {@link Integer#MIN_VALUE}, PostgreSQL only uses a cursor outside the auto-commit mode
+     * (the pool restores it when the connection is returned). SQLite always steps through the rows.
+     * <br><br>
+     * Inside a transaction the rows are buffered by the driver instead, as the connection is shared by all statements of the transaction:
+     * an open MySQL-stream blocks the connection, so the consumer couldn't use the repositories. The keyset-paginated reads still only buffer one page.
+     */
     @Nonnull
-    private Set<E> getFromCache(@Nonnull Query query) {
-        var results = new HashSet<E>();
+    private PreparedStatement prepareStreaming(@Nonnull Connection conn, @Nonnull String statementStr) throws SQLException {
+        var statement = conn.prepareStatement(statementStr, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (this.isInTransaction())
+            return statement;
+
+        switch (this.config.getType()) {
+            case MYSQL -> statement.setFetchSize(Integer.MIN_VALUE);
+            case POSTGRESQL -> {
+                conn.setAutoCommit(false);
+                statement.setFetchSize(STREAM_BATCH_SIZE);
+            }
+            case SQLITE -> statement.setFetchSize(STREAM_BATCH_SIZE);
+        }
+
+        return statement;
+    }
 
-        for (var cachedEntity : this.cache) {
-            var match = true;
+    /**
+     * Streams the rows selected by the query to the consumer, the entities aren't cached.
+     * @param operation the operation the statement is recorded for in the {@link #metrics}
+     * @param consumer receives the entities, returning false stops the read
+     * @return the amount of entities passed to the consumer
+     */
+    private int readStreaming(@Nonnull String operation, @Nonnull Query query, @Nonnull Predicate<E> consumer) throws SQLException {
+        var statementStr = MessageFormat.format(query.toSelectQuery("*", this.config.getType()), this.tableName);
+        var whereValues = query.getWhereValues();
+        logSqlStatement(statementStr, whereValues);
 
-            for (var whereKey : query.getWhereMap().keySet()) {
-                var whereValue = query.getWhereMap().get(whereKey);
+        try (
+                var conn = this.getReadConnection(operation);
+                var statement = this.prepareStreaming(conn, statementStr);
+        ) {
+            this.bindWhereValues(statement, whereValues);
+            var startTime = System.nanoTime();
 
-                try {
-                    var field = this.typeParameterClass.getDeclaredField(whereKey);
-                    field.setAccessible(true);
-                    var value = field.get(cachedEntity);
+            try (var rs = statement.executeQuery()) {
+                var rowMapper = this.model.getRowMapper(rs.getMetaData());
+                var count = 0;
 
-                    if (!whereValue.equals(value))
-                        match = false;
-                } catch (NoSuchFieldException | IllegalAccessException ex) {
-                    match = false;
-                    this.plugin.getFpLogger().warning("!!!!");
-                    this.plugin.getFpLogger().error(CLASS_NAME, "getFromCache", ex);
+                while (rs.next()) {
+                    count++;
+                    if (!consumer.test(rowMapper.map(rs)))
+                        break;
                 }
+
+                this.metrics.recordStatement(operation, statementStr, startTime, count);
+                return count;
             }
+        }
+    }
+
+    /**
+     * Reads the entities matching the query page by page with keyset-pagination over the id ({@code WHERE id > last ORDER BY id LIMIT n}).
+     * Every page is read with its own statement, so neither the database nor the driver has to hold the whole result.
+     * Queries with their own order or paging are read with a single streaming statement instead.
+     * @param operation the operation the statements are recorded for in the {@link #metrics}
+     * @param consumer receives the entities in the order of their ids, returning false stops the read
+     * @return the amount of entities passed to the consumer
+     */
+    private int readKeyset(@Nonnull String operation, @Nonnull Query query, @Nonnull Predicate<E> consumer) throws SQLException {
+        if (query.isOrderedOrPaged())
+            return this.readStreaming(operation, query, consumer);
+
+        var total = 0;
+        var lastId = new Integer[1];
+        var stopped = new boolean[1];
+
+        while (true) {
+            var page = query.copy();
+            if (lastId[0] != null)
+                page.where("id", Query.Operator.GT, lastId[0]);
+            page.orderBy("id").limit(STREAM_BATCH_SIZE);
+
+            var count = this.readStreaming(operation, page, entity -> {
+                lastId[0] = this.model.getId(entity);
+                stopped[0] = !consumer.test(entity);
+                return !stopped[0];
+            });
+
+            total += count;
+            if (stopped[0] || count < STREAM_BATCH_SIZE)
+                return total;
+        }
+    }
+
+    /**
+     * Binds the where-values of a query to the statement.
+     */
+    private void bindWhereValues(@Nonnull PreparedStatement statement, @Nonnull Object[] whereValues) throws SQLException {
+        for (var i=0; i<whereValues.length; i++)
+            statement.setObject(i+1, whereValues[i]);
+    }
+
+    /**
+     * Executes the query-statement and maps all returned rows to entities, see {@link EntityModel#getRowMapper(java.sql.ResultSetMetaData)}.
+     */
+    @Nonnull
+    private List<E> readEntities(@Nonnull PreparedStatement statement) throws SQLException {
+        try (var rs = statement.executeQuery()) {
+            var rowMapper = this.model.getRowMapper(rs.getMetaData());
+            var result = new ArrayList<E>();
+
+            while (rs.next())
+                result.add(rowMapper.map(rs));
+
+            return result;
+        }
+    }
+
+    /**
+     * Adds an entity that was written to the database to the {@link #cache} (replacing other instances with the same id) and remembers its persisted values.
+     */
+    private void addToCache(@Nonnull E entity) {
+        this.cache.add(entity);
+        this.putLink(entity);
+        this.negativeCache.invalidate(entity);
+        this.rememberPersisted(entity);
+    }
 
-            if (match)
-                results.add(cachedEntity);
+    /**
+     * Adds an entity that was read from the database to the {@link #cache}.
+     * If an instance with the same id is cached already, that one is kept as it might hold modifications that aren't persisted yet (see {@link #queueUpdate(Object)}).
+     * <br><br>
+     * Rows read in a {@link Transaction} might not be committed yet, they are cached once the transaction is committed.
+     * @return the cached instance
+     */
+    @Nonnull
+    private E addLoadedToCache(@Nonnull E entity) {
+        var transaction = this.transactionManager.getCurrent();
+        if (transaction != null) {
+            transaction.afterCommit(() -> this.addLoadedToCache(entity));
+            return entity;
         }
 
-        return results;
+        this.putLink(entity);
+
+        var cached = this.cache.addIfAbsent(entity);
+        if (cached == entity)
+            this.rememberPersisted(entity);
+
+        return cached;
+    }
+
+    /**
+     * Adds the delta to the known {@link #entryCount}, an unknown count stays unknown.
+     */
+    private void adjustEntryCount(int delta) {
+        this.entryCount.updateAndGet(count -> count < 0 ? count : count + delta);
+    }
+
+    private void rememberPersisted(@Nonnull E entity) {
+        var entityId = this.getId(entity);
+        if (entityId != 0)
+            this.cache.setPersistedValues(entityId, this.model.getValues(entity));
+    }
+
+    /**
+     * Searches the {@link #cache} for entities matching the query. Uses the cache's hash-indexes, see {@link EntityCache#find(Query)}.
+     * <br><br>
+     * The results of ordered or paged queries depend on rows that might not be cached, so those are only answered by a complete cache (otherwise nothing is returned).
+     * @return the matches in the query's order
+     */
+    @Nonnull
+    private List<E> getFromCache(@Nonnull Query query) {
+        if (query.isOrderedOrPaged() && !this.isCacheComplete())
+            return List.of();
+
+        var matches = this.findCached(query);
+        if (!query.isOrderedOrPaged())
+            return new ArrayList<>(matches);
+
+        return query.orderAndPage(matches, (entity, column) -> this.model.getValue(this.model.getColumn(column), entity));
+    }
+
+    /**
+     * Reads the rows selected by the query from the database and adds them to the {@link #cache}.
+     * @param operation the operation the statement is recorded for in the {@link #metrics}
+     * @return the (cached instances of the) read entities in the order they were returned
+     */
+    @Nonnull
+    private List<E> readFromDatabase(@Nonnull String operation, @Nonnull Query query) throws SQLException {
+        var statementStr = MessageFormat.format(query.toSelectQuery("*", this.config.getType()), this.tableName);
+        var whereValues = query.getWhereValues();
+        logSqlStatement(statementStr, whereValues);
+
+        try (
+                var conn = this.getReadConnection(operation);
+                var statement = conn.prepareStatement(statementStr);
+        ) {
+            this.bindWhereValues(statement, whereValues);
+            var startTime = System.nanoTime();
+
+            var entities = this.readEntities(statement);
+            this.metrics.recordStatement(operation, statementStr, startTime, entities.size());
+
+            var result = new ArrayList<E>();
+            entities.forEach(entity -> result.add(this.addLoadedToCache(entity)));
+            return result;
+        }
     }
 
     /**
-     * Clears the cache and then loads all records in the db-table into the {@link #cache} (with a limit specified in the {@link #config}).
+     * Clears the cache and then loads all records in the db-table into the {@link #cache} (up to {@link Entity#maxCacheEntries()}).
+     * The table is read in pages, see {@link #readKeyset(String, Query, Predicate)}.
+     * If the whole table fits into the cache, the cache is marked as complete (see {@link EntityCache#isComplete()}).
      */
     private void preload() {
-        this.plugin.getFpLogger().debug("Preloading data for repository {0} with a limit of {1}...", this.typeParameterClass.getSimpleName(), this.config.getPreloadLimit());
+        this.plugin.getFpLogger().debug("Preloading data for repository {0} with a limit of {1}...", this.typeParameterClass.getSimpleName(), this.cache.getMaxEntries());
 
-        this.clearCache();
+        this.cache.clear();
+
+        var maxEntries = this.cache.getMaxEntries();
+        var loaded = new int[1];
+
+        try {
+            // one more than fits is read, to know whether the table was loaded completely
+            var read = this.readKeyset("preload", new Query(), entity -> {
+                if (loaded[0] >= maxEntries)
+                    return false;
+
+                this.addLoadedToCache(entity);
+                loaded[0]++;
+                return true;
+            });
+
+            this.cache.setComplete(read <= maxEntries);
+            this.entryCount.set(this.cache.isComplete() ? read : -1);
+        } catch (Exception ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "preload", ex);
+            this.entryCount.set(-1);
+            return;
+        }
+
+        this.plugin.getFpLogger().debug("Preloaded {0} data-records from table {1}, complete: {2}.", this.cache.size(), this.tableName, this.cache.isComplete());
+    }
+
+    /**
+     * Clears the {@link #linkStore} and then loads all links in the db-table into it. Only the ids are read, no entities are created.
+     */
+    private void preloadLinks() {
+        this.plugin.getFpLogger().debug("Preloading links for repository {0}...", this.typeParameterClass.getSimpleName());
+
+        this.linkStore.clear();
 
         String statementStr = String.format(
-                "SELECT * FROM %s LIMIT %d;",
-                this.tableName,
-                this.config.getPreloadLimit()
+                "SELECT %s, %s, %s FROM %s",
+                this.model.quote("id"),
+                this.model.quote(this.leftColumn.name()),
+                this.model.quote(this.rightColumn.name()),
+                this.tableName
         );
+        logSqlStatement(statementStr);
 
         try (
                 var conn = this.getConnection();
-                var statement = conn.prepareStatement(statementStr);
+                var statement = this.prepareStreaming(conn, statementStr);
         ) {
-            var rs = statement.executeQuery();
-
-            while (rs.next()) {
-                var columnCount = rs.getMetaData().getColumnCount();
-                var entityInstance = this.plugin.getFpUtils().instantiate(this.typeParameterClass);
-
-                // populate entity
-                for (var i=1; i<columnCount+1; i++) {
-                    var fieldName = rs.getMetaData().getColumnName(i);
-                    var fieldValue = rs.getObject(i);
-                    var field = entityInstance.getClass().getDeclaredField(fieldName);
-                    field.setAccessible(true);
-
-                    // System.out.println("DataRepoProvider::getMultiple (before transform)");
-                    // System.out.println("field.getType() = " + field.getType());
-                    // System.out.println("fieldName = " + fieldName);
-                    // System.out.println("fieldValue = " + fieldValue);
-                    // System.out.println("fieldValue?.getClass() = " + (fieldValue != null ? fieldValue.getClass() : "null"));
-
-                    if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(float.class) && fieldValue instanceof Double doubleValue)
-                        fieldValue = doubleValue.floatValue();
-
-                    if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(boolean.class) && fieldValue instanceof Integer integerValue)
-                        fieldValue = integerValue == 1;
-
-                    // System.out.println("DataRepoProvider::getMultiple (after transform)");
-                    // System.out.println("field.getType() = " + field.getType());
-                    // System.out.println("fieldName = " + fieldName);
-                    // System.out.println("fieldValue = " + fieldValue);
-                    // System.out.println("fieldValue?.getClass() = " + (fieldValue != null ? fieldValue.getClass() : "null"));
-
-                    field.set(entityInstance, fieldValue);
-                }
+            var startTime = System.nanoTime();
 
-                this.cache.add(entityInstance);
+            try (var rs = statement.executeQuery()) {
+                while (rs.next())
+                    this.linkStore.put(rs.getInt(1), rs.getInt(2), rs.getInt(3));
             }
+
+            this.metrics.recordStatement("preload", statementStr, startTime, this.linkStore.size());
+            this.linkStore.setComplete(true);
+            this.entryCount.set(this.linkStore.size());
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "preload", ex);
+            this.plugin.getFpLogger().error(CLASS_NAME, "preloadLinks", ex);
+            this.linkStore.clear();
+            this.entryCount.set(-1);
             return;
         }
 
-        this.plugin.getFpLogger().debug("Preloaded {0} data-records from table {1}.", this.cache.size(), this.tableName);
+        this.plugin.getFpLogger().debug("Preloaded {0} links from table {1}.", this.linkStore.size(), this.tableName);
     }
 
     /**
+     * The count is taken from the preload or a previous call and kept up to date by the writes of this repository.
+     * Only if it's unknown (the table wasn't loaded completely), the rows are counted by the database.
      * @return the count of all entries in the table or -1, if an error occurs
      */
     public int getEntryCount() {
-        String statementStr = String.format("SELECT COUNT(id) FROM %s;", this.tableName);
+        var knownCount = this.entryCount.get();
+        if (knownCount >= 0)
+            return knownCount;
+
+        String statementStr = this.model.getCountStatement();
         logSqlStatement(statementStr);
 
         try (
                 var conn = this.getConnection();
                 var statement = conn.prepareStatement(statementStr);
         ) {
+            var startTime = System.nanoTime();
 
             var resultSet = statement.executeQuery();
             resultSet.next();
-            return resultSet.getInt(1);
+            this.metrics.recordStatement("count", statementStr, startTime, 1);
+
+            var count = resultSet.getInt(1);
+            this.entryCount.compareAndSet(-1, count);
+            return count;
 
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "exists", ex);
+            this.handleError("getEntryCount", ex);
             return -1;
         }
     }
@@ -270,21 +817,44 @@ public class DataRepoProvider<E> {
             return true;
         }
 
+        if (this.isCacheComplete())
+            return false;
+
+        if (this.negativeCache.contains(query)) {
+            this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE","Tried to check if entity exists, known to be missing.");
+            return false;
+        }
+
+        var generation = this.negativeCache.getGeneration();
+
         var statementStr = MessageFormat.format(query.toSelectQuery("id", this.config.getType()), this.tableName);
         var whereValues = query.getWhereValues();
         logSqlStatement(statementStr, whereValues);
 
         try (
-                var conn = this.getConnection();
+                var conn = this.getReadConnection("exists");
                 var statement = conn.prepareStatement(statementStr);
         ) {
-            for (var i=0; i<whereValues.length; i++)
-                statement.setObject(i+1, whereValues[i]);
+            this.bindWhereValues(statement, whereValues);
+            statement.setMaxRows(1);
+            var startTime = System.nanoTime();
+
+            boolean found;
+            try (var rs = statement.executeQuery()) {
+                found = rs.next();
+            }
+
+            this.metrics.recordStatement("exists", statementStr, startTime, found ? 1 : 0);
+            if (found)
+                return true;
 
-            var rs = statement.executeQuery();
-            return rs.next();
+            // a miss in a transaction might be caused by its own uncommitted writes
+            if (!this.isInTransaction())
+                this.negativeCache.add(query, generation);
+
+            return false;
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "exists", ex);
+            this.handleError("exists", ex);
             return false;
         }
     }
@@ -301,134 +871,259 @@ public class DataRepoProvider<E> {
         if (!cached.isEmpty()) {
             this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE","Tried to get, found in cache.");
 
-            if (cached.size() > 1)
+            if (cached.size() > 1 && !query.isOrderedOrPaged())
                 this.plugin.getFpLogger().warning("Tried to get an entity, found in cache, but more than one! Returning the first.");
 
-            return cached.stream().findFirst().orElse(null);
+            return cached.get(0);
         }
 
+        if (this.isCacheComplete())
+            return null;
+
+        if (this.negativeCache.contains(query)) {
+            this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE","Tried to get, known to be missing.");
+            return null;
+        }
+
+        var generation = this.negativeCache.getGeneration();
+
         var statementStr = MessageFormat.format(query.toSelectQuery("*", this.config.getType()), this.tableName);
         var whereValues = query.getWhereValues();
         logSqlStatement(statementStr, whereValues);
 
         try (
-                var conn = this.getConnection();
+                var conn = this.getReadConnection("get");
                 var statement = conn.prepareStatement(statementStr);
         ) {
-            for (var i=0; i<whereValues.length; i++)
-                statement.setObject(i+1, whereValues[i]);
-
-            var rs = statement.executeQuery();
-            if (!rs.next())
-                return null;
-
-            var columnCount = rs.getMetaData().getColumnCount();
-            var entityInstance = this.plugin.getFpUtils().instantiate(this.typeParameterClass);
-
-            // populate entity
-            for (var i=1; i<columnCount+1; i++) {
-                var fieldName = rs.getMetaData().getColumnName(i);
-                var fieldValue = rs.getObject(i);
-                var field = entityInstance.getClass().getDeclaredField(fieldName);
-                field.setAccessible(true);
+            this.bindWhereValues(statement, whereValues);
+            statement.setMaxRows(1);
+            var startTime = System.nanoTime();
 
-                // System.out.println("DataRepoProvider::get (before transform)");
-                // System.out.println("field.getType() = " + field.getType());
-                // System.out.println("fieldName = " + fieldName);
-                // System.out.println("fieldValue = " + fieldValue);
-                // System.out.println("fieldValue?.getClass() = " + (fieldValue != null ? fieldValue.getClass() : "null"));
+            var result = this.readEntities(statement);
+            this.metrics.recordStatement("get", statementStr, startTime, result.size());
 
-                if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(float.class) && fieldValue instanceof Double doubleValue)
-                    fieldValue = doubleValue.floatValue();
+            if (result.isEmpty()) {
+                if (!this.isInTransaction())
+                    this.negativeCache.add(query, generation);
 
-                if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(boolean.class) && fieldValue instanceof Integer integerValue)
-                    fieldValue = integerValue == 1;
-
-                // System.out.println("DataRepoProvider::get (after transform)");
-                // System.out.println("field.getType() = " + field.getType());
-                // System.out.println("fieldName = " + fieldName);
-                // System.out.println("fieldValue = " + fieldValue);
-                // System.out.println("fieldValue?.getClass() = " + (fieldValue != null ? fieldValue.getClass() : "null"));
-
-                field.set(entityInstance, fieldValue);
+                return null;
             }
 
-            this.cache.add(entityInstance);
-
-            return entityInstance;
+            return this.addLoadedToCache(result.get(0));
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "get", ex);
+            this.handleError("get", ex);
             return null;
         }
     }
 
     /**
      * Searches for multiple entries in the database.
+     * <br><br>
+     * Complete caches answer all queries. Queries that only look up ids (see {@link Query#getIdLookup()}) are answered from the cache as far as possible,
+     * only the missing ids are read from the database.
      * @param query the query to be used
-     * @return the found matches
+     * @return the found matches in the query's order
      */
     @Nonnull
     public Set<E> getMultiple(@Nonnull Query query) {
-        var cached = this.getFromCache(query);
-
-        if (!cached.isEmpty()) {
+        // only a complete cache is guaranteed to hold all matches
+        if (this.isCacheComplete()) {
+            var cached = this.getFromCache(query);
             this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE","Tried to get multiple, found in cache: {0}.", cached.size());
-            return cached;
+            return new LinkedHashSet<>(cached);
         }
 
-        var statementStr = MessageFormat.format(query.toSelectQuery("*", this.config.getType()), this.tableName);
+        try {
+            var ids = query.getIdLookup();
+            if (ids == null)
+                return new LinkedHashSet<>(this.readFromDatabase("getMultiple", query));
+
+            var result = new LinkedHashSet<>(this.findCached(query));
+            var missingIds = new HashSet<Integer>();
+            ids.forEach(id -> missingIds.add(((Number) id).intValue()));
+            result.forEach(entity -> missingIds.remove(this.getId(entity)));
+
+            this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE","Tried to get multiple by id, found in cache: {0}, missing: {1}.", result.size(), missingIds.size());
+
+            if (!missingIds.isEmpty())
+                result.addAll(this.readFromDatabase("getMultiple", new Query().whereIn("id", missingIds)));
+
+            return result;
+        } catch (Exception ex) {
+            this.handleError("getMultiple", ex);
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Counts the entries matching the query, order and paging are ignored.
+     * @return the amount of matches or -1, if an error occurs
+     */
+    public int count(@Nonnull Query query) {
+        if (this.isCacheComplete())
+            return this.findCached(query).size();
+
+        var statementStr = MessageFormat.format(query.toCountQuery(this.config.getType()), this.tableName);
         var whereValues = query.getWhereValues();
         logSqlStatement(statementStr, whereValues);
 
         try (
-                var conn = this.getConnection();
+                var conn = this.getReadConnection("count");
                 var statement = conn.prepareStatement(statementStr);
         ) {
-            for (var i=0; i<whereValues.length; i++)
-                statement.setObject(i+1, whereValues[i]);
-
-            var rs = statement.executeQuery();
-            Set<E> result = new HashSet<>();
-
-            while (rs.next()) {
-                var columnCount = rs.getMetaData().getColumnCount();
-                var entityInstance = this.plugin.getFpUtils().instantiate(this.typeParameterClass);
-
-                // populate entity
-                for (var i=1; i<columnCount+1; i++) {
-                    var fieldName = rs.getMetaData().getColumnName(i);
-                    var fieldValue = rs.getObject(i);
-                    var field = entityInstance.getClass().getDeclaredField(fieldName);
-                    field.setAccessible(true);
-
-                    // System.out.println("DataRepoProvider::getMultiple (before transform)");
-                    // System.out.println("field.getType() = " + field.getType());
-                    // System.out.println("fieldName = " + fieldName);
-                    // System.out.println("fieldValue = " + fieldValue);
-                    // System.out.println("fieldValue?.getClass() = " + (fieldValue != null ? fieldValue.getClass() : "null"));
-
-                    if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(float.class) && fieldValue instanceof Double doubleValue)
-                        fieldValue = doubleValue.floatValue();
-
-                    if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(boolean.class) && fieldValue instanceof Integer integerValue)
-                        fieldValue = integerValue == 1;
-
-                    // System.out.println("DataRepoProvider::getMultiple (after transform)");
-                    // System.out.println("field.getType() = " + field.getType());
-                    // System.out.println("fieldName = " + fieldName);
-                    // System.out.println("fieldValue = " + fieldValue);
-                    // System.out.println("fieldValue?.getClass() = " + (fieldValue != null ? fieldValue.getClass() : "null"));
-
-                    field.set(entityInstance, fieldValue);
-                }
+            this.bindWhereValues(statement, whereValues);
+            var startTime = System.nanoTime();
 
-                result.add(entityInstance);
-                this.cache.add(entityInstance);
+            try (var rs = statement.executeQuery()) {
+                rs.next();
+                this.metrics.recordStatement("count", statementStr, startTime, 1);
+                return rs.getInt(1);
             }
+        } catch (Exception ex) {
+            this.handleError("count", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Selects a single column of the entries matching the query, without reading whole entities.
+     * @param columnName the column to select
+     * @param type the (boxed) type of the column's field
+     * @return the column's values in the query's order
+     */
+    @Nonnull
+    public <T> List<T> getColumnValues(@Nonnull Query query, @Nonnull String columnName, @Nonnull Class<T> type) {
+        var column = this.model.getColumn(columnName);
+        if (column == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "getColumnValues", "Tried to select column {0}, but {1} doesn't have such a field!", columnName, this.typeParameterClass.getSimpleName());
+            return new ArrayList<>();
+        }
+
+        if (this.isCacheComplete())
+            return new ArrayList<>(this.getFromCache(query).stream().map(entity -> type.cast(this.model.getValue(column, entity))).toList());
+
+        var statementStr = MessageFormat.format(query.toSelectQuery(columnName, this.config.getType()), this.tableName);
+        var whereValues = query.getWhereValues();
+        logSqlStatement(statementStr, whereValues);
+
+        try (
+                var conn = this.getReadConnection("getColumnValues");
+                var statement = conn.prepareStatement(statementStr);
+        ) {
+            this.bindWhereValues(statement, whereValues);
+            var startTime = System.nanoTime();
+
+            var result = new ArrayList<T>();
+            try (var rs = statement.executeQuery()) {
+                while (rs.next())
+                    result.add(type.cast(column.reader().apply(rs.getObject(1))));
+            }
+
+            this.metrics.recordStatement("getColumnValues", statementStr, startTime, result.size());
             return result;
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "getMultiple", ex);
-            return new HashSet<>();
+            this.handleError("getColumnValues", ex);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Passes all entities matching the query to the consumer without holding them in memory.
+     * The entities are read page by page with keyset-pagination over the id (so they are passed in the order of their ids) and aren't cached.
+     * Queries with their own order or paging are read with a single streaming statement instead. Queued updates are flushed first.
+     * <br><br>
+     * Inside a transaction every page is read completely before it is passed on (queries with their own order or paging are read completely),
+     * so the consumer can use the repositories.
+     * @return the amount of entities passed to the consumer or -1, if an error occurs
+     */
+    public int forEach(@Nonnull Query query, @Nonnull Consumer<E> consumer) {
+        this.flushUpdates();
+
+        try {
+            return this.readKeyset("forEach", query, entity -> {
+                consumer.accept(entity);
+                return true;
+            });
+        } catch (Exception ex) {
+            this.handleError("forEach", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Streams the entities matching the query from the database, the rows are read while the stream is consumed and the entities aren't cached.
+     * Queued updates are flushed first.
+     * <br><br>
+     * The stream holds a pooled connection until it is closed, so it must be closed, for instance with try-with-resources.
+     * Inside a transaction the whole result is read when the stream is created, use {@link #forEach(Query, Consumer)} for large results there.
+     * If the read fails, the error is logged and the stream ends.
+     */
+    @Nonnull
+    public Stream<E> stream(@Nonnull Query query) {
+        this.flushUpdates();
+
+        var statementStr = MessageFormat.format(query.toSelectQuery("*", this.config.getType()), this.tableName);
+        var whereValues = query.getWhereValues();
+        logSqlStatement(statementStr, whereValues);
+
+        Connection conn = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getReadConnection("stream");
+            statement = this.prepareStreaming(conn, statementStr);
+            this.bindWhereValues(statement, whereValues);
+            var startTime = System.nanoTime();
+            rs = statement.executeQuery();
+
+            var resultSet = rs;
+            var rowMapper = this.model.getRowMapper(rs.getMetaData());
+            var resources = new AutoCloseable[] { rs, statement, conn };
+            var rows = new int[1];
+
+            var spliterator = new Spliterators.AbstractSpliterator<E>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super E> action) {
+                    try {
+                        if (!resultSet.next())
+                            return false;
+
+                        rows[0]++;
+                        action.accept(rowMapper.map(resultSet));
+                        return true;
+                    } catch (SQLException ex) {
+                        DataRepoProvider.this.handleError("stream", ex);
+                        return false;
+                    }
+                }
+            };
+
+            // the statement is recorded once the stream is closed, including the time the stream was consumed
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                this.metrics.recordStatement("stream", statementStr, startTime, rows[0]);
+                this.closeAll(resources);
+            });
+        } catch (Exception ex) {
+            this.handleError("stream", ex);
+            this.closeAll(rs, statement, conn);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Closes the resources in the given order, errors are logged.
+     */
+    private void closeAll(@Nonnull AutoCloseable... resources) {
+        for (var resource : resources) {
+            if (resource == null)
+                continue;
+
+            try {
+                resource.close();
+            } catch (Exception ex) {
+                this.plugin.getFpLogger().error(CLASS_NAME, "closeAll", ex);
+            }
         }
     }
 
@@ -456,21 +1151,39 @@ public class DataRepoProvider<E> {
          }
         */
 
-        var statementStr = MessageFormat.format("DELETE FROM {0} WHERE id = ?", this.tableName);
+        var statementStr = this.model.getDeleteStatement();
         logSqlStatement(statementStr, entityId);
 
-        try (
-                var conn = this.getConnection();
-                var statement = conn.prepareStatement(statementStr)
-        ) {
-            statement.setInt(1, entityId);
-            statement.execute();
+        try {
+            int deleted = this.executeWrite(conn -> {
+                try (var statement = conn.prepareStatement(statementStr)) {
+                    statement.setInt(1, entityId);
+                    var startTime = System.nanoTime();
+
+                    var rows = statement.executeUpdate();
+                    this.metrics.recordStatement("delete", statementStr, startTime, rows);
+                    return rows;
+                }
+            });
 
-            this.cache.removeIf(e -> getId(e) == entityId);
+            // a rolled back delete keeps its pending update
+            this.afterCommit(() -> {
+                synchronized (this.pendingUpdates) {
+                    this.pendingUpdates.remove(entityId);
+                }
+
+                this.adjustEntryCount(-deleted);
+                this.cache.removeById(entityId);
+                if (this.linkStore != null)
+                    this.linkStore.remove(entityId);
+
+                if (deleted > 0)
+                    this.publishChange(EntityChange.Type.DELETE, entity);
+            });
 
             return true;
         } catch (Exception e) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "delete", e);
+            this.handleError("delete", e);
             return false;
         }
     }
@@ -479,7 +1192,6 @@ public class DataRepoProvider<E> {
      * Only used to override entities present in the database. To insert, use {@link DataRepoProvider#insert(E entity)}.
      * @return whether the operation was successful
      */
-    // todo: update in cache?
     public boolean update(@Nullable E entity) {
         if (entity == null) {
             this.plugin.getFpLogger().warning(CLASS_NAME, "update", "Tried to update entity, but none submitted!");
@@ -492,50 +1204,160 @@ public class DataRepoProvider<E> {
             return false;
         }
 
-        var fields = Arrays.stream(this.typeParameterClass.getDeclaredFields())
-                .peek(e -> e.setAccessible(true))
-                .filter(e -> !e.isAnnotationPresent(Ignore.class))
-                .filter(e -> !e.getName().equals("id"))
-                .toList();
-
-        var fieldQuotation = this.config.getType() == DatabaseType.POSTGRESQL
-                ? '"'
-                : '`';
-
-        var statementStr = MessageFormat.format(
-                this.config.getType() == DatabaseType.POSTGRESQL
-                    ? "UPDATE {0} SET id = DEFAULT, {1} WHERE id = ?"
-                    : "UPDATE {0} SET id = " + entityId + ", {1} WHERE id = ?",
-                this.tableName,
-                fields.stream()
-                        .map(Field::getName)
-                        .map(name -> fieldQuotation + name + fieldQuotation + " = ?")
-                        .collect(Collectors.joining(", "))
-        );
-
-        logSqlStatement(
-                statementStr,
-                fields.stream().map(field -> this.plugin.getFpUtils().getFieldValueSafe(field, entity)).toArray()
-        );
+        var statementStr = this.model.getUpdateStatement();
+        logEntityStatement(statementStr, entity);
 
-        try (
-                var conn = this.getConnection();
-                var statement = conn.prepareStatement(statementStr)
-        ) {
-            int index = 1;
-            for (var field : fields)
-                statement.setObject(index++, this.plugin.getFpUtils().getFieldValueSafe(field, entity));
+        try {
+            this.executeWrite(conn -> {
+                try (var statement = conn.prepareStatement(statementStr)) {
+                    var index = this.model.bindValues(statement, entity, 1);
+                    statement.setInt(index, entityId);
+                    var startTime = System.nanoTime();
+
+                    this.metrics.recordStatement("update", statementStr, startTime, statement.executeUpdate());
+                    return null;
+                }
+            });
 
-            statement.setInt(index, entityId);
-            statement.execute();
+            this.afterCommit(() -> {
+                this.addToCache(entity);
+                this.publishChange(EntityChange.Type.UPDATE, entity);
+            });
             return true;
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "save", ex);
+            this.handleError("save", ex);
             return false;
         }
     }
 
 
+    /**
+     * Queues the entity for the next write-behind flush instead of updating it right away. Multiple queued updates of the same entity are merged.
+     * Meant for frequent saves that don't have to be persisted instantly, see {@link #flushUpdates()}.
+     * @return whether the entity was queued
+     */
+    public boolean queueUpdate(@Nullable E entity) {
+        if (entity == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "queueUpdate", "Tried to queue an update, but no entity submitted!");
+            return false;
+        }
+
+        var entityId = this.getId(entity);
+        if (entityId == 0) {
+            this.plugin.getFpLogger().warning("Couldn't queue update of entity of type " + entity.getClass().getName() + " as the id-field is not valid.");
+            return false;
+        }
+
+        this.cache.add(entity);
+        this.putLink(entity);
+        this.negativeCache.invalidate(entity);
+
+        synchronized (this.pendingUpdates) {
+            this.pendingUpdates.put(entityId, entity);
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes all queued updates (see {@link #queueUpdate(Object)}) to the database.
+     * The updates are sent in batches of {@link DatabaseConfig#getWriteBehindBatchSize()} on one connection and in one transaction.
+     * Inside a transaction they become part of it. Entities whose values didn't change since they were last persisted are skipped.
+     * If the flush fails or is rolled back, the updates are queued again.
+     * @return the amount of updated entities
+     */
+    public int flushUpdates() {
+        synchronized (this.flushLock) {
+            List<E> queued;
+
+            synchronized (this.pendingUpdates) {
+                if (this.pendingUpdates.isEmpty())
+                    return 0;
+
+                queued = new ArrayList<>(this.pendingUpdates.values());
+                this.pendingUpdates.clear();
+            }
+
+            var updates = new ArrayList<PendingUpdate<E>>();
+            for (var entity : queued) {
+                var entityId = this.getId(entity);
+                var values = this.model.getValues(entity);
+
+                if (!Arrays.equals(values, this.cache.getPersistedValues(entityId)))
+                    updates.add(new PendingUpdate<>(entityId, entity, values));
+            }
+
+            if (updates.isEmpty()) {
+                this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Skipped {0} unchanged queued updates of {1}.", queued.size(), this.tableName);
+                return 0;
+            }
+
+            var statementStr = this.model.getUpdateStatement();
+            var batchSize = Math.max(1, this.config.getWriteBehindBatchSize());
+            this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Executing SQL batch of {0} updates: \"{1}\"", updates.size(), statementStr);
+
+            SqliteWriter.Write<Void> flush = conn -> {
+                try (var statement = conn.prepareStatement(statementStr)) {
+                    for (var i = 0; i < updates.size(); i++) {
+                        var update = updates.get(i);
+                        var index = this.model.bindValues(statement, update.values(), 1);
+                        statement.setInt(index, update.id());
+                        statement.addBatch();
+
+                        if ((i + 1) % batchSize == 0 || i == updates.size() - 1)
+                            statement.executeBatch();
+                    }
+                }
+
+                return null;
+            };
+
+            try {
+                var startTime = System.nanoTime();
+
+                if (this.isInTransaction()) {
+                    // part of the transaction, with SQLite it holds the write-lock another connection would wait for
+                    try (var conn = this.getConnection()) {
+                        flush.execute(conn);
+                    }
+                } else if (this.sqliteWriter != null) {
+                    this.sqliteWriter.execute(flush);
+                } else {
+                    try (var conn = this.getPooledConnection()) {
+                        conn.setAutoCommit(false);
+                        flush.execute(conn);
+                        conn.commit();
+                    }
+                }
+
+                this.metrics.recordStatement("flushUpdates", statementStr, startTime, updates.size());
+            } catch (Exception ex) {
+                this.plugin.getFpLogger().error(CLASS_NAME, "flushUpdates", ex);
+                this.requeueUpdates(updates);
+                return 0;
+            }
+
+            this.afterRollback(() -> this.requeueUpdates(updates));
+            this.afterCommit(() -> {
+                updates.forEach(update -> {
+                    this.cache.setPersistedValues(update.id(), update.values());
+                    this.publishChange(EntityChange.Type.UPDATE, update.entity());
+                });
+                this.plugin.getFpLogger().debug("Flushed {0} queued updates to table {1}, {2} were unchanged.", updates.size(), this.tableName, queued.size() - updates.size());
+            });
+            return updates.size();
+        }
+    }
+
+    /**
+     * Queues the updates of a failed or rolled back flush again, unless the entities were queued meanwhile.
+     */
+    private void requeueUpdates(@Nonnull List<PendingUpdate<E>> updates) {
+        synchronized (this.pendingUpdates) {
+            updates.forEach(update -> this.pendingUpdates.putIfAbsent(update.id(), update.entity()));
+        }
+    }
+
     /**
      * Inserts the entity into the database, updates the id of passed entity after completion (if successful).
      * @return whether the operation was successful
@@ -552,104 +1374,552 @@ public class DataRepoProvider<E> {
             return false;
         }
 
-        var fields = Arrays.stream(this.typeParameterClass.getDeclaredFields())
-                .peek(e -> e.setAccessible(true))
-                .filter(e -> !e.isAnnotationPresent(Ignore.class))
-                .filter(e -> !e.getName().equalsIgnoreCase("id"))
-                .toList();
-
-        var statementStr = String.format(
-                this.config.getType() != DatabaseType.SQLITE
-                    ? "INSERT INTO %s VALUES (DEFAULT, %s)"
-                    : "INSERT INTO %s VALUES (NULL, %s)",
-                this.tableName,
-                fields.stream()
-                        .map(e -> "?")
-                        .collect(Collectors.joining(", "))
-        );
+        var statementStr = this.model.getInsertStatement();
+        logEntityStatement(statementStr, entity);
 
-        logSqlStatement(
-                statementStr,
-                fields.stream().map(field -> this.plugin.getFpUtils().getFieldValueSafe(field, entity)).toArray()
-        );
+        try {
+            Integer generatedId = this.executeWrite(conn -> {
+                try (var statement = conn.prepareStatement(statementStr, Statement.RETURN_GENERATED_KEYS)) {
+                    this.model.bindValues(statement, entity, 1);
+                    var startTime = System.nanoTime();
 
-        try (
-                var conn = this.getConnection();
-                var statement = conn.prepareStatement(statementStr, Statement.RETURN_GENERATED_KEYS)
-        ) {
-            int index = 1;
-            for (var field : fields) {
-                var val = this.plugin.getFpUtils().getFieldValueSafe(field, entity);
+                    statement.execute();
+                    this.metrics.recordStatement("insert", statementStr, startTime, 1);
 
-                if (this.config.getType() == DatabaseType.SQLITE && field.getType().equals(boolean.class) && val instanceof Boolean booleanValue)
-                    val = booleanValue ? 1 : 0;
+                    try (var generatedKeys = statement.getGeneratedKeys()) {
+                        return generatedKeys.next() ? generatedKeys.getInt(1) : null;
+                    }
+                }
+            });
 
-                if (val != null)
-                    statement.setObject(index++, val);
-                else
-                    statement.setNull(index++, Types.NULL);
+            if (generatedId == null) {
+                this.plugin.getFpLogger().warning("Couldn't insert entity of type " + entity.getClass().getName() + " as the statement didn't return keys.");
+                return false;
             }
 
-            statement.execute();
+            this.model.setId(entity, generatedId);
 
-            var generatedKeys = statement.getGeneratedKeys();
-            if (!generatedKeys.next()) {
-                this.plugin.getFpLogger().warning("Couldn't insert entity of type " + entity.getClass().getName() + " as the statement didn't return keys.");
+            this.afterRollback(() -> this.model.setId(entity, null));
+            this.afterCommit(() -> {
+                this.addToCache(entity);
+                this.adjustEntryCount(1);
+                this.publishChange(EntityChange.Type.INSERT, entity);
+            });
+
+            return true;
+        } catch (Exception ex) {
+            this.handleError("insert", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Executes an insert-statement of the {@link #model} and reads the ids of the inserted rows.
+     * MySQL returns them as generated keys, the other databases with the statement's {@link EntityModel#getReturningClause() returning-clause}.
+     * @param operation the operation the statement is recorded for in the {@link #metrics}
+     * @param values the values of every inserted row, see {@link EntityModel#getValues(Object)}
+     * @return the ids in the order of the rows, rows that weren't inserted because of a conflict don't return an id
+     */
+    @Nonnull
+    private List<Integer> executeInsert(@Nonnull String operation, @Nonnull Connection conn, @Nonnull String statementStr, @Nonnull List<Object[]> values) throws SQLException {
+        var ids = new ArrayList<Integer>();
+        var startTime = System.nanoTime();
+
+        if (this.config.getType() == DatabaseType.MYSQL) {
+            try (var statement = conn.prepareStatement(statementStr, Statement.RETURN_GENERATED_KEYS)) {
+                var index = 1;
+                for (var rowValues : values)
+                    index = this.model.bindValues(statement, rowValues, index);
+
+                if (statement.executeUpdate() > 0) {
+                    try (var generatedKeys = statement.getGeneratedKeys()) {
+                        while (generatedKeys.next())
+                            ids.add(generatedKeys.getInt(1));
+                    }
+                }
+            }
+        } else {
+            try (var statement = conn.prepareStatement(statementStr)) {
+                var index = 1;
+                for (var rowValues : values)
+                    index = this.model.bindValues(statement, rowValues, index);
+
+                try (var rs = statement.executeQuery()) {
+                    while (rs.next())
+                        ids.add(rs.getInt(1));
+                }
+            }
+        }
+
+        this.metrics.recordStatement(operation, statementStr, startTime, ids.size());
+        return ids;
+    }
+
+    /**
+     * Inserts multiple entities with multi-row statements in one transaction, updates the ids of the passed entities after completion (if successful).
+     * Either all or none of the entities are inserted.
+     * @return whether the operation was successful
+     */
+    public boolean insertAll(@Nullable Collection<E> entities) {
+        if (entities == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "insertAll", "Tried to insert entities, but none submitted!");
+            return false;
+        }
+
+        if (entities.isEmpty())
+            return true;
+
+        for (var entity : entities) {
+            if (entity == null || this.getId(entity) != 0) {
+                this.plugin.getFpLogger().warning("Couldn't insert entities of type " + this.typeParameterClass.getName() + " as an entity is missing or has an id-value already.");
+                return false;
+            }
+        }
+
+        var entityList = new ArrayList<>(entities);
+        var rowsPerStatement = Math.max(1, Math.min(MAX_BULK_INSERT_ROWS, MAX_BIND_PARAMETERS / Math.max(1, this.model.getValueColumns().size())));
+        List<Integer> ids;
+
+        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Executing SQL bulk-insert of {0} entities into {1}.", entityList.size(), this.tableName);
+
+        try {
+            ids = this.executeWrite(conn -> {
+                var insertedIds = new ArrayList<Integer>();
+                conn.setAutoCommit(false);
+
+                for (var from = 0; from < entityList.size(); from += rowsPerStatement) {
+                    var chunk = entityList.subList(from, Math.min(from + rowsPerStatement, entityList.size()));
+                    var chunkIds = this.executeInsert(
+                            "insertAll",
+                            conn,
+                            this.model.getBulkInsertStatement(chunk.size()),
+                            chunk.stream().map(this.model::getValues).toList()
+                    );
+
+                    if (chunkIds.size() != chunk.size())
+                        throw new SQLException(String.format("Inserted %d rows, but received %d ids.", chunk.size(), chunkIds.size()));
+
+                    insertedIds.addAll(chunkIds);
+                }
+
+                conn.commit();
+                return insertedIds;
+            });
+        } catch (Exception ex) {
+            this.handleError("insertAll", ex);
+            return false;
+        }
+
+        for (var i = 0; i < entityList.size(); i++)
+            this.model.setId(entityList.get(i), ids.get(i));
+
+        this.afterRollback(() -> entityList.forEach(entity -> this.model.setId(entity, null)));
+        this.afterCommit(() -> {
+            entityList.forEach(this::addToCache);
+            this.adjustEntryCount(entityList.size());
+            entityList.forEach(entity -> this.publishChange(EntityChange.Type.INSERT, entity));
+        });
+
+        return true;
+    }
+
+    /**
+     * Gets the entity matching the query or inserts a new one if there is none.
+     * The insert does nothing if it conflicts with a unique constraint, so the query should select the columns of a unique constraint.
+     * If the insert conflicts (the entity was created concurrently), the created entity is read again.
+     * @param query the query selecting the entity, see {@link #get(Query)}
+     * @param factory creates the entity to insert, it mustn't have an id
+     */
+    @Nonnull
+    public GetOrCreateResult<E> getOrCreate(@Nonnull Query query, @Nonnull Supplier<E> factory) {
+        var existing = this.get(query);
+        if (existing != null)
+            return new GetOrCreateResult<>(existing, false);
+
+        var entity = factory.get();
+        if (entity == null || this.getId(entity) != 0) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "getOrCreate", "Couldn't create entity of type {0} as the factory returned none or one with an id-value.", this.typeParameterClass.getName());
+            return new GetOrCreateResult<>(null, false);
+        }
+
+        var statementStr = this.model.getInsertIgnoreStatement();
+        var values = this.model.getValues(entity);
+        logSqlStatement(statementStr, values);
+
+        try {
+            var ids = this.executeWrite(conn -> this.executeInsert("getOrCreate", conn, statementStr, List.<Object[]>of(values)));
+
+            // the existing row might have been inserted just now, so it's read from the primary
+            this.pinToPrimary();
+
+            if (!ids.isEmpty()) {
+                this.model.setId(entity, ids.get(0));
+
+                this.afterRollback(() -> this.model.setId(entity, null));
+                this.afterCommit(() -> {
+                    this.addToCache(entity);
+                    this.adjustEntryCount(1);
+                    this.publishChange(EntityChange.Type.INSERT, entity);
+                });
+
+                return new GetOrCreateResult<>(entity, true);
+            }
+
+            // created concurrently, the miss might be remembered already
+            var created = this.readFromDatabase("getOrCreate", query);
+            created.forEach(this.negativeCache::invalidate);
+            return new GetOrCreateResult<>(created.isEmpty() ? null : created.get(0), false);
+        } catch (Exception ex) {
+            this.handleError("getOrCreate", ex);
+            return new GetOrCreateResult<>(null, false);
+        }
+    }
+
+    /**
+     * Inserts the entity or, if it conflicts with the unique constraint on the given columns, updates the existing row. The id of the passed entity is updated.
+     * Note that MySQL doesn't take a conflict-target, every unique constraint of the table is considered there.
+     * @param conflictColumns the columns of the unique constraint
+     * @return whether the operation was successful
+     */
+    public boolean upsert(@Nullable E entity, @Nonnull String... conflictColumns) {
+        if (entity == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "upsert", "Tried to upsert entity, but none submitted!");
+            return false;
+        }
+
+        if (conflictColumns.length == 0 || Arrays.stream(conflictColumns).anyMatch(column -> this.model.getColumn(column) == null)) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "upsert", "Couldn't upsert entity of type {0} as the conflict-columns {1} are invalid.", this.typeParameterClass.getName(), Arrays.toString(conflictColumns));
+            return false;
+        }
+
+        var statementStr = this.model.getUpsertStatement(Arrays.asList(conflictColumns));
+        var values = this.model.getValues(entity);
+        logSqlStatement(statementStr, values);
+
+        try {
+            var ids = this.executeWrite(conn -> this.executeInsert("upsert", conn, statementStr, List.<Object[]>of(values)));
+            if (ids.isEmpty()) {
+                this.plugin.getFpLogger().warning("Couldn't upsert entity of type " + entity.getClass().getName() + " as the statement didn't return keys.");
                 return false;
             }
 
-            var generatedId = generatedKeys.getInt(1);
-            var idField = entity.getClass().getDeclaredField("id");
-            idField.setAccessible(true);
-            idField.set(entity, generatedId);
+            var previousId = this.model.getId(entity);
+            this.model.setId(entity, ids.get(0));
+
+            this.afterRollback(() -> this.model.setId(entity, previousId));
+            this.afterCommit(() -> {
+                this.addToCache(entity);
 
-            this.cache.add(entity);
+                // whether a row was inserted or updated isn't known
+                this.entryCount.set(-1);
+                this.publishChange(EntityChange.Type.UPSERT, entity);
+            });
 
             return true;
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "insert", ex);
+            this.handleError("upsert", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the left and right id are linked, see {@link LinkEntity}. Answered by the {@link #linkStore} without creating entities.
+     */
+    public boolean existsLink(int left, int right) {
+        if (this.linkStore == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "existsLink", "Tried to check a link, but {0} isn't a link-entity!", this.typeParameterClass.getSimpleName());
             return false;
         }
+
+        if (!this.linkStore.isComplete())
+            return this.exists(new Query().where(this.leftColumn.name(), left).where(this.rightColumn.name(), right));
+
+        return this.linkStore.contains(left, right);
+    }
+
+    /**
+     * Gets the right ids linked to the left id, see {@link LinkEntity}. Answered by the {@link #linkStore} without creating entities.
+     */
+    @Nonnull
+    public int[] getLinked(int left) {
+        if (this.linkStore == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "getLinked", "Tried to get links, but {0} isn't a link-entity!", this.typeParameterClass.getSimpleName());
+            return new int[0];
+        }
+
+        if (!this.linkStore.isComplete())
+            return this.getColumnValues(new Query(this.leftColumn.name(), left), this.rightColumn.name(), Integer.class).stream().mapToInt(Integer::intValue).toArray();
+
+        return this.linkStore.getRights(left);
+    }
+
+    /**
+     * Gets the left ids linked to the right id, see {@link LinkEntity}. Answered by the {@link #linkStore} without creating entities.
+     */
+    @Nonnull
+    public int[] getLinkedReverse(int right) {
+        if (this.linkStore == null) {
+            this.plugin.getFpLogger().warning(CLASS_NAME, "getLinkedReverse", "Tried to get links, but {0} isn't a link-entity!", this.typeParameterClass.getSimpleName());
+            return new int[0];
+        }
+
+        if (!this.linkStore.isComplete())
+            return this.getColumnValues(new Query(this.rightColumn.name(), right), this.leftColumn.name(), Integer.class).stream().mapToInt(Integer::intValue).toArray();
+
+        return this.linkStore.getLefts(right);
+    }
+
+    /**
+     * Asynchronous variant of {@link #exists(Query)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> existsAsync(@Nonnull Query query) {
+        return this.executor.supply(() -> this.exists(query));
     }
 
     /**
-     * Clears the {@link #cache}.
+     * Asynchronous variant of {@link #get(Query)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<E> getAsync(@Nonnull Query query) {
+        return this.executor.supply(() -> this.get(query));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMultiple(Query)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Set<E>> getMultipleAsync(@Nonnull Query query) {
+        return this.executor.supply(() -> this.getMultiple(query));
+    }
+
+    /**
+     * Asynchronous variant of {@link #insert(Object)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> insertAsync(@Nullable E entity) {
+        return this.executor.supply(() -> this.insert(entity));
+    }
+
+    /**
+     * Asynchronous variant of {@link #insertAll(Collection)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> insertAllAsync(@Nullable Collection<E> entities) {
+        return this.executor.supply(() -> this.insertAll(entities));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getOrCreate(Query, Supplier)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<GetOrCreateResult<E>> getOrCreateAsync(@Nonnull Query query, @Nonnull Supplier<E> factory) {
+        return this.executor.supply(() -> this.getOrCreate(query, factory));
+    }
+
+    /**
+     * Asynchronous variant of {@link #upsert(Object, String...)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> upsertAsync(@Nullable E entity, @Nonnull String... conflictColumns) {
+        return this.executor.supply(() -> this.upsert(entity, conflictColumns));
+    }
+
+    /**
+     * Asynchronous variant of {@link #update(Object)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> updateAsync(@Nullable E entity) {
+        return this.executor.supply(() -> this.update(entity));
+    }
+
+    /**
+     * Asynchronous variant of {@link #delete(Object)}, runs on the {@link DatabaseExecutor}.
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> deleteAsync(@Nullable E entity) {
+        return this.executor.supply(() -> this.delete(entity));
+    }
+
+    /**
+     * @return an executor that runs tasks on the server-thread, used to continue with the results of the asynchronous operations,
+     * for instance {@code repo.getAsync(query).thenAcceptAsync(entity -> ..., repo.getMainThreadExecutor())}
+     */
+    @Nonnull
+    public Executor getMainThreadExecutor() {
+        return this.executor.getMainThreadExecutor();
+    }
+
+    /**
+     * Clears the {@link #cache}. Repositories with the {@link CachePolicy#EAGER} policy load the table again.
      */
     public void clearCache() {
         this.plugin.getFpLogger().debugGrouped("DATABASE_CACHE", "Clearing cache of DataRepoProvider<{0}>.", this.typeParameterClass.getSimpleName());
         this.cache.clear();
+        this.negativeCache.clear();
+        this.entryCount.set(-1);
+
+        if (this.linkStore != null)
+            this.preloadLinks();
+        else if (this.cachePolicy == CachePolicy.EAGER)
+            this.preload();
     }
 
     /**
-     * Clears the SQL table and cache. There is no safeguard here, should be called with care.
+     * Drops the cached state after the table's rows were replaced outside of this repository (see {@link DatabaseBackup#restore(java.nio.file.Path)}).
+     * Queued updates are discarded, as they would overwrite the new rows, and the change is published as {@link EntityChange.Type#CLEAR}.
      */
-    public void clear() {
-        this.plugin.getFpLogger().info("Clearing database-table {0}...", this.tableName);
+    void reload() {
+        synchronized (this.pendingUpdates) {
+            this.pendingUpdates.clear();
+        }
 
-        String statementStr = String.format("DELETE FROM %s;", this.tableName);
-        logSqlStatement(statementStr);
+        this.clearCache();
+        this.publishChange(EntityChange.Type.CLEAR, null);
+    }
+
+    /**
+     * Loads the entities with the given ids again after another node changed them, see {@link CacheInvalidator}.
+     * Cached instances are replaced or removed if the entity was deleted. Entities with queued updates of this node are kept.
+     * Lazy caches only evict the entities, complete caches and the {@link #linkStore} answer misses without the database, so they are refreshed.
+     */
+    public void refresh(@Nonnull Collection<Integer> ids) {
+        var refreshIds = new HashSet<>(ids);
+        synchronized (this.pendingUpdates) {
+            refreshIds.removeAll(this.pendingUpdates.keySet());
+        }
+
+        // the changes might affect queries that found nothing and the row-count
+        this.negativeCache.clear();
+        this.entryCount.set(-1);
+
+        if (refreshIds.isEmpty())
+            return;
+
+        if (!this.isCacheComplete() && this.linkStore == null) {
+            refreshIds.forEach(this.cache::removeById);
+            return;
+        }
+
+        var query = new Query().whereIn("id", refreshIds);
+        var statementStr = MessageFormat.format(query.toSelectQuery("*", this.config.getType()), this.tableName);
+        var whereValues = query.getWhereValues();
+        logSqlStatement(statementStr, whereValues);
 
         try (
-                var conn = this.getConnection();
+                var conn = this.getPooledConnection();
                 var statement = conn.prepareStatement(statementStr)
         ) {
-            statement.executeUpdate();
+            this.bindWhereValues(statement, whereValues);
+            var startTime = System.nanoTime();
+
+            var entities = this.readEntities(statement);
+            this.metrics.recordStatement("refresh", statementStr, startTime, entities.size());
+
+            // the loaded entities replace the cached instances, the others were deleted
+            for (var entity : entities) {
+                refreshIds.remove(this.getId(entity));
+                this.addToCache(entity);
+            }
+
+            for (var deletedId : refreshIds) {
+                this.cache.removeById(deletedId);
+                if (this.linkStore != null)
+                    this.linkStore.remove(deletedId);
+            }
+        } catch (Exception ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "refresh", ex);
+
+            // without the current rows the cache can't be trusted anymore
             this.clearCache();
+        }
+    }
+
+    @Nonnull
+    EntityModel<E> getModel() {
+        return this.model;
+    }
+
+    /**
+     * @return a snapshot of the cache's statistics
+     */
+    @Nonnull
+    public EntityCache.Stats getCacheStats() {
+        return this.cache.getStats();
+    }
+
+    /**
+     * Clears the SQL table and cache. There is no safeguard here, should be called with care.
+     */
+    public void clear() {
+        this.plugin.getFpLogger().info("Clearing database-table {0}...", this.tableName);
+
+        String statementStr = this.model.getClearStatement();
+        logSqlStatement(statementStr);
+
+        try {
+            this.executeWrite(conn -> {
+                try (var statement = conn.prepareStatement(statementStr)) {
+                    var startTime = System.nanoTime();
+                    this.metrics.recordStatement("clear", statementStr, startTime, statement.executeUpdate());
+                    return null;
+                }
+            });
+
+            synchronized (this.pendingUpdates) {
+                this.pendingUpdates.clear();
+            }
+
+            this.afterCommit(() -> {
+                // the table is empty now, so an eagerly loaded cache is complete
+                this.cache.clear();
+                this.cache.setComplete(this.cachePolicy == CachePolicy.EAGER);
+                this.negativeCache.clear();
+                this.entryCount.set(0);
+
+                if (this.linkStore != null) {
+                    this.linkStore.clear();
+                    this.linkStore.setComplete(true);
+                }
+
+                this.publishChange(EntityChange.Type.CLEAR, null);
+            });
         } catch (Exception ex) {
-            this.plugin.getFpLogger().error(CLASS_NAME, "clear", ex);
+            this.handleError("clear", ex);
         }
     }
 
 
     /**
-     * Logs a sql statement.
+     * Logs a sql statement. Nothing is built unless the DATABASE_QUERY group is active.
      * @param statementStr the sql-statement. placeholder: ?
      * @param args the arguments to replace in the statement
      */
     private void logSqlStatement(@Nonnull String statementStr, @Nonnull Object... args) {
-        for (var arg : args)
-            statementStr = statementStr.replaceFirst("\\?", arg == null ? "NULL" : arg.toString());
+        if (!this.plugin.getFpLogger().isGroupActive("DATABASE_QUERY"))
+            return;
 
-        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Executing SQL: \"{0}\"", statementStr);
+        var message = new StringBuilder(statementStr.length() + args.length * 8);
+        var argIndex = 0;
+
+        for (var i = 0; i < statementStr.length(); i++) {
+            var character = statementStr.charAt(i);
+
+            if (character == '?' && argIndex < args.length) {
+                var arg = args[argIndex++];
+                message.append(arg == null ? "NULL" : arg.toString());
+            } else
+                message.append(character);
+        }
+
+        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Executing SQL: \"{0}\"", message);
+    }
+
+    /**
+     * Logs a sql statement with the entity's values, which are only read if the DATABASE_QUERY group is active.
+     */
+    private void logEntityStatement(@Nonnull String statementStr, @Nonnull E entity) {
+        if (this.plugin.getFpLogger().isGroupActive("DATABASE_QUERY"))
+            this.logSqlStatement(statementStr, this.model.getValues(entity));
     }
 }
@@ -0,0 +1,482 @@
+package de.fantasypixel.rework.framework.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the tables of all {@link DataRepoProvider} instances to a file and restores them, while the server keeps running.
+ * <br><br>
+ * The file is a gzip-compressed text with one JSON object per line: a header, then for every table a line with its name followed by its rows.
+ * The rows hold the values as they are read by the {@link EntityModel}, so a backup can be restored into any {@link DatabaseType},
+ * for instance to migrate from SQLite to PostgreSQL (export, switch the database, restore).
+ * <br><br>
+ * The export reads all tables in one read-only transaction, so the file is a consistent snapshot even while the repositories keep writing.
+ * The tables are read page by page with keyset-pagination over the id. Exports and restores run on their own thread, one at a time.
+ */
+public class DatabaseBackup {
+
+    private final static String CLASS_NAME = DatabaseBackup.class.getSimpleName();
+    private final static int FORMAT_VERSION = 1;
+    private final static String BACKUP_KEY = "$backup";
+    private final static String TABLE_KEY = "$table";
+    private final static String FILE_EXTENSION = ".ndjson.gz";
+    private final static int PAGE_SIZE = 1000;
+    private final static int RESTORE_BATCH_SIZE = 500;
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The result of an export or restore.
+     * @param file the backup-file
+     * @param rows the amount of exported (or restored) rows by the table's name
+     * @param duration the duration in milliseconds
+     */
+    public record Result(@Nonnull Path file, @Nonnull Map<String, Integer> rows, long duration) {
+
+        public int totalRows() {
+            return this.rows.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+    }
+
+    /**
+     * Inserts the rows of one table of the backup.
+     */
+    private class TableRestore<E> implements AutoCloseable {
+
+        private final EntityModel<E> model;
+        private final PreparedStatement statement;
+        private int batchedRows;
+        private int rows;
+
+        private TableRestore(@Nonnull Connection conn, @Nonnull EntityModel<E> model) throws SQLException {
+            this.model = model;
+
+            try (var statement = conn.prepareStatement(model.getClearStatement())) {
+                statement.executeUpdate();
+            }
+
+            // the ids are kept, other entities might reference them
+            this.statement = conn.prepareStatement(String.format(
+                    "INSERT INTO %s (%s, %s) VALUES (%s)",
+                    model.getTableName(),
+                    model.quote("id"),
+                    model.getValueColumns().stream().map(column -> model.quote(column.name())).collect(Collectors.joining(", ")),
+                    String.join(", ", Collections.nCopies(model.getColumns().size(), "?"))
+            ));
+        }
+
+        /**
+         * Queues the insert of a row, columns missing in the row keep the entity's default value.
+         */
+        private void add(@Nonnull JsonObject row) throws SQLException {
+            var entity = this.model.newInstance();
+
+            for (var column : this.model.getColumns()) {
+                var value = row.get(column.name());
+                if (value == null || (value.isJsonNull() && column.type().isPrimitive()))
+                    continue;
+
+                this.model.setValue(column, entity, value.isJsonNull() ? null : DatabaseBackup.this.gson.fromJson(value, column.type()));
+            }
+
+            this.statement.setObject(1, this.model.getId(entity));
+            this.model.bindValues(this.statement, entity, 2);
+            this.statement.addBatch();
+            this.rows++;
+
+            if (++this.batchedRows >= RESTORE_BATCH_SIZE)
+                this.executeBatch();
+        }
+
+        private void executeBatch() throws SQLException {
+            if (this.batchedRows == 0)
+                return;
+
+            this.statement.executeBatch();
+            this.batchedRows = 0;
+        }
+
+        /**
+         * Inserts the remaining rows. PostgreSQL's identity-sequences don't follow explicitly inserted ids, so they are moved behind the highest id.
+         */
+        private void finish(@Nonnull Connection conn) throws SQLException {
+            this.executeBatch();
+
+            if (DatabaseBackup.this.config.getType() != DatabaseType.POSTGRESQL)
+                return;
+
+            try (var statement = conn.createStatement()) {
+                statement.execute(String.format(
+                        "SELECT setval(pg_get_serial_sequence('%s', 'id'), COALESCE(MAX(%s), 0) + 1, false) FROM %s",
+                        this.model.getTableName(),
+                        this.model.quote("id"),
+                        this.model.getTableName()
+                ));
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            this.statement.close();
+        }
+
+    }
+
+    private final FPRework plugin;
+    private final DatabaseConfig config;
+    private final Gson gson;
+    @Nullable private final SqliteWriter sqliteWriter;
+    private final Collection<DataRepoProvider<?>> repositories;
+    private final AtomicBoolean running;
+
+    /**
+     * @param repositories the repositories whose tables are exported and restored, read when a backup starts
+     */
+    public DatabaseBackup(@Nonnull DatabaseContext context, @Nonnull Collection<DataRepoProvider<?>> repositories) {
+        this.plugin = context.getPlugin();
+        this.config = context.getConfig();
+        this.gson = this.plugin.getGson();
+        this.sqliteWriter = context.getSqliteWriter();
+        this.repositories = repositories;
+        this.running = new AtomicBoolean(false);
+    }
+
+    /**
+     * @return the directory the backups created with {@link #createBackup()} are stored in
+     */
+    @Nonnull
+    public Path getBackupDirectory() {
+        return this.plugin.getDataFolder().toPath().resolve("backups");
+    }
+
+    /**
+     * Exports the database into a new file in the {@link #getBackupDirectory() backup-directory}, named by the current time.
+     * @return the future completed with the result or null if the export failed
+     */
+    @Nonnull
+    public CompletableFuture<Result> createBackup() {
+        var fileName = "backup-" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date()) + FILE_EXTENSION;
+        return this.export(this.getBackupDirectory().resolve(fileName));
+    }
+
+    /**
+     * Exports the tables into the file, which is replaced once the export is complete. Queued updates are flushed first.
+     * @return the future completed with the result or null if the export failed
+     */
+    @Nonnull
+    public CompletableFuture<Result> export(@Nonnull Path file) {
+        return this.runExclusive("export", () -> this.exportTables(file));
+    }
+
+    /**
+     * Replaces the contents of the tables found in the backup with its rows in one transaction, other tables are left untouched.
+     * The caches of the restored repositories are dropped and the change is published as {@link EntityChange.Type#CLEAR}.
+     * @return the future completed with the result or null if the restore failed (nothing is changed then)
+     */
+    @Nonnull
+    public CompletableFuture<Result> restore(@Nonnull Path file) {
+        return this.runExclusive("restore", () -> this.restoreTables(file));
+    }
+
+    /**
+     * Runs the task on a new thread unless another export or restore is running.
+     */
+    @Nonnull
+    private CompletableFuture<Result> runExclusive(@Nonnull String method, @Nonnull Callable<Result> task) {
+        if (!this.running.compareAndSet(false, true)) {
+            this.plugin.getFpLogger().warning("Skipped the database-{0} as another export or restore is running.", method);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var future = new CompletableFuture<Result>();
+        var thread = new Thread(() -> {
+            Result result = null;
+
+            try {
+                result = task.call();
+            } catch (Exception ex) {
+                this.plugin.getFpLogger().warning("The database-{0} failed.", method);
+                this.plugin.getFpLogger().error(CLASS_NAME, method, ex);
+            }
+
+            this.running.set(false);
+            future.complete(result);
+        }, "FP-Database-Backup");
+
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * @return the models of the repositories by their table, every table once
+     */
+    @Nonnull
+    private Map<String, DataRepoProvider<?>> getRepositoriesByTable() {
+        var repositoriesByTable = new LinkedHashMap<String, DataRepoProvider<?>>();
+        this.repositories.forEach(repository -> repositoriesByTable.putIfAbsent(repository.getModel().getTableName(), repository));
+        return repositoriesByTable;
+    }
+
+    @Nonnull
+    private Result exportTables(@Nonnull Path file) throws IOException, SQLException {
+        var startTime = System.currentTimeMillis();
+        var repositoriesByTable = this.getRepositoriesByTable();
+        repositoriesByTable.values().forEach(DataRepoProvider::flushUpdates);
+
+        this.plugin.getFpLogger().info("Exporting {0} database-tables to {1}...", repositoriesByTable.size(), file);
+
+        var directory = file.toAbsolutePath().getParent();
+        if (directory != null)
+            Files.createDirectories(directory);
+
+        // the file is only replaced by a complete export
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        var rows = new LinkedHashMap<String, Integer>();
+
+        try (
+                var conn = DataRepoProvider.getConnection(this.plugin, this.config);
+                var writer = this.openWriter(tempFile)
+        ) {
+            this.beginSnapshot(conn);
+
+            var header = new JsonObject();
+            header.addProperty(BACKUP_KEY, FORMAT_VERSION);
+            header.addProperty("type", this.config.getType().name());
+            header.addProperty("created", System.currentTimeMillis());
+            this.writeLine(writer, header);
+
+            for (var repository : repositoriesByTable.values())
+                rows.put(repository.getModel().getTableName(), this.exportTable(conn, repository.getModel(), writer));
+
+            this.endSnapshot(conn);
+        } catch (IOException | SQLException | RuntimeException ex) {
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        var result = new Result(file, rows, System.currentTimeMillis() - startTime);
+        this.plugin.getFpLogger().info("Exported {0} rows to {1} in {2}ms.", result.totalRows(), file, result.duration());
+        return result;
+    }
+
+    /**
+     * Writes the table's name followed by its rows.
+     * @return the amount of written rows
+     */
+    private <E> int exportTable(@Nonnull Connection conn, @Nonnull EntityModel<E> model, @Nonnull BufferedWriter writer) throws IOException, SQLException {
+        var tableHeader = new JsonObject();
+        tableHeader.addProperty(TABLE_KEY, model.getTableName());
+        this.writeLine(writer, tableHeader);
+
+        var rows = 0;
+        Integer lastId = null;
+
+        while (true) {
+            var page = new Query();
+            if (lastId != null)
+                page.where("id", Query.Operator.GT, lastId);
+            page.orderBy("id").limit(PAGE_SIZE);
+
+            var statementStr = MessageFormat.format(page.toSelectQuery("*", this.config.getType()), model.getTableName());
+            var whereValues = page.getWhereValues();
+            var pageRows = 0;
+
+            try (var statement = conn.prepareStatement(statementStr)) {
+                for (var i = 0; i < whereValues.length; i++)
+                    statement.setObject(i + 1, whereValues[i]);
+
+                try (var rs = statement.executeQuery()) {
+                    var rowMapper = model.getRowMapper(rs.getMetaData());
+
+                    while (rs.next()) {
+                        var entity = rowMapper.map(rs);
+                        var row = new JsonObject();
+                        for (var column : model.getColumns())
+                            row.add(column.name(), this.gson.toJsonTree(model.getValue(column, entity)));
+
+                        this.writeLine(writer, row);
+                        lastId = model.getId(entity);
+                        pageRows++;
+                    }
+                }
+            }
+
+            rows += pageRows;
+            if (pageRows < PAGE_SIZE)
+                return rows;
+        }
+    }
+
+    /**
+     * Starts the read-only transaction all tables are exported in.
+     * SQLite connections begin immediate transactions, which would hold the write-lock during the export, so a deferred one is begun there.
+     */
+    private void beginSnapshot(@Nonnull Connection conn) throws SQLException {
+        if (this.config.getType() == DatabaseType.SQLITE) {
+            try (var statement = conn.createStatement()) {
+                statement.execute("BEGIN DEFERRED");
+            }
+            return;
+        }
+
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        conn.setReadOnly(true);
+        conn.setAutoCommit(false);
+    }
+
+    private void endSnapshot(@Nonnull Connection conn) throws SQLException {
+        if (this.config.getType() == DatabaseType.SQLITE) {
+            try (var statement = conn.createStatement()) {
+                statement.execute("COMMIT");
+            }
+            return;
+        }
+
+        conn.commit();
+    }
+
+    @Nonnull
+    private Result restoreTables(@Nonnull Path file) throws SQLException {
+        var startTime = System.currentTimeMillis();
+        var repositoriesByTable = this.getRepositoriesByTable();
+        repositoriesByTable.values().forEach(DataRepoProvider::flushUpdates);
+
+        this.plugin.getFpLogger().info("Restoring the database from {0}...", file);
+
+        Map<String, Integer> rows;
+        if (this.sqliteWriter != null)
+            rows = this.sqliteWriter.execute(conn -> this.restoreRows(conn, file, repositoriesByTable));
+        else {
+            try (var conn = DataRepoProvider.getConnection(this.plugin, this.config)) {
+                conn.setAutoCommit(false);
+
+                try {
+                    rows = this.restoreRows(conn, file, repositoriesByTable);
+                    conn.commit();
+                } catch (SQLException | RuntimeException ex) {
+                    conn.rollback();
+                    throw ex;
+                }
+            }
+        }
+
+        rows.keySet().forEach(tableName -> repositoriesByTable.get(tableName).reload());
+
+        var result = new Result(file, rows, System.currentTimeMillis() - startTime);
+        this.plugin.getFpLogger().info("Restored {0} rows from {1} in {2}ms.", result.totalRows(), file, result.duration());
+        return result;
+    }
+
+    /**
+     * Reads the backup and inserts its rows, the caller commits them.
+     * @return the amount of restored rows by the table's name
+     */
+    @Nonnull
+    private Map<String, Integer> restoreRows(@Nonnull Connection conn, @Nonnull Path file, @Nonnull Map<String, DataRepoProvider<?>> repositoriesByTable) throws SQLException {
+        var rows = new LinkedHashMap<String, Integer>();
+
+        try (var reader = this.openReader(file)) {
+            var headerLine = reader.readLine();
+            var header = headerLine != null ? JsonParser.parseString(headerLine).getAsJsonObject() : null;
+            if (header == null || !header.has(BACKUP_KEY))
+                throw new SQLException("The file " + file + " isn't a database-backup.");
+            if (header.get(BACKUP_KEY).getAsInt() > FORMAT_VERSION)
+                throw new SQLException("The backup " + file + " was created by a newer version.");
+
+            TableRestore<?> table = null;
+            String tableName = null;
+            String line;
+
+            try {
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank())
+                        continue;
+
+                    var json = JsonParser.parseString(line).getAsJsonObject();
+                    if (!json.has(TABLE_KEY)) {
+                        if (table != null)
+                            table.add(json);
+                        continue;
+                    }
+
+                    if (table != null) {
+                        table.finish(conn);
+                        table.close();
+                        rows.put(tableName, table.rows);
+                    }
+
+                    tableName = json.get(TABLE_KEY).getAsString();
+                    var repository = repositoriesByTable.get(tableName);
+                    table = repository != null ? new TableRestore<>(conn, repository.getModel()) : null;
+
+                    if (repository == null)
+                        this.plugin.getFpLogger().warning("The backup contains the table {0}, which has no data-repo. The table is skipped.", tableName);
+                }
+
+                if (table != null) {
+                    table.finish(conn);
+                    rows.put(tableName, table.rows);
+                }
+            } finally {
+                if (table != null)
+                    table.close();
+            }
+        } catch (IOException ex) {
+            throw new SQLException("Couldn't read the backup " + file + ".", ex);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Opens a writer compressing into the file through a file-channel.
+     */
+    @Nonnull
+    private BufferedWriter openWriter(@Nonnull Path file) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Nonnull
+    private BufferedReader openReader(@Nonnull Path file) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the object into one line, the plugin's gson pretty-prints, so the compact {@link JsonObject#toString()} is used.
+     */
+    private void writeLine(@Nonnull BufferedWriter writer, @Nonnull JsonObject json) throws IOException {
+        writer.write(json.toString());
+        writer.newLine();
+    }
+
+}
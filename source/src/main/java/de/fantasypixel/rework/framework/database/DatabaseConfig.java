@@ -3,6 +3,8 @@ package de.fantasypixel.rework.framework.database;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.List;
+
 /**
  * The db-config. Note: This config is read from environment variables, no gson file!
  */
@@ -16,7 +18,95 @@ public class DatabaseConfig {
     String password;
     String port;
     String name;
-    boolean preload;
-    int preloadLimit;
+
+    /**
+     * The maximum amount of connections in the {@link ConnectionPool}.
+     */
+    int poolSize;
+
+    /**
+     * The amount of milliseconds to wait for a connection before the borrow fails.
+     */
+    long poolTimeout;
+
+    /**
+     * The amount of milliseconds a connection can be idle before it is validated again.
+     */
+    long poolValidationInterval;
+
+    /**
+     * The amount of ticks between two flushes of the queued write-behind updates, see {@link DataRepoProvider#queueUpdate(Object)}.
+     */
+    long writeBehindInterval;
+
+    /**
+     * The maximum amount of updates sent to the database in one batch.
+     */
+    int writeBehindBatchSize;
+
+    /**
+     * The amount of threads running the asynchronous repository-operations, see {@link DatabaseExecutor}.
+     */
+    int asyncThreads;
+
+    /**
+     * The maximum amount of queued asynchronous operations.
+     */
+    int asyncQueueSize;
+
+    /**
+     * The amount of milliseconds a query that matched nothing is remembered, see {@link NegativeCache}.
+     */
+    long negativeCacheTtl;
+
+    /**
+     * The maximum amount of remembered queries per repository.
+     */
+    int negativeCacheSize;
+
+    /**
+     * The amount of milliseconds after which a statement is logged as slow, 0 disables the slow-query log. See {@link DatabaseMetrics}.
+     */
+    long slowQueryThreshold;
+
+    /**
+     * The amount of ticks between two polls of the changes of other nodes sharing the database, 0 disables the cross-node invalidation. See {@link CacheInvalidator}.
+     */
+    long invalidationInterval;
+
+    /**
+     * The id of this node, so a node skips its own changes.
+     */
+    String nodeId;
+
+    /**
+     * The endpoints ({@code host:port}, the port defaults to {@link #port}) of the read-replicas, reads are load-balanced across them. See {@link ReplicaRouter}.
+     */
+    List<String> readReplicas;
+
+    /**
+     * The amount of milliseconds the reads of a repository go to the primary after it wrote, as the replicas might lag behind.
+     */
+    long replicaPinDuration;
+
+    /**
+     * The synchronous-pragma of SQLite connections (OFF, NORMAL, FULL or EXTRA).
+     */
+    String sqliteSynchronous;
+
+    /**
+     * The page-cache of every SQLite connection in KiB.
+     */
+    int sqliteCacheSize;
+
+    /**
+     * The amount of bytes of the SQLite file mapped into memory, 0 disables memory-mapped I/O.
+     */
+    long sqliteMmapSize;
+
+    /**
+     * The maximum amount of writes committed together by the {@link SqliteWriter}.
+     */
+    int sqliteWriteBatchSize;
 
 }
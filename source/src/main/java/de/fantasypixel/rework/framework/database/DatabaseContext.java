@@ -0,0 +1,39 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+
+/**
+ * The database-infrastructure shared by all {@link DataRepoProvider} instances.
+ */
+@Getter
+@AllArgsConstructor
+public class DatabaseContext {
+
+    private final FPRework plugin;
+    private final DatabaseConfig config;
+    private final ConnectionPool connectionPool;
+    private final DatabaseExecutor executor;
+    private final DatabaseMetrics metrics;
+    private final TransactionManager transactionManager;
+    private final EntityChangePublisher changePublisher;
+
+    /**
+     * Null if the cross-node invalidation is disabled.
+     */
+    @Nullable private final CacheInvalidator invalidator;
+
+    /**
+     * Null if no read-replicas are configured.
+     */
+    @Nullable private final ReplicaRouter replicaRouter;
+
+    /**
+     * Null if the database isn't a {@link DatabaseType#SQLITE} database.
+     */
+    @Nullable private final SqliteWriter sqliteWriter;
+
+}
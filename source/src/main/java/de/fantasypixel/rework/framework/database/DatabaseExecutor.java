@@ -0,0 +1,88 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the asynchronous operations of the {@link DataRepoProvider} instances on a bounded pool of database-threads.
+ * <br><br>
+ * If the queue is full (or the executor was shut down), the task is run on the calling thread instead, which slows down callers that submit faster than the database can keep up.
+ * Results can be handed back to the server-thread with {@link #getMainThreadExecutor()}.
+ */
+public class DatabaseExecutor {
+
+    private final static String CLASS_NAME = DatabaseExecutor.class.getSimpleName();
+
+    private final FPRework plugin;
+    private final ThreadPoolExecutor executor;
+    private final Executor mainThreadExecutor;
+
+    public DatabaseExecutor(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config) {
+        this.plugin = plugin;
+
+        var threadCount = Math.max(1, config.getAsyncThreads());
+        var threadCounter = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getAsyncQueueSize())),
+                runnable -> {
+                    var thread = new Thread(runnable, "FP-Database-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> runnable.run()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.mainThreadExecutor = task -> {
+            if (plugin.getServer().isPrimaryThread())
+                task.run();
+            else
+                plugin.getServer().getScheduler().runTask(plugin, task);
+        };
+
+        this.plugin.getFpLogger().debug("Created database-executor with {0} threads and a queue-size of {1}.", threadCount, config.getAsyncQueueSize());
+    }
+
+    /**
+     * Runs the task on a database-thread.
+     * @return the future completed with the task's result (on the database-thread)
+     */
+    @Nonnull
+    public <T> CompletableFuture<T> supply(@Nonnull Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, this.executor);
+    }
+
+    /**
+     * @return an executor running tasks on the server-thread, tasks submitted from the server-thread are run immediately
+     */
+    @Nonnull
+    public Executor getMainThreadExecutor() {
+        return this.mainThreadExecutor;
+    }
+
+    /**
+     * Stops accepting new tasks and waits for the queued ones to finish.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+
+        try {
+            if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                this.plugin.getFpLogger().warning("The database-executor didn't finish its tasks within 10 seconds, {0} tasks are discarded.", this.executor.shutdownNow().size());
+            }
+        } catch (InterruptedException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "shutdown", ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
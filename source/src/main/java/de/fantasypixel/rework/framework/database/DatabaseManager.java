@@ -1,13 +1,79 @@
 package de.fantasypixel.rework.framework.database;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /**
  * The database-manager exposed to modules with the {@link de.fantasypixel.rework.framework.provider.Auto} annotation.
  */
 public interface DatabaseManager {
 
     /**
-     * Clears the whole database. This method should be called with extreme care as there isn't any security / backups internally.
+     * Clears the whole database. This method should be called with extreme care as there isn't any security internally, create a backup first (see {@link #createBackup()}).
      */
     void clearDatabase();
 
+    /**
+     * @return the current statistics of the shared {@link ConnectionPool} or null if the database isn't connected
+     */
+    @Nullable
+    ConnectionPool.Stats getConnectionPoolStats();
+
+    /**
+     * @return a snapshot of the latencies, cache-counters and slow queries of all repositories or null if the database isn't connected
+     */
+    @Nullable
+    DatabaseMetrics.Snapshot getMetrics();
+
+    /**
+     * Runs the work in one database-transaction, see {@link TransactionManager#inTransaction(Consumer)}.
+     * All repository operations called by the work on the current thread are committed together, or rolled back if one of them fails.
+     * @return whether the work was committed, false if the database isn't connected
+     */
+    boolean inTransaction(@Nonnull Consumer<Transaction> work);
+
+    /**
+     * Runs the work in one database-transaction on a database-thread (see {@link DatabaseExecutor}), like {@link #inTransaction(Consumer)}.
+     * @return a future of whether the work was committed, false if the database isn't connected
+     */
+    @Nonnull
+    CompletableFuture<Boolean> inTransactionAsync(@Nonnull Consumer<Transaction> work);
+
+    /**
+     * Replaces the transport carrying the cache-invalidations between the nodes sharing the database, the {@link ChangeLogTransport} by default.
+     * Does nothing if the cross-node invalidation is disabled.
+     */
+    void setInvalidationTransport(@Nonnull InvalidationTransport transport);
+
+    /**
+     * Exports all tables into a new file in the {@link #getBackupDirectory() backup-directory} without blocking the caller, see {@link DatabaseBackup}.
+     * @return the future completed (on the backup-thread) with the result or null if the export failed or the database isn't connected
+     */
+    @Nonnull
+    CompletableFuture<DatabaseBackup.Result> createBackup();
+
+    /**
+     * Exports all tables into the file without blocking the caller, see {@link DatabaseBackup#export(Path)}.
+     * @return the future completed (on the backup-thread) with the result or null if the export failed or the database isn't connected
+     */
+    @Nonnull
+    CompletableFuture<DatabaseBackup.Result> exportDatabase(@Nonnull Path file);
+
+    /**
+     * Replaces the contents of the tables found in the backup-file without blocking the caller, see {@link DatabaseBackup#restore(Path)}.
+     * The backup can be created with any database-type.
+     * @return the future completed (on the backup-thread) with the result or null if the restore failed or the database isn't connected
+     */
+    @Nonnull
+    CompletableFuture<DatabaseBackup.Result> restoreDatabase(@Nonnull Path file);
+
+    /**
+     * @return the directory the backups are created in or null if the database isn't connected
+     */
+    @Nullable
+    Path getBackupDirectory();
+
 }
@@ -0,0 +1,186 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The in-process registry of the database-metrics, shared by all {@link DataRepoProvider} instances and exposed by the {@link DatabaseManager}.
+ * <br><br>
+ * Every repository records the latency and the returned rows of the statements it executes per operation (like {@code get} or {@code insertAll})
+ * and the time it waited for pooled connections. Operations answered by the cache don't execute statements, they are counted by the cache-statistics.
+ * <br><br>
+ * Statements slower than {@link DatabaseConfig#getSlowQueryThreshold()} are logged with the calling class and the last ones are kept, see {@link Snapshot#slowQueries()}.
+ */
+public class DatabaseMetrics {
+
+    private final static int MAX_SLOW_QUERIES = 100;
+    private final static int MAX_STATEMENT_LENGTH = 500;
+    private final static StackWalker STACK_WALKER = StackWalker.getInstance();
+    private final static String ROOT_PACKAGE = FPRework.class.getPackageName() + ".";
+    private final static String DATABASE_PACKAGE = DatabaseMetrics.class.getPackageName() + ".";
+
+    /**
+     * A statement that took longer than the threshold.
+     * @param timestamp the time the statement finished
+     * @param statement the statement with placeholders instead of the values
+     * @param caller the class, method and line outside the database-framework that started the operation, "unknown" for asynchronous operations
+     */
+    public record SlowQuery(long timestamp, @Nonnull String repository, @Nonnull String operation, @Nonnull String statement, double duration, int rows, @Nonnull String caller) {}
+
+    /**
+     * @param latency the latency of the operation's statements
+     * @param rows the total amount of rows returned (or written) by the operation's statements
+     */
+    public record OperationSnapshot(@Nonnull LatencyHistogram.Snapshot latency, long rows) {}
+
+    /**
+     * @param operations the metrics of every operation that executed statements, by the operation's name
+     * @param connectionWait the time spent waiting for pooled connections
+     * @param cache the statistics of the repository's cache
+     * @param negativeCacheHits the amount of lookups answered by the {@link NegativeCache}
+     */
+    public record RepositorySnapshot(@Nonnull Map<String, OperationSnapshot> operations, @Nonnull LatencyHistogram.Snapshot connectionWait, @Nonnull EntityCache.Stats cache, long negativeCacheHits) {}
+
+    /**
+     * @param repositories the metrics of every repository, by the entity's name
+     * @param slowQueries the last slow queries, the oldest first
+     */
+    public record Snapshot(@Nonnull Map<String, RepositorySnapshot> repositories, @Nonnull List<SlowQuery> slowQueries) {}
+
+    /**
+     * The metrics of one repository.
+     */
+    public class RepositoryMetrics {
+
+        private final String repository;
+        private final Map<String, LatencyHistogram> latencies;
+        private final Map<String, LongAdder> rows;
+        private final LatencyHistogram connectionWait;
+        private final Supplier<EntityCache.Stats> cacheStats;
+        private final LongSupplier negativeCacheHits;
+
+        private RepositoryMetrics(@Nonnull String repository, @Nonnull Supplier<EntityCache.Stats> cacheStats, @Nonnull LongSupplier negativeCacheHits) {
+            this.repository = repository;
+            this.latencies = new ConcurrentHashMap<>();
+            this.rows = new ConcurrentHashMap<>();
+            this.connectionWait = new LatencyHistogram();
+            this.cacheStats = cacheStats;
+            this.negativeCacheHits = negativeCacheHits;
+        }
+
+        /**
+         * Records an executed statement and logs it if it was slow.
+         * @param startTime the {@link System#nanoTime()} the statement was started at
+         * @param rows the amount of returned (or written) rows
+         */
+        public void recordStatement(@Nonnull String operation, @Nonnull String statementStr, long startTime, int rows) {
+            var duration = System.nanoTime() - startTime;
+
+            this.latencies.computeIfAbsent(operation, key -> new LatencyHistogram()).record(duration);
+            this.rows.computeIfAbsent(operation, key -> new LongAdder()).add(Math.max(0, rows));
+
+            if (DatabaseMetrics.this.slowQueryThreshold > 0 && duration >= DatabaseMetrics.this.slowQueryThreshold * 1_000_000)
+                DatabaseMetrics.this.addSlowQuery(new SlowQuery(
+                        System.currentTimeMillis(),
+                        this.repository,
+                        operation,
+                        // bulk-statements repeat their rows' placeholders, the shape is clear from the beginning
+                        statementStr.length() > MAX_STATEMENT_LENGTH ? statementStr.substring(0, MAX_STATEMENT_LENGTH) + "..." : statementStr,
+                        duration / 1_000_000d,
+                        rows,
+                        findCaller()
+                ));
+        }
+
+        public void recordConnectionWait(long nanos) {
+            this.connectionWait.record(nanos);
+        }
+
+        @Nonnull
+        public RepositorySnapshot getSnapshot() {
+            var operations = new TreeMap<String, OperationSnapshot>();
+            this.latencies.forEach((operation, latency) -> operations.put(
+                    operation,
+                    new OperationSnapshot(latency.getSnapshot(), this.rows.getOrDefault(operation, new LongAdder()).sum())
+            ));
+
+            return new RepositorySnapshot(operations, this.connectionWait.getSnapshot(), this.cacheStats.get(), this.negativeCacheHits.getAsLong());
+        }
+
+    }
+
+    private final FPRework plugin;
+    private final long slowQueryThreshold;
+    private final Map<String, RepositoryMetrics> repositories;
+    private final Deque<SlowQuery> slowQueries;
+
+    /**
+     * @param slowQueryThreshold the amount of milliseconds after which a statement is logged as slow, 0 disables the slow-query log
+     */
+    public DatabaseMetrics(@Nonnull FPRework plugin, long slowQueryThreshold) {
+        this.plugin = plugin;
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.repositories = new ConcurrentHashMap<>();
+        this.slowQueries = new ArrayDeque<>();
+    }
+
+    /**
+     * Registers a repository, repositories of the same name share their metrics.
+     * @param cacheStats supplies the statistics of the repository's cache
+     * @param negativeCacheHits supplies the hits of the repository's negative cache
+     */
+    @Nonnull
+    public RepositoryMetrics register(@Nonnull String repository, @Nonnull Supplier<EntityCache.Stats> cacheStats, @Nonnull LongSupplier negativeCacheHits) {
+        return this.repositories.computeIfAbsent(repository, key -> new RepositoryMetrics(key, cacheStats, negativeCacheHits));
+    }
+
+    @Nonnull
+    public Snapshot getSnapshot() {
+        var repositorySnapshots = new TreeMap<String, RepositorySnapshot>();
+        this.repositories.forEach((repository, metrics) -> repositorySnapshots.put(repository, metrics.getSnapshot()));
+
+        synchronized (this.slowQueries) {
+            return new Snapshot(repositorySnapshots, List.copyOf(this.slowQueries));
+        }
+    }
+
+    private void addSlowQuery(@Nonnull SlowQuery slowQuery) {
+        this.plugin.getFpLogger().warning(
+                "Slow query on {0}.{1} took {2}ms and returned {3} rows, called by {4}: \"{5}\"",
+                slowQuery.repository(),
+                slowQuery.operation(),
+                String.format("%.1f", slowQuery.duration()),
+                slowQuery.rows(),
+                slowQuery.caller(),
+                slowQuery.statement()
+        );
+
+        synchronized (this.slowQueries) {
+            if (this.slowQueries.size() >= MAX_SLOW_QUERIES)
+                this.slowQueries.pollFirst();
+
+            this.slowQueries.addLast(slowQuery);
+        }
+    }
+
+    /**
+     * Finds the first frame of the plugin outside the database-framework, which is the service or controller that started the operation.
+     * Only called for slow queries, as walking the stack isn't free.
+     */
+    @Nonnull
+    private static String findCaller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(ROOT_PACKAGE) && !frame.getClassName().startsWith(DATABASE_PACKAGE))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "#" + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown")
+        );
+    }
+
+}
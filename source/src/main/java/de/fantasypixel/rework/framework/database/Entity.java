@@ -22,4 +22,19 @@ public @interface Entity {
      */
     String tableName();
 
+    /**
+     * How the entities are cached.
+     */
+    CachePolicy cachePolicy() default CachePolicy.LAZY;
+
+    /**
+     * The maximum amount of cached entities, the least recently used ones are evicted first.
+     */
+    int maxCacheEntries() default 10000;
+
+    /**
+     * The amount of seconds a cached entity is kept without being accessed. 0 keeps the entities until they are evicted.
+     */
+    long expireAfterAccess() default 0;
+
 }
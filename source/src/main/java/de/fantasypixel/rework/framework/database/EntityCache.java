@@ -0,0 +1,449 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.framework.log.FPLogger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * The in-memory cache of a {@link DataRepoProvider}.
+ * <br><br>
+ * The entities are kept by their id in least-recently-used order. When the cache exceeds its maximum amount of entries, the least recently used entities are evicted.
+ * Entities that weren't accessed for longer than the configured expire-time are dropped, see {@link Entity#expireAfterAccess()}.
+ * <br><br>
+ * Besides the cached entities, hash-indexes are kept for the id-column, every column annotated with {@link Indexed}
+ * and every column that was used in a lookup. The indexes are kept up to date by {@link #add(Object)}, {@link #reindex(Object)} and {@link #remove(Object)}.
+ * Note that entities which are modified in memory must be re-indexed, otherwise they are found under their old values.
+ * All operations are synchronized as repositories are accessed from the server-thread and the database-threads.
+ * @param <E> the type of the cached entities
+ */
+public class EntityCache<E> {
+
+    private final static String CLASS_NAME = EntityCache.class.getSimpleName();
+
+    /**
+     * The index-key of query-values the column's type can't hold (like 5.5 for an int-column), no bucket is stored under it.
+     */
+    private final static Object NO_MATCH = new Object();
+
+    /**
+     * A snapshot of the cache's statistics.
+     * @param size the amount of cached entities
+     * @param maxSize the maximum amount of cached entities
+     * @param complete whether the cache holds the whole table, see {@link #isComplete()}
+     * @param hits the amount of lookups that found at least one entity
+     * @param misses the amount of lookups that found nothing
+     * @param evictions the amount of entities evicted because the cache was full
+     * @param expirations the amount of entities dropped because they weren't accessed in time
+     */
+    public record Stats(int size, int maxSize, boolean complete, long hits, long misses, long evictions, long expirations) {}
+
+    /**
+     * A cached entity with the values it was indexed with (needed to find the index-buckets again after the entity was modified).
+     */
+    private static class CacheEntry<E> {
+
+        private final E entity;
+        private final Map<String, Object> indexedValues;
+        private long lastAccess;
+
+        /**
+         * The values as they were last read from or written to the database, see {@link EntityModel#getValues(Object)}.
+         */
+        @Nullable private Object[] persistedValues;
+
+        private CacheEntry(@Nonnull E entity) {
+            this.entity = entity;
+            this.indexedValues = new HashMap<>();
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+    }
+
+    private final FPLogger logger;
+    private final EntityModel<E> model;
+    private final int maxEntries;
+    private final long expireAfterAccess;
+    private final LinkedHashMap<Integer, CacheEntry<E>> entries;
+    private final Map<String, Map<Object, Set<E>>> indexes;
+    private boolean complete;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maxEntries the maximum amount of cached entities, 0 disables the cache
+     * @param expireAfterAccess the amount of milliseconds an entity is kept without being accessed, 0 keeps them until they are evicted
+     */
+    public EntityCache(@Nonnull EntityModel<E> model, @Nonnull FPLogger logger, int maxEntries, long expireAfterAccess) {
+        this.logger = logger;
+        this.model = model;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.expireAfterAccess = expireAfterAccess;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.indexes = new HashMap<>();
+
+        for (var column : model.getColumns()) {
+            if (column.name().equals("id") || column.indexed())
+                this.indexes.put(column.name(), new HashMap<>());
+        }
+    }
+
+    /**
+     * Searches the cache for entities matching the query's where-conditions, order and paging are ignored.
+     * The candidates are taken from the index with the smallest bucket of the query's equality-conditions (see {@link Query#getWhereMap()}, numbers are converted to the column's type),
+     * if there are none all cached entities are candidates. The candidates are then checked against all conditions, see {@link Query#matches(java.util.function.Function)}.
+     * @return the matching entities
+     */
+    @Nonnull
+    public synchronized Set<E> find(@Nonnull Query query) {
+        this.expire();
+
+        for (var column : query.getWhereColumns()) {
+            if (this.model.getColumn(column) == null) {
+                this.logger.warning(CLASS_NAME, "find", "Tried to query column {0}, but {1} doesn't have such a field!", column, this.model.getEntityClass().getSimpleName());
+                return this.count(new HashSet<>());
+            }
+        }
+
+        Collection<E> candidates = null;
+
+        for (var entry : query.getWhereMap().entrySet()) {
+            var key = this.toIndexKey(this.model.getColumn(entry.getKey()), entry.getValue());
+            var bucket = this.getOrBuildIndex(entry.getKey()).getOrDefault(key, Collections.emptySet());
+            if (candidates == null || bucket.size() < candidates.size())
+                candidates = bucket;
+
+            if (candidates.isEmpty())
+                return this.count(new HashSet<>());
+        }
+
+        if (candidates == null)
+            candidates = this.entries.values().stream().map(entry -> entry.entity).toList();
+
+        var results = new HashSet<E>();
+
+        for (var candidate : candidates) {
+            if (query.matches(column -> this.getValue(column, candidate)))
+                results.add(candidate);
+        }
+
+        results.forEach(this::touch);
+        return this.count(results);
+    }
+
+    /**
+     * Adds an entity to the cache and all indexes. If another instance with the same id is cached, it is replaced.
+     * Entities without an id aren't cached.
+     */
+    public synchronized void add(@Nonnull E entity) {
+        var id = this.model.getId(entity);
+        if (id == null || this.maxEntries == 0)
+            return;
+
+        var existing = this.entries.get(id);
+        if (existing != null) {
+            if (existing.entity == entity) {
+                this.reindexEntry(existing);
+                existing.lastAccess = System.currentTimeMillis();
+                return;
+            }
+
+            this.removeEntry(id, existing);
+        }
+
+        var entry = new CacheEntry<>(entity);
+        this.indexes.forEach((column, index) -> {
+            var value = this.getValue(column, entity);
+            entry.indexedValues.put(column, value);
+            index.computeIfAbsent(value, key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(entity);
+        });
+        this.entries.put(id, entry);
+
+        while (this.entries.size() > this.maxEntries) {
+            var eldest = this.entries.entrySet().iterator().next();
+            this.removeEntry(eldest.getKey(), eldest.getValue());
+            this.evictions++;
+            this.complete = false;
+        }
+    }
+
+    /**
+     * Adds the entity unless another instance with the same id is cached already.
+     * Used for entities read from the database, so that modifications of the cached instance that aren't persisted yet aren't lost.
+     * @return the cached instance (the passed entity if it was added or the cache is disabled)
+     */
+    @Nonnull
+    public synchronized E addIfAbsent(@Nonnull E entity) {
+        var id = this.model.getId(entity);
+        var existing = id != null ? this.entries.get(id) : null;
+
+        if (existing != null) {
+            existing.lastAccess = System.currentTimeMillis();
+            return existing.entity;
+        }
+
+        this.add(entity);
+        return entity;
+    }
+
+    /**
+     * Updates the index-entries of a cached entity after it was modified. Does nothing if no entity with the same id is cached.
+     */
+    public synchronized void reindex(@Nonnull E entity) {
+        var id = this.model.getId(entity);
+        var entry = id != null ? this.entries.get(id) : null;
+        if (entry == null)
+            return;
+
+        if (entry.entity != entity)
+            this.add(entity);
+        else
+            this.reindexEntry(entry);
+    }
+
+    /**
+     * Removes the entity with the same id from the cache and all indexes.
+     */
+    public synchronized void remove(@Nonnull E entity) {
+        var id = this.model.getId(entity);
+        if (id != null)
+            this.removeById(id);
+    }
+
+    /**
+     * Removes the entity with the given id from the cache and all indexes.
+     */
+    public synchronized void removeById(int id) {
+        var entry = this.entries.get(id);
+        if (entry != null)
+            this.removeEntry(id, entry);
+    }
+
+    public synchronized boolean contains(@Nonnull E entity) {
+        var id = this.model.getId(entity);
+        var entry = id != null ? this.entries.get(id) : null;
+        return entry != null && entry.entity == entity;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return whether the cache can hold any entities
+     */
+    public boolean isEnabled() {
+        return this.maxEntries > 0;
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * A complete cache holds every row of the table. Lookups that find nothing in a complete cache don't have to ask the database.
+     * The flag is reset as soon as an entity is evicted, expires or the cache is cleared.
+     */
+    public synchronized boolean isComplete() {
+        return this.complete;
+    }
+
+    public synchronized void setComplete(boolean complete) {
+        this.complete = complete && this.isEnabled();
+    }
+
+    /**
+     * Remembers the values of the cached entity with the given id as they were persisted.
+     */
+    public synchronized void setPersistedValues(int id, @Nonnull Object[] values) {
+        var entry = this.entries.get(id);
+        if (entry != null)
+            entry.persistedValues = values;
+    }
+
+    /**
+     * @return the values of the cached entity with the given id as they were last persisted or null if unknown
+     */
+    @Nullable
+    public synchronized Object[] getPersistedValues(int id) {
+        var entry = this.entries.get(id);
+        return entry != null ? entry.persistedValues : null;
+    }
+
+    /**
+     * Removes all entities, the indexes are kept (empty).
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.indexes.values().forEach(Map::clear);
+        this.complete = false;
+    }
+
+    @Nonnull
+    public synchronized Stats getStats() {
+        return new Stats(this.entries.size(), this.maxEntries, this.complete, this.hits, this.misses, this.evictions, this.expirations);
+    }
+
+    @Nonnull
+    private Set<E> count(@Nonnull Set<E> results) {
+        if (results.isEmpty())
+            this.misses++;
+        else
+            this.hits++;
+
+        return results;
+    }
+
+    /**
+     * Marks the entity as recently used.
+     */
+    private void touch(@Nonnull E entity) {
+        var id = this.model.getId(entity);
+        var entry = id != null ? this.entries.get(id) : null;
+        if (entry != null)
+            entry.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Drops the entities that weren't accessed within {@link #expireAfterAccess}. As the entries are kept in access-order, only the eldest entries have to be checked.
+     */
+    private void expire() {
+        if (this.expireAfterAccess <= 0 || this.entries.isEmpty())
+            return;
+
+        var expireBefore = System.currentTimeMillis() - this.expireAfterAccess;
+        var iterator = this.entries.entrySet().iterator();
+        var expired = new ArrayList<Map.Entry<Integer, CacheEntry<E>>>();
+
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getValue().lastAccess >= expireBefore)
+                break;
+
+            expired.add(entry);
+        }
+
+        if (expired.isEmpty())
+            return;
+
+        expired.forEach(entry -> this.removeEntry(entry.getKey(), entry.getValue()));
+        this.expirations += expired.size();
+        this.complete = false;
+        this.logger.debugGrouped("DATABASE_CACHE", "Expired {0} cached entities of {1}.", expired.size(), this.model.getEntityClass().getSimpleName());
+    }
+
+    private void reindexEntry(@Nonnull CacheEntry<E> entry) {
+        this.indexes.forEach((column, index) -> {
+            var oldValue = entry.indexedValues.get(column);
+            var newValue = this.getValue(column, entry.entity);
+
+            if (Objects.equals(oldValue, newValue))
+                return;
+
+            this.removeFromBucket(index, oldValue, entry.entity);
+            index.computeIfAbsent(newValue, key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(entry.entity);
+            entry.indexedValues.put(column, newValue);
+        });
+    }
+
+    private void removeEntry(int id, @Nonnull CacheEntry<E> entry) {
+        this.entries.remove(id);
+        this.indexes.forEach((column, index) -> this.removeFromBucket(index, entry.indexedValues.get(column), entry.entity));
+    }
+
+    /**
+     * Gets the index for the given (existing) column. If there is none yet, it is built from the cached entities.
+     */
+    @Nonnull
+    private Map<Object, Set<E>> getOrBuildIndex(@Nonnull String column) {
+        var index = this.indexes.get(column);
+        if (index != null)
+            return index;
+
+        this.logger.debugGrouped("DATABASE_CACHE", "Building cache-index for column {0} of {1}.", column, this.model.getEntityClass().getSimpleName());
+
+        var newIndex = new HashMap<Object, Set<E>>();
+        for (var entry : this.entries.values()) {
+            var value = this.getValue(column, entry.entity);
+            newIndex.computeIfAbsent(value, key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(entry.entity);
+            entry.indexedValues.put(column, value);
+        }
+
+        this.indexes.put(column, newIndex);
+        return newIndex;
+    }
+
+    /**
+     * Converts a queried number to the type of the column's field, as the index compares its keys with {@link Object#equals(Object)},
+     * while {@link Query#matches(java.util.function.Function)} compares numbers by their value (so {@code 5L} finds the int 5).
+     * @return the key to look up, {@link #NO_MATCH} if the number can't be held by the column's type
+     */
+    @Nullable
+    private Object toIndexKey(@Nonnull EntityModel.Column column, @Nullable Object value) {
+        if (!(value instanceof Number number))
+            return value;
+
+        var type = column.type();
+        if (type == double.class || type == Double.class)
+            return number.doubleValue();
+        if (type == float.class || type == Float.class)
+            return (double) number.floatValue() == number.doubleValue() ? number.floatValue() : NO_MATCH;
+
+        long min, max;
+        if (type == int.class || type == Integer.class) {
+            min = Integer.MIN_VALUE;
+            max = Integer.MAX_VALUE;
+        } else if (type == long.class || type == Long.class) {
+            min = Long.MIN_VALUE;
+            max = Long.MAX_VALUE;
+        } else if (type == short.class || type == Short.class) {
+            min = Short.MIN_VALUE;
+            max = Short.MAX_VALUE;
+        } else if (type == byte.class || type == Byte.class) {
+            min = Byte.MIN_VALUE;
+            max = Byte.MAX_VALUE;
+        } else {
+            return value;
+        }
+
+        long integral;
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            integral = number.longValue();
+        } else {
+            var decimal = number.doubleValue();
+            if (decimal != Math.rint(decimal) || decimal < min || decimal > max)
+                return NO_MATCH;
+            integral = (long) decimal;
+        }
+
+        if (integral < min || integral > max)
+            return NO_MATCH;
+
+        if (type == int.class || type == Integer.class)
+            return (int) integral;
+        if (type == short.class || type == Short.class)
+            return (short) integral;
+        if (type == byte.class || type == Byte.class)
+            return (byte) integral;
+        return integral;
+    }
+
+    private void removeFromBucket(@Nonnull Map<Object, Set<E>> index, @Nullable Object value, @Nonnull E entity) {
+        var bucket = index.get(value);
+        if (bucket == null)
+            return;
+
+        bucket.remove(entity);
+        if (bucket.isEmpty())
+            index.remove(value);
+    }
+
+    @Nullable
+    private Object getValue(@Nonnull String column, @Nonnull E entity) {
+        return this.model.getValue(this.model.getColumn(column), entity);
+    }
+
+}
@@ -0,0 +1,34 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A committed change of an entity, published by its {@link DataRepoProvider} to the methods annotated with {@link OnEntityChange}.
+ * @param type the kind of the change
+ * @param entity the inserted, updated or deleted entity, null for {@link Type#CLEAR}
+ * @param <E> the entity's type
+ */
+public record EntityChange<E>(@Nonnull Type type, @Nullable E entity) {
+
+    public enum Type {
+
+        INSERT,
+
+        UPDATE,
+
+        /**
+         * The entity was inserted or updated by {@link DataRepoProvider#upsert(Object)}, which one isn't known.
+         */
+        UPSERT,
+
+        DELETE,
+
+        /**
+         * All entities of the table were deleted by {@link DataRepoProvider#clear()}.
+         */
+        CLEAR
+
+    }
+
+}
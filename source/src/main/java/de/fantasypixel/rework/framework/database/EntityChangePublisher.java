@@ -0,0 +1,97 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the {@link EntityChange} events published by all {@link DataRepoProvider} instances to their subscribers, see {@link OnEntityChange}.
+ * <br><br>
+ * Changes for {@link OnEntityChange.Delivery#SERVER_THREAD} subscribers are put into a lock-free queue that is drained by one task on the server-thread,
+ * which is only scheduled if none is pending yet.
+ */
+public class EntityChangePublisher {
+
+    private final static String CLASS_NAME = EntityChangePublisher.class.getSimpleName();
+
+    private record Subscriber(@Nonnull String name, @Nonnull Consumer<EntityChange<?>> listener, boolean queued) {}
+
+    private record QueuedChange(@Nonnull Subscriber subscriber, @Nonnull EntityChange<?> change) {}
+
+    private final FPRework plugin;
+    private final Map<Class<?>, List<Subscriber>> subscribers;
+    private final Queue<QueuedChange> queuedChanges;
+    private final AtomicBoolean drainScheduled;
+
+    public EntityChangePublisher(@Nonnull FPRework plugin) {
+        this.plugin = plugin;
+        this.subscribers = new ConcurrentHashMap<>();
+        this.queuedChanges = new ConcurrentLinkedQueue<>();
+        this.drainScheduled = new AtomicBoolean();
+    }
+
+    /**
+     * Subscribes to the changes of the given entity-type.
+     * @param name the name of the subscriber, used when logging its errors
+     */
+    public void subscribe(@Nonnull Class<?> entityType, @Nonnull OnEntityChange.Delivery delivery, @Nonnull String name, @Nonnull Consumer<EntityChange<?>> listener) {
+        this.subscribers
+                .computeIfAbsent(entityType, key -> new CopyOnWriteArrayList<>())
+                .add(new Subscriber(name, listener, delivery == OnEntityChange.Delivery.SERVER_THREAD));
+    }
+
+    /**
+     * @return whether changes of the entity-type have subscribers, so the repositories don't create events nobody listens to
+     */
+    public boolean hasSubscribers(@Nonnull Class<?> entityType) {
+        return this.subscribers.containsKey(entityType);
+    }
+
+    /**
+     * Delivers the change to the subscribers of the entity-type. Errors of subscribers are logged and don't affect the other subscribers.
+     */
+    public void publish(@Nonnull Class<?> entityType, @Nonnull EntityChange<?> change) {
+        var entitySubscribers = this.subscribers.get(entityType);
+        if (entitySubscribers == null)
+            return;
+
+        for (var subscriber : entitySubscribers) {
+            if (subscriber.queued())
+                this.queuedChanges.add(new QueuedChange(subscriber, change));
+            else
+                this.deliver(subscriber, change);
+        }
+
+        if (!this.queuedChanges.isEmpty() && this.drainScheduled.compareAndSet(false, true))
+            this.plugin.getServer().getScheduler().runTask(this.plugin, this::drain);
+    }
+
+    /**
+     * Delivers the queued changes on the server-thread.
+     */
+    private void drain() {
+        this.drainScheduled.set(false);
+
+        QueuedChange queuedChange;
+        while ((queuedChange = this.queuedChanges.poll()) != null)
+            this.deliver(queuedChange.subscriber(), queuedChange.change());
+    }
+
+    private void deliver(@Nonnull Subscriber subscriber, @Nonnull EntityChange<?> change) {
+        try {
+            subscriber.listener().accept(change);
+        } catch (Exception ex) {
+            this.plugin.getFpLogger().warning("The change-listener {0} failed on a {1}-change.", subscriber.name(), change.type());
+            this.plugin.getFpLogger().error(CLASS_NAME, "deliver", ex);
+        }
+    }
+
+}
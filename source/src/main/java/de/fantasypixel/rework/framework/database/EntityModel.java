@@ -0,0 +1,499 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The compiled model of an {@link Entity} class, built once per {@link DataRepoProvider}.
+ * <br><br>
+ * Holds method-handle based accessors for every column, the type-coercion used when reading and binding values,
+ * the dialect specific SQL statements and the row-mappers for every result-shape that was read so far.
+ * With the model, hydrating and binding entities doesn't need any reflection lookups.
+ * @param <E> the type of the entity
+ */
+public class EntityModel<E> {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * A column of the entity.
+     * @param name the column- and field-name
+     * @param type the field's type
+     * @param indexed whether the field is annotated with {@link Indexed}
+     * @param getter the field-getter of type {@code (Object)Object}
+     * @param setter the field-setter of type {@code (Object, Object)void}
+     * @param reader converts values read from a {@link ResultSet} to the field's type
+     * @param binder converts field values before they are bound to a {@link PreparedStatement}
+     */
+    public record Column(
+            @Nonnull String name,
+            @Nonnull Class<?> type,
+            boolean indexed,
+            @Nonnull MethodHandle getter,
+            @Nonnull MethodHandle setter,
+            @Nonnull Function<Object, Object> reader,
+            @Nonnull Function<Object, Object> binder
+    ) {}
+
+    /**
+     * Maps rows of one result-shape to entities. The columns are resolved by their index in the result set.
+     */
+    public class RowMapper {
+
+        private final Column[] columns;
+
+        private RowMapper(@Nonnull Column[] columns) {
+            this.columns = columns;
+        }
+
+        /**
+         * Creates an entity from the current row of the result set.
+         */
+        @Nonnull
+        public E map(@Nonnull ResultSet resultSet) throws SQLException {
+            var entity = EntityModel.this.newInstance();
+
+            for (var i = 0; i < this.columns.length; i++) {
+                var column = this.columns[i];
+                if (column == null)
+                    continue;
+
+                var value = column.reader().apply(resultSet.getObject(i + 1));
+                if (value == null && column.type().isPrimitive())
+                    continue;
+
+                EntityModel.this.setValue(column, entity, value);
+            }
+
+            return entity;
+        }
+
+    }
+
+    private final Class<E> entityClass;
+    private final String tableName;
+    private final DatabaseType databaseType;
+    private final MethodHandle constructor;
+    private final List<Column> columns;
+    private final List<Column> valueColumns;
+    private final Map<String, Column> columnsByName;
+    private final Column idColumn;
+    private final Map<String, RowMapper> rowMappers;
+
+    private final String selectStatement;
+    private final String insertStatement;
+    private final String insertIgnoreStatement;
+    private final String valuesRow;
+    private final Map<List<String>, String> upsertStatements;
+    private final String updateStatement;
+    private final String deleteStatement;
+    private final String countStatement;
+    private final String clearStatement;
+
+    /**
+     * Builds the model of the given entity class.
+     * @throws IllegalArgumentException if the class doesn't follow the rules of {@link Entity}
+     */
+    public EntityModel(@Nonnull Class<E> entityClass, @Nonnull String tableName, @Nonnull DatabaseType databaseType) throws IllegalArgumentException {
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+        this.databaseType = databaseType;
+        this.rowMappers = new ConcurrentHashMap<>();
+        this.upsertStatements = new ConcurrentHashMap<>();
+
+        var lookup = MethodHandles.lookup();
+        var columns = new ArrayList<Column>();
+
+        try {
+            var noArgsConstructor = entityClass.getDeclaredConstructor();
+            noArgsConstructor.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(noArgsConstructor).asType(CONSTRUCTOR_TYPE);
+
+            for (var field : entityClass.getDeclaredFields()) {
+                if (field.isSynthetic() || Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Ignore.class))
+                    continue;
+
+                field.setAccessible(true);
+                columns.add(new Column(
+                        field.getName(),
+                        field.getType(),
+                        field.isAnnotationPresent(Indexed.class),
+                        lookup.unreflectGetter(field).asType(GETTER_TYPE),
+                        lookup.unreflectSetter(field).asType(SETTER_TYPE),
+                        createReader(field.getType(), databaseType),
+                        createBinder(field.getType(), databaseType)
+                ));
+            }
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new IllegalArgumentException("Couldn't build the entity-model of " + entityClass.getName() + ". Is there a constructor with no arguments?", ex);
+        }
+
+        this.columns = List.copyOf(columns);
+        this.columnsByName = this.columns.stream().collect(Collectors.toMap(Column::name, column -> column));
+        this.idColumn = this.columnsByName.get("id");
+        this.valueColumns = this.columns.stream()
+                .filter(column -> column != this.idColumn)
+                .toList();
+
+        if (this.idColumn == null)
+            throw new IllegalArgumentException("The entity " + entityClass.getName() + " doesn't have an id-field.");
+
+        var valueColumnNames = this.valueColumns.stream()
+                .map(column -> this.quote(column.name()))
+                .toList();
+
+        this.selectStatement = String.format("SELECT * FROM %s", tableName);
+        this.valuesRow = valueColumnNames.stream().map(e -> "?").collect(Collectors.joining(", ", "(", ")"));
+        this.insertStatement = String.format(
+                "INSERT INTO %s (%s) VALUES %s",
+                tableName,
+                String.join(", ", valueColumnNames),
+                this.valuesRow
+        );
+        this.insertIgnoreStatement = databaseType == DatabaseType.MYSQL
+                ? String.format("%s ON DUPLICATE KEY UPDATE %s = %s", this.insertStatement, this.quote("id"), this.quote("id"))
+                : this.insertStatement + " ON CONFLICT DO NOTHING" + this.getReturningClause();
+        this.updateStatement = String.format(
+                "UPDATE %s SET %s WHERE %s = ?",
+                tableName,
+                valueColumnNames.stream().map(name -> name + " = ?").collect(Collectors.joining(", ")),
+                this.quote("id")
+        );
+        this.deleteStatement = String.format("DELETE FROM %s WHERE %s = ?", tableName, this.quote("id"));
+        this.countStatement = String.format("SELECT COUNT(%s) FROM %s", this.quote("id"), tableName);
+        this.clearStatement = String.format("DELETE FROM %s", tableName);
+    }
+
+    /**
+     * Creates the function converting read values to the field's type.
+     * Numbers are converted between their representations (for instance SQLite returns doubles for float columns and integers for booleans).
+     */
+    @Nonnull
+    private static Function<Object, Object> createReader(@Nonnull Class<?> type, @Nonnull DatabaseType databaseType) {
+        if (type == int.class || type == Integer.class)
+            return value -> value instanceof Number number ? number.intValue() : value;
+        if (type == long.class || type == Long.class)
+            return value -> value instanceof Number number ? number.longValue() : value;
+        if (type == double.class || type == Double.class)
+            return value -> value instanceof Number number ? number.doubleValue() : value;
+        if (type == float.class || type == Float.class)
+            return value -> value instanceof Number number ? number.floatValue() : value;
+        if (type == short.class || type == Short.class)
+            return value -> value instanceof Number number ? number.shortValue() : value;
+        if (type == byte.class || type == Byte.class)
+            return value -> value instanceof Number number ? number.byteValue() : value;
+        if (type == boolean.class || type == Boolean.class)
+            return value -> value instanceof Number number ? number.intValue() != 0 : value;
+
+        return value -> value;
+    }
+
+    /**
+     * Creates the function converting field values before binding them to a statement.
+     */
+    @Nonnull
+    private static Function<Object, Object> createBinder(@Nonnull Class<?> type, @Nonnull DatabaseType databaseType) {
+        if (databaseType == DatabaseType.SQLITE && (type == boolean.class || type == Boolean.class))
+            return value -> value instanceof Boolean booleanValue ? (booleanValue ? 1 : 0) : value;
+
+        return value -> value;
+    }
+
+    /**
+     * Quotes a column-name for the model's database-type.
+     */
+    @Nonnull
+    public String quote(@Nonnull String columnName) {
+        return this.databaseType == DatabaseType.POSTGRESQL
+                ? '"' + columnName + '"'
+                : '`' + columnName + '`';
+    }
+
+    /**
+     * Gets the row-mapper for the shape of the given result set. Mappers are cached per shape.
+     */
+    @Nonnull
+    public RowMapper getRowMapper(@Nonnull ResultSetMetaData metaData) throws SQLException {
+        var columnCount = metaData.getColumnCount();
+        var columnNames = new String[columnCount];
+
+        for (var i = 0; i < columnCount; i++)
+            columnNames[i] = metaData.getColumnName(i + 1);
+
+        return this.rowMappers.computeIfAbsent(String.join(",", columnNames), shape -> {
+            var mappedColumns = new Column[columnCount];
+
+            for (var i = 0; i < columnCount; i++) {
+                var column = this.columnsByName.get(columnNames[i]);
+
+                if (column == null) {
+                    for (var candidate : this.columns) {
+                        if (candidate.name().equalsIgnoreCase(columnNames[i])) {
+                            column = candidate;
+                            break;
+                        }
+                    }
+                }
+
+                mappedColumns[i] = column;
+            }
+
+            return new RowMapper(mappedColumns);
+        });
+    }
+
+    /**
+     * Binds the values of all columns except the id to the statement.
+     * @param startIndex the parameter-index of the first value
+     * @return the next free parameter-index
+     */
+    public int bindValues(@Nonnull PreparedStatement statement, @Nonnull E entity, int startIndex) throws SQLException {
+        return this.bindValues(statement, this.getValues(entity), startIndex);
+    }
+
+    /**
+     * Binds previously read values (see {@link #getValues(Object)}) to the statement.
+     * @param startIndex the parameter-index of the first value
+     * @return the next free parameter-index
+     */
+    public int bindValues(@Nonnull PreparedStatement statement, @Nonnull Object[] values, int startIndex) throws SQLException {
+        var index = startIndex;
+
+        for (var i = 0; i < values.length; i++) {
+            var value = this.valueColumns.get(i).binder().apply(values[i]);
+
+            if (value != null)
+                statement.setObject(index++, value);
+            else
+                statement.setNull(index++, Types.NULL);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the values of all columns except the id, in the same order as they are bound
+     */
+    @Nonnull
+    public Object[] getValues(@Nonnull E entity) {
+        var values = new Object[this.valueColumns.size()];
+
+        for (var i = 0; i < values.length; i++)
+            values[i] = this.getValue(this.valueColumns.get(i), entity);
+
+        return values;
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public E newInstance() {
+        try {
+            return (E) this.constructor.invokeExact();
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Couldn't instantiate entity " + this.entityClass.getName(), ex);
+        }
+    }
+
+    @Nullable
+    public Object getValue(@Nonnull Column column, @Nonnull E entity) {
+        try {
+            return column.getter().invokeExact((Object) entity);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Couldn't read column " + column.name() + " of entity " + this.entityClass.getName(), ex);
+        }
+    }
+
+    public void setValue(@Nonnull Column column, @Nonnull E entity, @Nullable Object value) {
+        try {
+            column.setter().invokeExact((Object) entity, value);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Couldn't write column " + column.name() + " of entity " + this.entityClass.getName(), ex);
+        }
+    }
+
+    /**
+     * @return the entity's id or null if it isn't set
+     */
+    @Nullable
+    public Integer getId(@Nonnull E entity) {
+        return this.getValue(this.idColumn, entity) instanceof Number number ? number.intValue() : null;
+    }
+
+    public void setId(@Nonnull E entity, @Nullable Integer id) {
+        this.setValue(this.idColumn, entity, id);
+    }
+
+    /**
+     * @return the column with the given name or null if the entity has no such column
+     */
+    @Nullable
+    public Column getColumn(@Nonnull String name) {
+        return this.columnsByName.get(name);
+    }
+
+    @Nonnull
+    public List<Column> getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * @return all columns except the id
+     */
+    @Nonnull
+    public List<Column> getValueColumns() {
+        return this.valueColumns;
+    }
+
+    @Nonnull
+    public Class<E> getEntityClass() {
+        return this.entityClass;
+    }
+
+    @Nonnull
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    @Nonnull
+    public DatabaseType getDatabaseType() {
+        return this.databaseType;
+    }
+
+    /**
+     * @return {@code SELECT * FROM table}
+     */
+    @Nonnull
+    public String getSelectStatement() {
+        return this.selectStatement;
+    }
+
+    /**
+     * @return {@code INSERT INTO table (columns) VALUES (?, ...)} without the id-column
+     */
+    @Nonnull
+    public String getInsertStatement() {
+        return this.insertStatement;
+    }
+
+    /**
+     * @return {@code INSERT INTO table (columns) VALUES (?, ...), (?, ...), ...} with the given amount of rows and the {@link #getReturningClause() returning-clause}
+     */
+    @Nonnull
+    public String getBulkInsertStatement(int rows) {
+        return this.insertStatement
+                + (", " + this.valuesRow).repeat(Math.max(0, rows - 1))
+                + this.getReturningClause();
+    }
+
+    /**
+     * An insert that does nothing if it violates a unique constraint, no id is returned in that case.
+     * @return {@code INSERT ... ON CONFLICT DO NOTHING RETURNING id} or {@code INSERT ... ON DUPLICATE KEY UPDATE id = id} for {@link DatabaseType#MYSQL}
+     */
+    @Nonnull
+    public String getInsertIgnoreStatement() {
+        return this.insertIgnoreStatement;
+    }
+
+    /**
+     * An insert that updates the existing row if it violates the unique constraint on the given columns, the id of the inserted or updated row is returned.
+     * MySQL doesn't take a conflict-target, every unique constraint of the table is considered there.
+     * @param conflictColumns the columns of the unique constraint
+     * @return {@code INSERT ... ON CONFLICT (columns) DO UPDATE SET column = EXCLUDED.column, ... RETURNING id}
+     * or {@code INSERT ... ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id), column = VALUES(column), ...} for {@link DatabaseType#MYSQL}
+     * @throws IllegalArgumentException if a conflict-column doesn't exist
+     */
+    @Nonnull
+    public String getUpsertStatement(@Nonnull List<String> conflictColumns) throws IllegalArgumentException {
+        return this.upsertStatements.computeIfAbsent(List.copyOf(conflictColumns), key -> {
+            for (var conflictColumn : key) {
+                if (this.getColumn(conflictColumn) == null)
+                    throw new IllegalArgumentException("The entity " + this.entityClass.getName() + " doesn't have a column " + conflictColumn + ".");
+            }
+
+            var updatedColumns = this.valueColumns.stream()
+                    .map(Column::name)
+                    .filter(name -> !key.contains(name))
+                    .toList();
+
+            if (this.databaseType == DatabaseType.MYSQL) {
+                var assignments = new ArrayList<String>();
+                assignments.add(String.format("%s = LAST_INSERT_ID(%s)", this.quote("id"), this.quote("id")));
+                updatedColumns.forEach(name -> assignments.add(String.format("%s = VALUES(%s)", this.quote(name), this.quote(name))));
+
+                return this.insertStatement + " ON DUPLICATE KEY UPDATE " + String.join(", ", assignments);
+            }
+
+            // at least one column has to be set, the conflict-columns are set to their (equal) values if there is nothing else to update
+            var assignments = (updatedColumns.isEmpty() ? key : updatedColumns).stream()
+                    .map(name -> String.format("%s = EXCLUDED.%s", this.quote(name), this.quote(name)))
+                    .collect(Collectors.joining(", "));
+
+            return String.format(
+                    "%s ON CONFLICT (%s) DO UPDATE SET %s%s",
+                    this.insertStatement,
+                    key.stream().map(this::quote).collect(Collectors.joining(", ")),
+                    assignments,
+                    this.getReturningClause()
+            );
+        });
+    }
+
+    /**
+     * PostgreSQL and SQLite return the ids of inserted rows with a {@code RETURNING} clause, MySQL returns them as generated keys.
+     * @return {@code RETURNING id} or an empty string for {@link DatabaseType#MYSQL}
+     */
+    @Nonnull
+    public String getReturningClause() {
+        return this.databaseType == DatabaseType.MYSQL
+                ? ""
+                : " RETURNING " + this.quote("id");
+    }
+
+    /**
+     * @return {@code UPDATE table SET column = ?, ... WHERE id = ?}
+     */
+    @Nonnull
+    public String getUpdateStatement() {
+        return this.updateStatement;
+    }
+
+    /**
+     * @return {@code DELETE FROM table WHERE id = ?}
+     */
+    @Nonnull
+    public String getDeleteStatement() {
+        return this.deleteStatement;
+    }
+
+    /**
+     * @return {@code SELECT COUNT(id) FROM table}
+     */
+    @Nonnull
+    public String getCountStatement() {
+        return this.countStatement;
+    }
+
+    /**
+     * @return {@code DELETE FROM table}
+     */
+    @Nonnull
+    public String getClearStatement() {
+        return this.clearStatement;
+    }
+
+}
@@ -0,0 +1,25 @@
+package de.fantasypixel.rework.framework.database;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Applying this Annotation on properties inside of {@link Entity} classes makes the repository-cache keep a hash-index for the column.
+ * Equality lookups on indexed columns don't scan the cache.
+ * <br><br>
+ * Columns that are used in a {@link Query} without being annotated are indexed on demand when they are queried the first time.
+ * <br><br>
+ * The {@link SchemaMigrator} creates a database-index for the column as well, unless a {@link CompositeIndex} starts with it.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Indexed {
+
+    /**
+     * Whether the database-index is a unique constraint.
+     */
+    boolean unique() default false;
+
+}
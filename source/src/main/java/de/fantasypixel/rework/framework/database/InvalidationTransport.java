@@ -0,0 +1,36 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Carries the {@link Invalidation invalidations} of the repository-caches between the nodes sharing one database, see {@link CacheInvalidator}.
+ * The default transport is the {@link ChangeLogTransport}, others (like a message-broker) can be plugged in with {@link DatabaseManager#setInvalidationTransport(InvalidationTransport)}.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * A committed change another node has to apply to its caches.
+     * @param table the changed table
+     * @param entityId the id of the changed entity, {@link #ALL} if the whole table changed
+     */
+    record Invalidation(@Nonnull String table, int entityId) {
+
+        public final static int ALL = 0;
+
+    }
+
+    /**
+     * Sends the invalidations of this node to the other nodes.
+     */
+    void send(@Nonnull List<Invalidation> invalidations) throws Exception;
+
+    /**
+     * @return the invalidations the other nodes sent since the last call, never the ones of this node
+     */
+    @Nonnull
+    List<Invalidation> receive() throws Exception;
+
+    default void close() {}
+
+}
@@ -0,0 +1,91 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, see {@link DatabaseMetrics}.
+ * <br><br>
+ * The durations are counted in buckets with exponentially growing bounds (bucket i holds durations below 2^i microseconds),
+ * so recording doesn't allocate and the percentiles are accurate to a factor of two.
+ */
+public class LatencyHistogram {
+
+    private final static int BUCKETS = 40;
+
+    /**
+     * A snapshot of the histogram, all durations in milliseconds.
+     * @param count the amount of recorded durations
+     * @param mean the average duration
+     * @param p50 the median, the upper bound of its bucket
+     * @param p95 the 95th percentile, the upper bound of its bucket
+     * @param p99 the 99th percentile, the upper bound of its bucket
+     * @param max the longest duration
+     */
+    public record Snapshot(long count, double mean, double p50, double p95, double p99, double max) {}
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    public void record(long nanos) {
+        var micros = Math.max(0, nanos / 1000);
+        var bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+        this.buckets.incrementAndGet(bucket);
+        this.count.increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    @Nonnull
+    public Snapshot getSnapshot() {
+        var counts = new long[BUCKETS];
+        var total = 0L;
+
+        for (var i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+
+        var max = this.maxNanos.get() / 1_000_000d;
+        if (total == 0)
+            return new Snapshot(0, 0, 0, 0, 0, 0);
+
+        return new Snapshot(
+                total,
+                this.totalNanos.sum() / 1_000_000d / this.count.sum(),
+                Math.min(max, percentile(counts, total, 0.5)),
+                Math.min(max, percentile(counts, total, 0.95)),
+                Math.min(max, percentile(counts, total, 0.99)),
+                max
+        );
+    }
+
+    /**
+     * @return the upper bound of the bucket holding the percentile in milliseconds
+     */
+    private static double percentile(@Nonnull long[] counts, long total, double percentile) {
+        var rank = (long) Math.ceil(total * percentile);
+        var seen = 0L;
+
+        for (var i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return (1L << i) / 1000d;
+        }
+
+        return (1L << (counts.length - 1)) / 1000d;
+    }
+
+}
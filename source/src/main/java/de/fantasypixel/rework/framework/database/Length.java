@@ -0,0 +1,18 @@
+package de.fantasypixel.rework.framework.database;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The maximum length of a string-column inside of {@link Entity} classes, used when the {@link SchemaMigrator} creates the table.
+ * String-columns without the annotation are created with a length of 255.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Length {
+
+    int value();
+
+}
@@ -0,0 +1,29 @@
+package de.fantasypixel.rework.framework.database;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an {@link Entity} as a link between two ids, like a join-table. Besides the id, the entity must only have the two int-columns.
+ * <br><br>
+ * The rows of link-entities aren't kept in the {@link EntityCache} but in a {@link LinkStore}, which always holds the whole table with primitive values.
+ * The {@link Entity#cachePolicy()} is ignored. Use {@link DataRepoProvider#existsLink(int, int)}, {@link DataRepoProvider#getLinked(int)}
+ * and {@link DataRepoProvider#getLinkedReverse(int)} to look up links without creating entities.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface LinkEntity {
+
+    /**
+     * The name of the column holding the left id.
+     */
+    String left();
+
+    /**
+     * The name of the column holding the right id.
+     */
+    String right();
+
+}
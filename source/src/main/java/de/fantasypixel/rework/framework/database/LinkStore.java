@@ -0,0 +1,414 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * The in-memory store of a {@link DataRepoProvider} for {@link LinkEntity link-entities}, replaces the {@link EntityCache} for those.
+ * <br><br>
+ * The links are kept as primitive values without creating entities: the pairs are packed into longs and mapped to their ids,
+ * the right ids of every left id (and the other way round) are kept in int-arrays. Looking up a pair or the linked ids of an id doesn't scan the store.
+ * Open addressing with linear probing is used for all tables, so no objects are created per link.
+ * <br><br>
+ * Every pair can only be stored once (the link-tables have a unique constraint on both columns), storing a pair with another id replaces the old link.
+ * All operations are synchronized as repositories are accessed from the server-thread and the database-threads.
+ */
+public class LinkStore {
+
+    /**
+     * Receives the links of {@link #forEach(LinkConsumer)} and similar methods.
+     */
+    @FunctionalInterface
+    public interface LinkConsumer {
+        void accept(int id, int left, int right);
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final LongTable idsByPair;
+    private final LongTable pairsById;
+    private final ListTable rightsByLeft;
+    private final ListTable leftsByRight;
+    private boolean complete;
+
+    public LinkStore() {
+        this.idsByPair = new LongTable();
+        this.pairsById = new LongTable();
+        this.rightsByLeft = new ListTable();
+        this.leftsByRight = new ListTable();
+    }
+
+    private static long pack(int left, int right) {
+        return ((long) left << 32) | (right & 0xFFFFFFFFL);
+    }
+
+    private static int left(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    private static int right(long pair) {
+        return (int) pair;
+    }
+
+    /**
+     * Stores the link. If the id is stored already with another pair or the pair with another id, the old link is replaced.
+     */
+    public synchronized void put(int id, int left, int right) {
+        var pair = pack(left, right);
+
+        var idSlot = this.pairsById.find(id);
+        if (idSlot >= 0) {
+            if (this.pairsById.values[idSlot] == pair)
+                return;
+
+            this.remove(id);
+        }
+
+        var pairSlot = this.idsByPair.find(pair);
+        if (pairSlot >= 0)
+            this.remove((int) this.idsByPair.values[pairSlot]);
+
+        this.idsByPair.put(pair, id);
+        this.pairsById.put(id, pair);
+        this.rightsByLeft.add(left, right);
+        this.leftsByRight.add(right, left);
+    }
+
+    /**
+     * Removes the link with the given id.
+     * @return whether a link was removed
+     */
+    public synchronized boolean remove(int id) {
+        var idSlot = this.pairsById.find(id);
+        if (idSlot < 0)
+            return false;
+
+        var pair = this.pairsById.values[idSlot];
+        this.pairsById.removeSlot(idSlot);
+        this.idsByPair.removeSlot(this.idsByPair.find(pair));
+        this.rightsByLeft.remove(left(pair), right(pair));
+        this.leftsByRight.remove(right(pair), left(pair));
+        return true;
+    }
+
+    public synchronized boolean contains(int left, int right) {
+        return this.idsByPair.find(pack(left, right)) >= 0;
+    }
+
+    /**
+     * @return the right ids linked to the left id
+     */
+    @Nonnull
+    public synchronized int[] getRights(int left) {
+        return this.rightsByLeft.get(left);
+    }
+
+    /**
+     * @return the left ids linked to the right id
+     */
+    @Nonnull
+    public synchronized int[] getLefts(int right) {
+        return this.leftsByRight.get(right);
+    }
+
+    /**
+     * Passes the link with the given id, if there is one.
+     */
+    public synchronized void forId(int id, @Nonnull LinkConsumer consumer) {
+        var slot = this.pairsById.find(id);
+        if (slot >= 0)
+            consumer.accept(id, left(this.pairsById.values[slot]), right(this.pairsById.values[slot]));
+    }
+
+    /**
+     * Passes all links of the left id.
+     */
+    public synchronized void forLeft(int left, @Nonnull LinkConsumer consumer) {
+        for (var right : this.rightsByLeft.get(left))
+            consumer.accept((int) this.idsByPair.values[this.idsByPair.find(pack(left, right))], left, right);
+    }
+
+    /**
+     * Passes all links of the right id.
+     */
+    public synchronized void forRight(int right, @Nonnull LinkConsumer consumer) {
+        for (var left : this.leftsByRight.get(right))
+            consumer.accept((int) this.idsByPair.values[this.idsByPair.find(pack(left, right))], left, right);
+    }
+
+    /**
+     * Passes all links.
+     */
+    public synchronized void forEach(@Nonnull LinkConsumer consumer) {
+        for (var slot = 0; slot < this.pairsById.used.length; slot++) {
+            if (this.pairsById.used[slot])
+                consumer.accept((int) this.pairsById.keys[slot], left(this.pairsById.values[slot]), right(this.pairsById.values[slot]));
+        }
+    }
+
+    public synchronized int size() {
+        return this.pairsById.size;
+    }
+
+    /**
+     * A complete store holds every row of the table, so links that aren't stored don't exist.
+     * The store is complete once the table was loaded, see {@link DataRepoProvider}.
+     */
+    public synchronized boolean isComplete() {
+        return this.complete;
+    }
+
+    public synchronized void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public synchronized void clear() {
+        this.idsByPair.clear();
+        this.pairsById.clear();
+        this.rightsByLeft.clear();
+        this.leftsByRight.clear();
+        this.complete = false;
+    }
+
+    /**
+     * A hash-table with long keys using open addressing with linear probing. Removed entries are filled by shifting the following entries back, so no tombstones are needed.
+     */
+    private static abstract class ProbingTable {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        long[] keys;
+        boolean[] used;
+        int size;
+        int mask;
+
+        ProbingTable() {
+            this.allocate(INITIAL_CAPACITY);
+        }
+
+        private static int hash(long key) {
+            var hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        void allocate(int capacity) {
+            this.keys = new long[capacity];
+            this.used = new boolean[capacity];
+            this.mask = capacity - 1;
+            this.size = 0;
+            this.allocateValues(capacity);
+        }
+
+        /**
+         * @return the slot of the key or -1 if it isn't stored
+         */
+        int find(long key) {
+            for (var slot = hash(key) & this.mask; this.used[slot]; slot = (slot + 1) & this.mask) {
+                if (this.keys[slot] == key)
+                    return slot;
+            }
+
+            return -1;
+        }
+
+        /**
+         * @return the slot of the key, the key is inserted if it isn't stored yet
+         */
+        int findOrInsert(long key) {
+            var slot = this.find(key);
+            if (slot >= 0)
+                return slot;
+
+            // keep the load-factor below 2/3
+            if ((this.size + 1) * 3 > this.keys.length * 2)
+                this.grow();
+
+            slot = hash(key) & this.mask;
+            while (this.used[slot])
+                slot = (slot + 1) & this.mask;
+
+            this.keys[slot] = key;
+            this.used[slot] = true;
+            this.size++;
+            return slot;
+        }
+
+        void removeSlot(int slot) {
+            this.used[slot] = false;
+            this.clearValue(slot);
+            this.size--;
+
+            var free = slot;
+            var next = slot;
+
+            while (true) {
+                next = (next + 1) & this.mask;
+                if (!this.used[next])
+                    return;
+
+                // the entry can be moved to the free slot if its ideal slot isn't between the free slot and itself
+                var ideal = hash(this.keys[next]) & this.mask;
+                var stays = free <= next
+                        ? free < ideal && ideal <= next
+                        : free < ideal || ideal <= next;
+
+                if (stays)
+                    continue;
+
+                this.keys[free] = this.keys[next];
+                this.used[free] = true;
+                this.moveValue(next, free);
+                this.used[next] = false;
+                this.clearValue(next);
+                free = next;
+            }
+        }
+
+        private void grow() {
+            var oldKeys = this.keys;
+            var oldUsed = this.used;
+            var oldValues = this.values();
+
+            this.allocate(oldKeys.length * 2);
+
+            for (var slot = 0; slot < oldKeys.length; slot++) {
+                if (oldUsed[slot])
+                    this.copyValue(oldValues, slot, this.findOrInsert(oldKeys[slot]));
+            }
+        }
+
+        void clear() {
+            this.allocate(INITIAL_CAPACITY);
+        }
+
+        abstract void allocateValues(int capacity);
+
+        abstract Object values();
+
+        abstract void copyValue(Object oldValues, int oldSlot, int newSlot);
+
+        abstract void moveValue(int from, int to);
+
+        abstract void clearValue(int slot);
+
+    }
+
+    /**
+     * Maps long keys to long values.
+     */
+    private static class LongTable extends ProbingTable {
+
+        long[] values;
+
+        void put(long key, long value) {
+            // the insert might grow the table, so the slot must be known before the values are accessed
+            var slot = this.findOrInsert(key);
+            this.values[slot] = value;
+        }
+
+        @Override
+        void allocateValues(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        @Override
+        Object values() {
+            return this.values;
+        }
+
+        @Override
+        void copyValue(Object oldValues, int oldSlot, int newSlot) {
+            this.values[newSlot] = ((long[]) oldValues)[oldSlot];
+        }
+
+        @Override
+        void moveValue(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        @Override
+        void clearValue(int slot) {
+            this.values[slot] = 0;
+        }
+
+    }
+
+    /**
+     * Maps int keys to lists of ints. The lists are kept in arrays that grow when needed, the first element of the array is the list's size.
+     */
+    private static class ListTable extends ProbingTable {
+
+        int[][] values;
+
+        void add(int key, int value) {
+            var slot = this.findOrInsert(key);
+            var list = this.values[slot];
+
+            if (list == null)
+                list = this.values[slot] = new int[4];
+            else if (list[0] + 1 == list.length)
+                list = this.values[slot] = Arrays.copyOf(list, list.length * 2);
+
+            list[++list[0]] = value;
+        }
+
+        /**
+         * Removes one occurrence of the value, the order of the list isn't kept.
+         */
+        void remove(int key, int value) {
+            var slot = this.find(key);
+            if (slot < 0)
+                return;
+
+            var list = this.values[slot];
+            for (var i = 1; i <= list[0]; i++) {
+                if (list[i] != value)
+                    continue;
+
+                list[i] = list[list[0]];
+                list[0]--;
+                break;
+            }
+
+            if (list[0] == 0)
+                this.removeSlot(slot);
+        }
+
+        @Nonnull
+        int[] get(int key) {
+            var slot = this.find(key);
+            if (slot < 0)
+                return EMPTY;
+
+            var list = this.values[slot];
+            return Arrays.copyOfRange(list, 1, list[0] + 1);
+        }
+
+        @Override
+        void allocateValues(int capacity) {
+            this.values = new int[capacity][];
+        }
+
+        @Override
+        Object values() {
+            return this.values;
+        }
+
+        @Override
+        void copyValue(Object oldValues, int oldSlot, int newSlot) {
+            this.values[newSlot] = ((int[][]) oldValues)[oldSlot];
+        }
+
+        @Override
+        void moveValue(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        @Override
+        void clearValue(int slot) {
+            this.values[slot] = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers queries of a {@link DataRepoProvider} that didn't match any row, so that repeated lookups of missing rows don't ask the database again.
+ * <br><br>
+ * Entries expire after {@link DatabaseConfig#getNegativeCacheTtl()} and are invalidated as soon as an entity matching the query is written.
+ * To not remember results that were outdated by a concurrent write, a miss is only remembered if no entity was written since the lookup started, see {@link #getGeneration()}.
+ * @param <E> the type of the entities
+ */
+public class NegativeCache<E> {
+
+    private final EntityModel<E> model;
+    private final long ttl;
+    private final int maxEntries;
+
+    /**
+     * The queries mapped to the time they expire.
+     */
+    private final LinkedHashMap<Query, Long> entries;
+    private long generation;
+    private long hits;
+
+    /**
+     * @param ttl the amount of milliseconds a miss is remembered, 0 disables the cache
+     * @param maxEntries the maximum amount of remembered misses, the eldest ones are dropped first
+     */
+    public NegativeCache(@Nonnull EntityModel<E> model, long ttl, int maxEntries) {
+        this.model = model;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query, Long> eldest) {
+                return this.size() > NegativeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return whether the query is known to match nothing
+     */
+    public synchronized boolean contains(@Nonnull Query query) {
+        var expiresAt = this.entries.get(query);
+        if (expiresAt == null)
+            return false;
+
+        if (expiresAt < System.currentTimeMillis()) {
+            this.entries.remove(query);
+            return false;
+        }
+
+        this.hits++;
+        return true;
+    }
+
+    /**
+     * The generation is increased whenever entities are written. Read it before the database-lookup and pass it to {@link #add(Query, long)}.
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Remembers that the query matched nothing, unless an entity was written since the given generation.
+     */
+    public synchronized void add(@Nonnull Query query, long generation) {
+        if (this.ttl <= 0 || this.maxEntries <= 0 || generation != this.generation)
+            return;
+
+        this.entries.put(query.copy(), System.currentTimeMillis() + this.ttl);
+    }
+
+    /**
+     * Drops all remembered queries the written entity matches.
+     */
+    public synchronized void invalidate(@Nonnull E entity) {
+        this.generation++;
+
+        if (!this.entries.isEmpty())
+            this.entries.keySet().removeIf(query -> this.matches(query, entity));
+    }
+
+    public synchronized void clear() {
+        this.generation++;
+        this.entries.clear();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the amount of lookups answered by this cache
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    private boolean matches(@Nonnull Query query, @Nonnull E entity) {
+        return query.matches(columnName -> {
+            var column = this.model.getColumn(columnName);
+            return column != null ? this.model.getValue(column, entity) : null;
+        });
+    }
+
+}
@@ -0,0 +1,41 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.framework.provider.Controller;
+import de.fantasypixel.rework.framework.provider.ServiceProvider;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Can be applied on public methods in {@link ServiceProvider} and {@link Controller} classes with one {@link EntityChange} parameter.
+ * The method is called for every committed insert, update and delete of the given entity-type, so derived state can be updated incrementally.
+ * Changes rolled back by a {@link Transaction} aren't published.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnEntityChange {
+
+    /**
+     * The entity-type to listen to.
+     */
+    Class<?> value();
+
+    Delivery delivery() default Delivery.SYNC;
+
+    enum Delivery {
+
+        /**
+         * The method is called on the thread that committed the change, right after the repository's cache was updated.
+         */
+        SYNC,
+
+        /**
+         * The change is queued and the method is called on the server-thread (with the next tick), so it can use the Bukkit-API and doesn't slow down the writer.
+         */
+        SERVER_THREAD
+
+    }
+
+}
@@ -2,18 +2,67 @@ package de.fantasypixel.rework.framework.database;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
- * A query object holds multiple where entries for querying the database.
+ * A query object holds the where-conditions, the order and the paging for querying the database.
+ * <br><br>
+ * Conditions are AND-ed, alternatives can be added as OR-groups with {@link #or(Query...)}.
+ * Queries are rendered for every {@link DatabaseType} and can also be evaluated against cached entities, see {@link #matches(Function)}.
  * <br>
  * Currently, the query-builder is only used for select statements.
  */
 public class Query {
 
-    private final Map<String, Object> where;
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * The comparison-operators of a where-condition.
+     */
+    public enum Operator {
+
+        EQ("="),
+        NEQ("<>"),
+        LT("<"),
+        LTE("<="),
+        GT(">"),
+        GTE(">="),
+        IN("IN"),
+        NOT_IN("NOT IN");
+
+        private final String sql;
+
+        Operator(@Nonnull String sql) {
+            this.sql = sql;
+        }
+
+    }
+
+    /**
+     * A part of the where-clause.
+     */
+    private sealed interface Criterion permits Condition, AnyOf {}
+
+    /**
+     * A single comparison, for {@link Operator#IN} and {@link Operator#NOT_IN} the value is a list of values.
+     */
+    private record Condition(@Nonnull String column, @Nonnull Operator operator, @Nullable Object value) implements Criterion {}
+
+    /**
+     * An OR-group, matches if at least one of the alternatives matches.
+     */
+    private record AnyOf(@Nonnull List<Query> alternatives) implements Criterion {}
+
+    private record Order(@Nonnull String column, boolean descending) {}
+
+    private final List<Criterion> criteria;
+    private final List<Order> orders;
+    @Nullable private Integer limit;
+    @Nullable private Integer offset;
 
     /**
      * Constructs a new query with an initial where mapping.
@@ -21,19 +70,28 @@ public class Query {
      * @param value the first value
      */
     public Query(@Nonnull String columnName, @Nonnull Object value) {
-        this.where = new LinkedHashMap<>();
-        this.where.put(columnName, value);
+        this();
+        this.where(columnName, value);
     }
 
     /**
      * Constructs a new query without an initial where mapping.
      */
     public Query() {
-        this.where = new LinkedHashMap<>();
+        this.criteria = new ArrayList<>();
+        this.orders = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a query matching entities that match at least one of the alternatives.
+     */
+    @Nonnull
+    public static Query anyOf(@Nonnull Query... alternatives) {
+        return new Query().or(alternatives);
     }
 
     /**
-     * Adds a where mapping to the query.
+     * Adds an equality where mapping to the query.
      * @param columnName the column's name
      * @param value the value to query for
      * @return the updated query
@@ -41,77 +99,434 @@ public class Query {
      */
     @Nonnull
     public Query where(@Nonnull String columnName, @Nonnull Object value) throws QueryException {
-        if (this.where.containsKey(columnName))
+        if (this.getWhereMap().containsKey(columnName))
             throw new QueryException("Duplicate column {0}!", columnName);
-        else
-            this.where.put(columnName, value);
+
+        return this.where(columnName, Operator.EQ, value);
+    }
+
+    /**
+     * Adds a where-condition to the query. For {@link Operator#IN} and {@link Operator#NOT_IN} use {@link #whereIn(String, Collection)} and {@link #whereNotIn(String, Collection)}.
+     * @return the updated query
+     * @throws QueryException if the column-name is invalid or the operator needs a collection
+     */
+    @Nonnull
+    public Query where(@Nonnull String columnName, @Nonnull Operator operator, @Nonnull Object value) throws QueryException {
+        if (operator == Operator.IN || operator == Operator.NOT_IN) {
+            if (!(value instanceof Collection<?> values))
+                throw new QueryException("The operator {0} needs a collection of values!", operator);
+
+            this.criteria.add(new Condition(validateIdentifier(columnName), operator, List.copyOf(values)));
+        } else
+            this.criteria.add(new Condition(validateIdentifier(columnName), operator, value));
 
         return this;
     }
 
     /**
-     * Constructs a string representation of the where mapping.
+     * Adds a {@code column IN (...)} condition. An empty collection matches nothing.
+     */
+    @Nonnull
+    public Query whereIn(@Nonnull String columnName, @Nonnull Collection<?> values) throws QueryException {
+        return this.where(columnName, Operator.IN, values);
+    }
+
+    /**
+     * Adds a {@code column NOT IN (...)} condition. An empty collection matches everything.
+     */
+    @Nonnull
+    public Query whereNotIn(@Nonnull String columnName, @Nonnull Collection<?> values) throws QueryException {
+        return this.where(columnName, Operator.NOT_IN, values);
+    }
+
+    /**
+     * Adds an OR-group, at least one of the alternatives must match. The order and paging of the alternatives are ignored.
+     */
+    @Nonnull
+    public Query or(@Nonnull Query... alternatives) {
+        this.criteria.add(new AnyOf(Arrays.stream(alternatives).map(Query::copy).toList()));
+        return this;
+    }
+
+    /**
+     * Orders the results ascending by the column. Multiple orders are applied in the order they were added.
+     */
+    @Nonnull
+    public Query orderBy(@Nonnull String columnName) throws QueryException {
+        this.orders.add(new Order(validateIdentifier(columnName), false));
+        return this;
+    }
+
+    /**
+     * Orders the results descending by the column.
+     */
+    @Nonnull
+    public Query orderByDescending(@Nonnull String columnName) throws QueryException {
+        this.orders.add(new Order(validateIdentifier(columnName), true));
+        return this;
+    }
+
+    /**
+     * Limits the amount of results.
+     */
+    @Nonnull
+    public Query limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    /**
+     * Skips the first results.
+     */
+    @Nonnull
+    public Query offset(int offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    /**
+     * @return a copy of this query that isn't affected by further changes to this query
+     */
+    @Nonnull
+    public Query copy() {
+        var copy = new Query();
+        copy.criteria.addAll(this.criteria);
+        copy.orders.addAll(this.orders);
+        copy.limit = this.limit;
+        copy.offset = this.offset;
+        return copy;
+    }
+
+    /**
+     * @return whether the results depend on the order or paging, such queries can only be answered from a complete cache
+     */
+    public boolean isOrderedOrPaged() {
+        return !this.orders.isEmpty() || this.limit != null || this.offset != null;
+    }
+
+    /**
+     * @return the ids if this query only looks up entities by their id (no other conditions, order or paging), otherwise null
+     */
+    @Nullable
+    public Set<Object> getIdLookup() {
+        if (this.criteria.size() != 1 || this.isOrderedOrPaged() || !(this.criteria.get(0) instanceof Condition condition) || !condition.column().equals("id"))
+            return null;
+
+        return switch (condition.operator()) {
+            case EQ -> Set.of(condition.value());
+            case IN -> new HashSet<>((List<?>) condition.value());
+            default -> null;
+        };
+    }
+
+    @Nonnull
+    private static String validateIdentifier(@Nonnull String identifier) throws QueryException {
+        if (!IDENTIFIER_PATTERN.matcher(identifier).matches())
+            throw new QueryException("Invalid column-name: {0}!", identifier);
+
+        return identifier;
+    }
+
+    @Nonnull
+    private static String quote(@Nonnull String column, @Nonnull DatabaseType databaseType) {
+        return databaseType == DatabaseType.POSTGRESQL
+                ? "\"" + column + "\""
+                : column;
+    }
+
+    /**
+     * Constructs a string representation of the where-conditions.
      * For instance: {@code accountId = ? AND active = ?} or {@code "accountId" = ? AND "active" = ?} for {@link DatabaseType#POSTGRESQL}.
      * <br><br>
      * Note that the values aren't inputted here but in the {@link DataRepoProvider}.
      */
     @Nonnull
     private String getWhereString(@Nonnull DatabaseType databaseType) {
-        var whereStrings = new ArrayList<String>();
-        this.where
-                .keySet()
-                .forEach((key) -> whereStrings.add(String.format(
-                                databaseType == DatabaseType.POSTGRESQL
-                                    ? "\"%s\" = ?"
-                                    : "%s = ?",
-                                key)));
-        return String.join(" AND ", whereStrings);
+        return this.criteria.stream()
+                .map(criterion -> this.getCriterionString(criterion, databaseType))
+                .collect(Collectors.joining(" AND "));
+    }
+
+    @Nonnull
+    private String getCriterionString(@Nonnull Criterion criterion, @Nonnull DatabaseType databaseType) {
+        if (criterion instanceof Condition condition)
+            return this.getConditionString(condition, databaseType);
+
+        var alternatives = ((AnyOf) criterion).alternatives();
+        if (alternatives.isEmpty())
+            return "1 = 0";
+
+        return alternatives.stream()
+                .map(alternative -> alternative.criteria.isEmpty() ? "1 = 1" : "(" + alternative.getWhereString(databaseType) + ")")
+                .collect(Collectors.joining(" OR ", "(", ")"));
+    }
+
+    @Nonnull
+    private String getConditionString(@Nonnull Condition condition, @Nonnull DatabaseType databaseType) {
+        var column = quote(condition.column(), databaseType);
+
+        if (condition.operator() == Operator.IN || condition.operator() == Operator.NOT_IN) {
+            var values = (List<?>) condition.value();
+            if (values.isEmpty())
+                return condition.operator() == Operator.IN ? "1 = 0" : "1 = 1";
+
+            return String.format(
+                    "%s %s (%s)",
+                    column,
+                    condition.operator().sql,
+                    values.stream().map(value -> "?").collect(Collectors.joining(", "))
+            );
+        }
+
+        return String.format("%s %s ?", column, condition.operator().sql);
+    }
+
+    /**
+     * @return the where-clause including the keyword or an empty string if there are no conditions
+     */
+    @Nonnull
+    private String getWhereClause(@Nonnull DatabaseType databaseType) {
+        return this.criteria.isEmpty()
+                ? ""
+                : " WHERE " + this.getWhereString(databaseType);
     }
 
     /**
-     * Constructs a select-query with the where mappings.
+     * @return the order- and paging-clauses or an empty string
+     */
+    @Nonnull
+    private String getOrderAndPagingClause(@Nonnull DatabaseType databaseType) {
+        var clause = new StringBuilder();
+
+        if (!this.orders.isEmpty()) {
+            clause.append(" ORDER BY ").append(
+                    this.orders.stream()
+                            .map(order -> quote(order.column(), databaseType) + (order.descending() ? " DESC" : " ASC"))
+                            .collect(Collectors.joining(", "))
+            );
+        }
+
+        if (this.limit != null)
+            clause.append(" LIMIT ").append(this.limit);
+        else if (this.offset != null) {
+            // an offset needs a limit in mysql & sqlite
+            clause.append(switch (databaseType) {
+                case MYSQL -> " LIMIT 18446744073709551615";
+                case POSTGRESQL -> " LIMIT ALL";
+                case SQLITE -> " LIMIT -1";
+            });
+        }
+
+        if (this.offset != null)
+            clause.append(" OFFSET ").append(this.offset);
+
+        return clause.toString();
+    }
+
+    /**
+     * Constructs a select-query with the where-conditions, order and paging.
      * For instance: {@code SELECT * FROM {0} WHERE accountId = ? AND active = ?} or {@code SELECT * FROM {0} WHERE "accountId" = ? AND "active" = ?} for {@link DatabaseType#POSTGRESQL}.
      * <br><br>
      * Note that the table-name and values aren't inputted here but in the {@link DataRepoProvider}.
-     * @param select to colum to select (must be {@code *} or {@code id})
-     * @throws QueryException if the select parameter wasn't {@code *} or {@code id}
+     * @param select the column to select, {@code *} selects all columns
+     * @throws QueryException if the select parameter isn't {@code *} or a valid column-name
      */
     @Nonnull
     public String toSelectQuery(@Nonnull String select, @Nonnull DatabaseType databaseType) throws QueryException {
-        if (!select.equals("*") && !select.equals("id"))
-            throw new QueryException("Invalid select: {0}! It should be * or id!", select);
-
-        String whereString = this.getWhereString(databaseType);
         return String.format(
-                "SELECT %s FROM {0} WHERE %s",
-                select,
-                whereString
+                "SELECT %s FROM {0}%s%s",
+                select.equals("*") ? select : quote(validateIdentifier(select), databaseType),
+                this.getWhereClause(databaseType),
+                this.getOrderAndPagingClause(databaseType)
         );
     }
 
     /**
-     * @return the where-values in the same order they were specified
+     * Constructs a count-query with the where-conditions. Order and paging are ignored.
+     * For instance: {@code SELECT COUNT(*) FROM {0} WHERE accountId = ?}.
+     */
+    @Nonnull
+    public String toCountQuery(@Nonnull DatabaseType databaseType) {
+        return "SELECT COUNT(*) FROM {0}" + this.getWhereClause(databaseType);
+    }
+
+    /**
+     * @return the where-values in the same order as their placeholders
      */
     @Nonnull
     public Object[] getWhereValues() {
-        return this.where.values().toArray();
+        var values = new ArrayList<>();
+        this.collectWhereValues(values);
+        return values.toArray();
+    }
+
+    private void collectWhereValues(@Nonnull List<Object> values) {
+        for (var criterion : this.criteria) {
+            if (criterion instanceof Condition condition) {
+                if (condition.operator() == Operator.IN || condition.operator() == Operator.NOT_IN)
+                    values.addAll((List<?>) condition.value());
+                else
+                    values.add(condition.value());
+            } else
+                ((AnyOf) criterion).alternatives().forEach(alternative -> alternative.collectWhereValues(values));
+        }
     }
 
+    /**
+     * @return the equality-conditions that must always match (conditions inside OR-groups aren't included)
+     */
     @Nonnull
     public Map<String, Object> getWhereMap() {
-        return this.where;
+        var whereMap = new LinkedHashMap<String, Object>();
+
+        for (var criterion : this.criteria) {
+            if (criterion instanceof Condition condition && condition.operator() == Operator.EQ)
+                whereMap.putIfAbsent(condition.column(), condition.value());
+        }
+
+        return whereMap;
+    }
+
+    /**
+     * @return all column-names used in the where-conditions
+     */
+    @Nonnull
+    public Set<String> getWhereColumns() {
+        var columns = new HashSet<String>();
+
+        for (var criterion : this.criteria) {
+            if (criterion instanceof Condition condition)
+                columns.add(condition.column());
+            else
+                ((AnyOf) criterion).alternatives().forEach(alternative -> columns.addAll(alternative.getWhereColumns()));
+        }
+
+        return columns;
+    }
+
+    /**
+     * Evaluates the where-conditions in memory.
+     * @param valueGetter gets the value of a column
+     * @return whether all conditions match
+     */
+    public boolean matches(@Nonnull Function<String, Object> valueGetter) {
+        for (var criterion : this.criteria) {
+            var match = criterion instanceof Condition condition
+                    ? matches(condition, valueGetter.apply(condition.column()))
+                    : ((AnyOf) criterion).alternatives().stream().anyMatch(alternative -> alternative.matches(valueGetter));
+
+            if (!match)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean matches(@Nonnull Condition condition, @Nullable Object actual) {
+        return switch (condition.operator()) {
+            case EQ -> valueEquals(actual, condition.value());
+            case NEQ -> actual != null && condition.value() != null && !valueEquals(actual, condition.value());
+            case LT -> isComparable(actual, condition.value()) && compare(actual, condition.value()) < 0;
+            case LTE -> isComparable(actual, condition.value()) && compare(actual, condition.value()) <= 0;
+            case GT -> isComparable(actual, condition.value()) && compare(actual, condition.value()) > 0;
+            case GTE -> isComparable(actual, condition.value()) && compare(actual, condition.value()) >= 0;
+            case IN -> ((List<?>) condition.value()).stream().anyMatch(value -> valueEquals(actual, value));
+            case NOT_IN -> actual != null && ((List<?>) condition.value()).stream().noneMatch(value -> valueEquals(actual, value));
+        };
     }
 
     /**
-     * Checks if another object is equal to this one.
-     * If it is a Query, the comparison is based on the {@link #getWhereString(DatabaseType)} with {@link DatabaseType#MYSQL}.
+     * Compares values like the database would, numbers of different types are compared by their value.
+     */
+    private static boolean valueEquals(@Nullable Object a, @Nullable Object b) {
+        if (a instanceof Number numberA && b instanceof Number numberB)
+            return Double.compare(numberA.doubleValue(), numberB.doubleValue()) == 0;
+
+        return Objects.equals(a, b);
+    }
+
+    /**
+     * @return whether the values can be compared, like in SQL comparisons with NULL never match
+     */
+    private static boolean isComparable(@Nullable Object a, @Nullable Object b) {
+        if (a == null || b == null)
+            return false;
+
+        return (a instanceof Number && b instanceof Number) || (a instanceof Comparable<?> && a.getClass().isInstance(b));
+    }
+
+    /**
+     * Compares two values that are {@link #isComparable(Object, Object) comparable}, numbers of different types are compared by their value.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(@Nonnull Object a, @Nonnull Object b) {
+        if (a instanceof Number numberA && b instanceof Number numberB)
+            return Double.compare(numberA.doubleValue(), numberB.doubleValue());
+
+        return Integer.signum(((Comparable) a).compareTo(b));
+    }
+
+    /**
+     * Applies the order and paging in memory.
+     * @param valueGetter gets the value of a column of an entity
+     * @return the ordered and paged entities
+     */
+    @Nonnull
+    public <T> List<T> orderAndPage(@Nonnull Collection<T> entities, @Nonnull BiFunction<T, String, Object> valueGetter) {
+        var stream = entities.stream();
+
+        if (!this.orders.isEmpty()) {
+            Comparator<T> comparator = (a, b) -> 0;
+
+            for (var order : this.orders) {
+                Comparator<T> orderComparator = (a, b) -> {
+                    var valueA = valueGetter.apply(a, order.column());
+                    var valueB = valueGetter.apply(b, order.column());
+
+                    // nulls first, like mysql & sqlite
+                    if (valueA == null || valueB == null)
+                        return valueA == valueB ? 0 : (valueA == null ? -1 : 1);
+
+                    return isComparable(valueA, valueB) ? compare(valueA, valueB) : 0;
+                };
+
+                comparator = comparator.thenComparing(order.descending() ? orderComparator.reversed() : orderComparator);
+            }
+
+            stream = stream.sorted(comparator);
+        }
+
+        if (this.offset != null)
+            stream = stream.skip(this.offset);
+
+        if (this.limit != null)
+            stream = stream.limit(this.limit);
+
+        return stream.toList();
+    }
+
+    /**
+     * Checks if another object is equal to this one. Queries are equal if their conditions, values, order and paging are equal.
      */
     @Override
     public boolean equals(@Nullable Object other) {
         if (!(other instanceof Query otherQuery))
             return false;
 
-        return this.getWhereString(DatabaseType.MYSQL).equals(otherQuery.getWhereString(DatabaseType.MYSQL));
+        return this.criteria.equals(otherQuery.criteria)
+                && this.orders.equals(otherQuery.orders)
+                && Objects.equals(this.limit, otherQuery.limit)
+                && Objects.equals(this.offset, otherQuery.offset);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.criteria, this.orders, this.limit, this.offset);
+    }
+
+    @Override
+    public String toString() {
+        return this.toSelectQuery("*", DatabaseType.MYSQL) + " " + Arrays.toString(this.getWhereValues());
     }
 
 }
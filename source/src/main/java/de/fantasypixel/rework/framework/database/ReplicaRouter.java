@@ -0,0 +1,79 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load-balances reads across the read-replicas of {@link DatabaseConfig#getReadReplicas()}, every replica has its own {@link ConnectionPool}.
+ * <br><br>
+ * The replicas are used round-robin, a replica that can't hand out a connection is skipped. Writes and the reads that have to see them
+ * stay on the primary, see {@link DataRepoProvider}.
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    private final FPRework plugin;
+    private final List<ConnectionPool> replicas;
+    private final AtomicInteger next;
+
+    public ReplicaRouter(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config) {
+        this.plugin = plugin;
+        this.replicas = new ArrayList<>();
+        this.next = new AtomicInteger();
+
+        for (var endpoint : config.getReadReplicas()) {
+            var separator = endpoint.lastIndexOf(':');
+            var host = separator > 0 ? endpoint.substring(0, separator) : endpoint;
+            var port = separator > 0 ? endpoint.substring(separator + 1) : config.getPort();
+
+            this.replicas.add(new ConnectionPool(plugin, config, host, port));
+            this.plugin.getFpLogger().debug("Added read-replica {0}:{1}.", host, port);
+        }
+    }
+
+    /**
+     * Borrows a connection from the next replica. Closing the connection returns it to the replica's pool.
+     * @throws SQLException if none of the replicas could hand out a connection
+     */
+    @Nonnull
+    public Connection getConnection() throws SQLException {
+        var start = Math.floorMod(this.next.getAndIncrement(), this.replicas.size());
+        SQLException lastException = null;
+
+        for (var i = 0; i < this.replicas.size(); i++) {
+            try {
+                return this.replicas.get((start + i) % this.replicas.size()).getConnection();
+            } catch (SQLException ex) {
+                this.plugin.getFpLogger().debugGrouped("DATABASE_POOL", "Skipping a read-replica: {0}", ex.getMessage());
+                lastException = ex;
+            }
+        }
+
+        throw lastException;
+    }
+
+    /**
+     * @return the statistics of the replicas' pools in the configured order
+     */
+    @Nonnull
+    public List<ConnectionPool.Stats> getStats() {
+        return this.replicas.stream()
+                .map(ConnectionPool::getStats)
+                .toList();
+    }
+
+    public boolean isEmpty() {
+        return this.replicas.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        this.replicas.forEach(ConnectionPool::close);
+    }
+
+}
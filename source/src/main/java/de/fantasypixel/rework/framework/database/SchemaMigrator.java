@@ -0,0 +1,404 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the tables and indexes declared by {@link Entity} classes that are missing in the database.
+ * Indexes are declared with {@link Indexed} on single columns and {@link CompositeIndex} on the entity.
+ * <br><br>
+ * Every table and index is a migration with a version like {@code accounts.uq_accounts_playerUuid}. Applied versions are recorded in the table
+ * {@value #HISTORY_TABLE} and never applied again, a changed index therefore needs a new name (the generated names contain the columns).
+ * Indexes that exist already with the same columns (for instance from the shipped sql-files) are only recorded.
+ * <br><br>
+ * Existing tables aren't altered.
+ */
+public class SchemaMigrator {
+
+    private final static String CLASS_NAME = SchemaMigrator.class.getSimpleName();
+    private final static String HISTORY_TABLE = "fp_schema_history";
+    private final static int DEFAULT_STRING_LENGTH = 255;
+
+    /**
+     * Index-names are limited to 64 characters by MySQL and to 63 by PostgreSQL.
+     */
+    private final static int MAX_INDEX_NAME_LENGTH = 60;
+
+    /**
+     * An index declared by an entity or existing in the database.
+     */
+    private record Index(@Nonnull String name, @Nonnull List<String> columns, boolean unique) {}
+
+    private final FPRework plugin;
+    private final DatabaseConfig config;
+    private final ConnectionPool connectionPool;
+    @Nullable private final SqliteWriter sqliteWriter;
+
+    public SchemaMigrator(@Nonnull DatabaseContext context) {
+        this.plugin = context.getPlugin();
+        this.config = context.getConfig();
+        this.connectionPool = context.getConnectionPool();
+        this.sqliteWriter = context.getSqliteWriter();
+    }
+
+    /**
+     * Applies the missing migrations of the given entities. Indexes that can't be created (for instance a unique index over duplicate values) are logged and retried on the next start.
+     * With SQLite, the migrations are run by the {@link SqliteWriter}, which is the only connection writing then.
+     * @return the amount of applied migrations or -1, if the migrations couldn't be applied
+     */
+    public int migrate(@Nonnull Collection<Class<?>> entityClasses) {
+        int applied;
+
+        try {
+            if (this.sqliteWriter != null) {
+                applied = this.sqliteWriter.execute(conn -> this.migrate(conn, entityClasses));
+            } else {
+                try (var conn = this.connectionPool.getConnection()) {
+                    applied = this.migrate(conn, entityClasses);
+                }
+            }
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().warning("Couldn't apply the database-migrations.");
+            this.plugin.getFpLogger().error(CLASS_NAME, "migrate", ex);
+            return -1;
+        }
+
+        this.plugin.getFpLogger().debug("Applied {0} database-migrations for {1} entities.", applied, entityClasses.size());
+        return applied;
+    }
+
+    private int migrate(@Nonnull Connection conn, @Nonnull Collection<Class<?>> entityClasses) throws SQLException {
+        var applied = 0;
+
+        this.createHistoryTable(conn);
+        var appliedVersions = this.getAppliedVersions(conn);
+
+        for (var entityClass : entityClasses) {
+            var entityAnnotation = entityClass.getAnnotation(Entity.class);
+            if (entityAnnotation == null)
+                continue;
+
+            try {
+                applied += this.migrateEntity(conn, new EntityModel<>(entityClass, entityAnnotation.tableName(), this.config.getType()), appliedVersions);
+            } catch (IllegalArgumentException ex) {
+                this.plugin.getFpLogger().error(CLASS_NAME, "migrate", ex);
+            }
+        }
+
+        return applied;
+    }
+
+    private void createHistoryTable(@Nonnull Connection conn) throws SQLException {
+        var statementStr = String.format(
+                "CREATE TABLE IF NOT EXISTS %s (version varchar(200) NOT NULL PRIMARY KEY, description varchar(1000) NOT NULL, applied_at bigint NOT NULL)",
+                HISTORY_TABLE
+        );
+
+        if (this.config.getType() == DatabaseType.MYSQL)
+            statementStr += " ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin";
+
+        this.execute(conn, statementStr);
+    }
+
+    @Nonnull
+    private Set<String> getAppliedVersions(@Nonnull Connection conn) throws SQLException {
+        var versions = new HashSet<String>();
+
+        try (
+                var statement = conn.prepareStatement(String.format("SELECT version FROM %s", HISTORY_TABLE));
+                var rs = statement.executeQuery()
+        ) {
+            while (rs.next())
+                versions.add(rs.getString(1));
+        }
+
+        return versions;
+    }
+
+    /**
+     * Records the version as applied.
+     */
+    private void record(@Nonnull Connection conn, @Nonnull String version, @Nonnull String description) throws SQLException {
+        try (var statement = conn.prepareStatement(String.format("INSERT INTO %s (version, description, applied_at) VALUES (?, ?, ?)", HISTORY_TABLE))) {
+            statement.setString(1, version);
+            statement.setString(2, description.length() > 1000 ? description.substring(0, 1000) : description);
+            statement.setLong(3, System.currentTimeMillis());
+            statement.executeUpdate();
+        }
+    }
+
+    private void execute(@Nonnull Connection conn, @Nonnull String statementStr) throws SQLException {
+        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Executing SQL: \"{0}\"", statementStr);
+
+        try (var statement = conn.createStatement()) {
+            statement.execute(statementStr);
+        }
+    }
+
+    /**
+     * Creates the entity's table and indexes, if they weren't applied yet.
+     * @return the amount of applied migrations
+     */
+    private int migrateEntity(@Nonnull Connection conn, @Nonnull EntityModel<?> model, @Nonnull Set<String> appliedVersions) throws SQLException {
+        var applied = 0;
+        var tableName = model.getTableName();
+
+        var tableVersion = tableName + ".table";
+        if (!appliedVersions.contains(tableVersion)) {
+            var statementStr = this.getCreateTableStatement(model);
+            if (statementStr == null)
+                return applied;
+
+            this.execute(conn, statementStr);
+            this.record(conn, tableVersion, statementStr);
+            this.plugin.getFpLogger().info("Applied database-migration {0}.", tableVersion);
+            applied++;
+        }
+
+        List<Index> existingIndexes = null;
+
+        for (var index : this.getDeclaredIndexes(model)) {
+            var version = tableName + "." + index.name();
+            if (appliedVersions.contains(version))
+                continue;
+
+            if (existingIndexes == null)
+                existingIndexes = this.getExistingIndexes(conn, tableName);
+
+            var existingIndex = existingIndexes.stream()
+                    .filter(existing -> covers(existing, index))
+                    .findFirst();
+
+            if (existingIndex.isPresent()) {
+                this.record(conn, version, "covered by the existing index " + existingIndex.get().name());
+                this.plugin.getFpLogger().debug("The database-migration {0} is covered by the existing index {1}.", version, existingIndex.get().name());
+                applied++;
+                continue;
+            }
+
+            var statementStr = this.getCreateIndexStatement(model, index);
+
+            try {
+                this.execute(conn, statementStr);
+            } catch (SQLException ex) {
+                this.plugin.getFpLogger().warning("Couldn't apply the database-migration {0}. Unique indexes can't be created while the table holds duplicate values.", version);
+                this.plugin.getFpLogger().error(CLASS_NAME, "migrateEntity", ex);
+                continue;
+            }
+
+            this.record(conn, version, statementStr);
+            this.plugin.getFpLogger().info("Applied database-migration {0}.", version);
+            applied++;
+        }
+
+        return applied;
+    }
+
+    /**
+     * @return whether the existing index makes the declared one unnecessary: it has the same name, enforces the same unique constraint or (for non-unique indexes) starts with the same columns
+     */
+    private static boolean covers(@Nonnull Index existing, @Nonnull Index declared) {
+        if (existing.name().equalsIgnoreCase(declared.name()))
+            return true;
+
+        if (declared.unique()) {
+            var existingColumns = existing.columns().stream().map(String::toLowerCase).collect(Collectors.toSet());
+            var declaredColumns = declared.columns().stream().map(String::toLowerCase).collect(Collectors.toSet());
+            return existing.unique() && existingColumns.equals(declaredColumns);
+        }
+
+        if (existing.columns().size() < declared.columns().size())
+            return false;
+
+        for (var i = 0; i < declared.columns().size(); i++) {
+            if (!existing.columns().get(i).equalsIgnoreCase(declared.columns().get(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the indexes declared by the entity. Non-unique indexes of single columns are left out if a composite index starts with the column.
+     */
+    @Nonnull
+    private List<Index> getDeclaredIndexes(@Nonnull EntityModel<?> model) {
+        var indexes = new ArrayList<Index>();
+        var tableName = model.getTableName();
+
+        for (var compositeIndex : model.getEntityClass().getAnnotationsByType(CompositeIndex.class)) {
+            var columns = List.of(compositeIndex.columns());
+
+            if (columns.isEmpty() || columns.stream().anyMatch(column -> model.getColumn(column) == null)) {
+                this.plugin.getFpLogger().warning("The composite index {0} of entity {1} references unknown columns and is skipped.", columns, model.getEntityClass().getSimpleName());
+                continue;
+            }
+
+            var name = compositeIndex.name().isEmpty()
+                    ? getIndexName(tableName, columns, compositeIndex.unique())
+                    : compositeIndex.name();
+
+            indexes.add(new Index(name, columns, compositeIndex.unique()));
+        }
+
+        for (var column : model.getValueColumns()) {
+            var field = getField(model, column.name());
+            var indexed = field != null ? field.getAnnotation(Indexed.class) : null;
+            if (indexed == null)
+                continue;
+
+            if (!indexed.unique() && indexes.stream().anyMatch(index -> index.columns().get(0).equals(column.name())))
+                continue;
+
+            var columns = List.of(column.name());
+            indexes.add(new Index(getIndexName(tableName, columns, indexed.unique()), columns, indexed.unique()));
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Reads the indexes of the table from the database's meta-data.
+     */
+    @Nonnull
+    private List<Index> getExistingIndexes(@Nonnull Connection conn, @Nonnull String tableName) throws SQLException {
+        var metaData = conn.getMetaData();
+        var storedTableName = metaData.storesLowerCaseIdentifiers()
+                ? tableName.toLowerCase()
+                : metaData.storesUpperCaseIdentifiers() ? tableName.toUpperCase() : tableName;
+
+        var columnsByIndex = new LinkedHashMap<String, TreeMap<Short, String>>();
+        var uniqueIndexes = new HashSet<String>();
+
+        try (var rs = metaData.getIndexInfo(conn.getCatalog(), null, storedTableName, false, false)) {
+            while (rs.next()) {
+                var indexName = rs.getString("INDEX_NAME");
+                var columnName = rs.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null)
+                    continue;
+
+                columnsByIndex.computeIfAbsent(indexName, name -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), columnName);
+                if (!rs.getBoolean("NON_UNIQUE"))
+                    uniqueIndexes.add(indexName);
+            }
+        }
+
+        return columnsByIndex.entrySet()
+                .stream()
+                .map(entry -> new Index(entry.getKey(), List.copyOf(entry.getValue().values()), uniqueIndexes.contains(entry.getKey())))
+                .toList();
+    }
+
+    /**
+     * Generates the name of an index, like {@code uq_accounts_playerUuid} or {@code idx_characters_accountId_active}. Names that are too long are shortened with a hash.
+     */
+    @Nonnull
+    private static String getIndexName(@Nonnull String tableName, @Nonnull List<String> columns, boolean unique) {
+        var name = (unique ? "uq_" : "idx_") + tableName + "_" + String.join("_", columns);
+        if (name.length() <= MAX_INDEX_NAME_LENGTH)
+            return name;
+
+        return name.substring(0, MAX_INDEX_NAME_LENGTH - 9) + "_" + String.format("%08x", name.hashCode());
+    }
+
+    @Nullable
+    private static Field getField(@Nonnull EntityModel<?> model, @Nonnull String columnName) {
+        try {
+            return model.getEntityClass().getDeclaredField(columnName);
+        } catch (NoSuchFieldException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the create-statement of the entity's table or null if a column has a type that can't be mapped
+     */
+    @Nullable
+    private String getCreateTableStatement(@Nonnull EntityModel<?> model) {
+        var definitions = new ArrayList<String>();
+        definitions.add(model.quote("id") + " " + this.byDatabaseType(
+                "int(11) NOT NULL PRIMARY KEY AUTO_INCREMENT",
+                "int NOT NULL PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY",
+                "INTEGER PRIMARY KEY"
+        ));
+
+        for (var column : model.getValueColumns()) {
+            var field = getField(model, column.name());
+            var sqlType = this.getSqlType(column.type(), field);
+
+            if (sqlType == null) {
+                this.plugin.getFpLogger().warning("The column {0} of entity {1} has the type {2}, which can't be mapped to a database-type. The table {3} isn't created.", column.name(), model.getEntityClass().getSimpleName(), column.type().getSimpleName(), model.getTableName());
+                return null;
+            }
+
+            var nullable = !column.type().isPrimitive() && field != null && field.isAnnotationPresent(Nullable.class);
+            definitions.add(model.quote(column.name()) + " " + sqlType + (nullable ? " DEFAULT NULL" : " NOT NULL"));
+        }
+
+        var statementStr = String.format("CREATE TABLE IF NOT EXISTS %s (%s)", model.getTableName(), String.join(", ", definitions));
+        return this.config.getType() == DatabaseType.MYSQL
+                ? statementStr + " ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin"
+                : statementStr;
+    }
+
+    @Nonnull
+    private String getCreateIndexStatement(@Nonnull EntityModel<?> model, @Nonnull Index index) {
+        return String.format(
+                "CREATE %sINDEX %s%s ON %s (%s)",
+                index.unique() ? "UNIQUE " : "",
+                // MySQL doesn't support IF NOT EXISTS for indexes, existing ones are detected by their name beforehand
+                this.config.getType() == DatabaseType.MYSQL ? "" : "IF NOT EXISTS ",
+                index.name(),
+                model.getTableName(),
+                index.columns().stream().map(model::quote).collect(Collectors.joining(", "))
+        );
+    }
+
+    /**
+     * @return the column-type of the field in the database or null if the type isn't supported
+     */
+    @Nullable
+    private String getSqlType(@Nonnull Class<?> type, @Nullable Field field) {
+        if (type == String.class) {
+            var length = field != null && field.isAnnotationPresent(Length.class)
+                    ? field.getAnnotation(Length.class).value()
+                    : DEFAULT_STRING_LENGTH;
+
+            return "varchar(" + length + ")";
+        }
+
+        if (type == int.class || type == Integer.class)
+            return this.byDatabaseType("int(11)", "int", "INTEGER");
+        if (type == long.class || type == Long.class)
+            return this.byDatabaseType("bigint", "bigint", "INTEGER");
+        if (type == short.class || type == Short.class)
+            return this.byDatabaseType("smallint", "smallint", "INTEGER");
+        if (type == byte.class || type == Byte.class)
+            return this.byDatabaseType("tinyint", "smallint", "INTEGER");
+        if (type == double.class || type == Double.class)
+            return this.byDatabaseType("double", "double precision", "double");
+        if (type == float.class || type == Float.class)
+            return this.byDatabaseType("float", "real", "float");
+        if (type == boolean.class || type == Boolean.class)
+            return this.byDatabaseType("tinyint(1)", "boolean", "tinyint(1)");
+
+        return null;
+    }
+
+    @Nonnull
+    private String byDatabaseType(@Nonnull String mysql, @Nonnull String postgresql, @Nonnull String sqlite) {
+        return switch (this.config.getType()) {
+            case MYSQL -> mysql;
+            case POSTGRESQL -> postgresql;
+            case SQLITE -> sqlite;
+        };
+    }
+
+}
@@ -0,0 +1,211 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The single writer of a {@link DatabaseType#SQLITE} database. SQLite only allows one writer at a time, concurrent writers on separate connections
+ * wait for the file-lock or fail with {@code SQLITE_BUSY}.
+ * <br><br>
+ * The repositories hand their writes to this writer, which runs them one after another on its own connection. All writes queued while a group
+ * is running are committed together in the next group (up to {@link DatabaseConfig#getSqliteWriteBatchSize()}), so they share one commit.
+ * Every write runs in a savepoint, a failing write is rolled back alone. The callers wait until their group is committed.
+ * Reads use the {@link ConnectionPool}, the WAL-journal lets them continue while the writer commits.
+ */
+public class SqliteWriter implements AutoCloseable {
+
+    private final static String CLASS_NAME = SqliteWriter.class.getSimpleName();
+
+    /**
+     * A write executed by the writer.
+     * @param <T> the write's result
+     */
+    @FunctionalInterface
+    public interface Write<T> {
+
+        /**
+         * @param conn the writer's connection, committing and closing it is ignored
+         */
+        T execute(@Nonnull Connection conn) throws SQLException;
+
+    }
+
+    /**
+     * The result of an executed write, handed out once its group is committed.
+     */
+    private record Outcome(Object value, Exception exception) {}
+
+    private record QueuedWrite<T>(@Nonnull Write<T> write, @Nonnull CompletableFuture<T> result) {
+
+        @SuppressWarnings("unchecked")
+        private void complete(@Nonnull Outcome outcome) {
+            if (outcome.exception() != null)
+                this.result.completeExceptionally(outcome.exception());
+            else
+                this.result.complete((T) outcome.value());
+        }
+
+    }
+
+    private final FPRework plugin;
+    private final Connection connection;
+    private final Connection boundConnection;
+    private final int batchSize;
+    private final BlockingQueue<QueuedWrite<?>> queue;
+    private final Thread thread;
+    private volatile boolean running;
+
+    public SqliteWriter(@Nonnull FPRework plugin, @Nonnull DatabaseConfig config) throws SQLException {
+        this.plugin = plugin;
+        this.connection = DataRepoProvider.getConnection(plugin, config);
+        this.boundConnection = Transaction.bind(this.connection);
+        this.batchSize = Math.max(1, config.getSqliteWriteBatchSize());
+        this.queue = new LinkedBlockingQueue<>();
+        this.running = true;
+
+        this.thread = new Thread(this::run, "FP-Database-Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        this.plugin.getFpLogger().debug("Started the sqlite-writer with a batch-size of {0}.", this.batchSize);
+    }
+
+    /**
+     * Executes the write on the writer's thread and waits until it is committed.
+     * @throws SQLException if the write or its commit failed or the writer is closed
+     */
+    public <T> T execute(@Nonnull Write<T> write) throws SQLException {
+        // writes issued by a write are part of it
+        if (Thread.currentThread() == this.thread)
+            return write.execute(this.boundConnection);
+
+        var queuedWrite = new QueuedWrite<>(write, new CompletableFuture<>());
+
+        // checked and queued under the lock close stops the writer with, so no write is queued after the writer's last drain
+        synchronized (this.queue) {
+            if (!this.running)
+                throw new SQLException("The sqlite-writer is closed.");
+
+            this.queue.add(queuedWrite);
+        }
+
+        try {
+            return queuedWrite.result().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the sqlite-writer.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException sqlException)
+                throw sqlException;
+
+            throw new SQLException(ex.getCause());
+        }
+    }
+
+    private void run() {
+        var group = new ArrayList<QueuedWrite<?>>();
+
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                group.add(this.queue.take());
+            } catch (InterruptedException ex) {
+                // woken up by close, the remaining writes are still executed
+                continue;
+            }
+
+            this.queue.drainTo(group, this.batchSize - 1);
+            this.executeGroup(group);
+            group.clear();
+        }
+
+        try {
+            this.connection.close();
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "run", ex);
+        }
+    }
+
+    /**
+     * Executes the writes in one transaction, every write in its own savepoint. The results are handed out once the transaction is committed.
+     * <br><br>
+     * The connection is only in manual-commit mode while a group runs, as the driver begins the next (immediate) transaction right after a commit
+     * and would keep the write-lock between the groups otherwise.
+     */
+    private void executeGroup(@Nonnull List<QueuedWrite<?>> group) {
+        var outcomes = new ArrayList<Outcome>();
+
+        try {
+            this.connection.setAutoCommit(false);
+
+            for (var queuedWrite : group) {
+                var savepoint = this.connection.setSavepoint();
+
+                try {
+                    outcomes.add(new Outcome(queuedWrite.write().execute(this.boundConnection), null));
+                    this.connection.releaseSavepoint(savepoint);
+                } catch (Exception ex) {
+                    outcomes.add(new Outcome(null, ex));
+                    this.connection.rollback(savepoint);
+                }
+            }
+
+            this.connection.commit();
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "executeGroup", ex);
+            this.rollback();
+            group.forEach(queuedWrite -> queuedWrite.result().completeExceptionally(ex));
+            return;
+        } finally {
+            this.resetAutoCommit();
+        }
+
+        for (var i = 0; i < group.size(); i++)
+            group.get(i).complete(outcomes.get(i));
+
+        this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Committed a group of {0} writes.", group.size());
+    }
+
+    private void rollback() {
+        try {
+            this.connection.rollback();
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "rollback", ex);
+        }
+    }
+
+    private void resetAutoCommit() {
+        try {
+            this.connection.setAutoCommit(true);
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "resetAutoCommit", ex);
+        }
+    }
+
+    /**
+     * Executes the queued writes and stops the writer.
+     */
+    @Override
+    public void close() {
+        synchronized (this.queue) {
+            this.running = false;
+        }
+
+        this.thread.interrupt();
+
+        try {
+            this.thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
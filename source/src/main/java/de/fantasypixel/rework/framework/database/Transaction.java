@@ -0,0 +1,108 @@
+package de.fantasypixel.rework.framework.database;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A database-transaction started with {@link TransactionManager#inTransaction(java.util.function.Consumer)}.
+ * While it is open, every {@link DataRepoProvider} called on the transaction's thread uses its connection, so all writes are committed (or rolled back) together.
+ * <br><br>
+ * The repositories apply their cache-changes after the commit (see {@link #afterCommit(Runnable)}), a rolled back transaction leaves the caches untouched.
+ */
+public class Transaction {
+
+    private final Connection connection;
+    private final Connection boundConnection;
+    private final List<Runnable> afterCommitActions;
+    private final List<Runnable> afterRollbackActions;
+    private boolean rollbackOnly;
+
+    Transaction(@Nonnull Connection connection) {
+        this.connection = connection;
+        this.boundConnection = bind(connection);
+        this.afterCommitActions = new ArrayList<>();
+        this.afterRollbackActions = new ArrayList<>();
+    }
+
+    /**
+     * Wraps the connection into a proxy used by the repositories. Closing it and controlling the transaction with it is ignored,
+     * so repository operations that manage their own transaction (like {@link DataRepoProvider#insertAll(java.util.Collection)}) join the surrounding one.
+     */
+    @Nonnull
+    static Connection bind(@Nonnull Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close", "commit", "rollback", "setAutoCommit" -> null;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Transactional" + connection;
+                    default -> {
+                        try {
+                            yield method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                }
+        );
+    }
+
+    /**
+     * @return the connection the transaction is run on
+     */
+    @Nonnull
+    Connection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * @return the connection handed to the repositories, see {@link #bind(Connection)}
+     */
+    @Nonnull
+    Connection getBoundConnection() {
+        return this.boundConnection;
+    }
+
+    /**
+     * Runs the action once the transaction was committed, on the thread that committed it. The actions are run in the order they were added.
+     */
+    public void afterCommit(@Nonnull Runnable action) {
+        this.afterCommitActions.add(action);
+    }
+
+    /**
+     * Runs the action once the transaction was rolled back, on the thread that rolled it back.
+     */
+    public void afterRollback(@Nonnull Runnable action) {
+        this.afterRollbackActions.add(action);
+    }
+
+    /**
+     * Marks the transaction to be rolled back instead of committed once the work is done.
+     * Repositories mark the transaction themselves if one of their operations fails.
+     */
+    public void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return this.rollbackOnly;
+    }
+
+    @Nonnull
+    List<Runnable> getAfterCommitActions() {
+        return this.afterCommitActions;
+    }
+
+    @Nonnull
+    List<Runnable> getAfterRollbackActions() {
+        return this.afterRollbackActions;
+    }
+
+}
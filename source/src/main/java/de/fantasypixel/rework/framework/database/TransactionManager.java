@@ -0,0 +1,125 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs work in database-transactions spanning multiple {@link DataRepoProvider} instances, exposed by {@link DatabaseManager#inTransaction(Consumer)}.
+ * <br><br>
+ * The transaction is bound to the calling thread: repository operations called on it use the transaction's connection,
+ * asynchronous operations (running on the {@link DatabaseExecutor}) don't take part.
+ */
+public class TransactionManager {
+
+    private final static String CLASS_NAME = TransactionManager.class.getSimpleName();
+
+    private final FPRework plugin;
+    private final ConnectionPool connectionPool;
+    private final ThreadLocal<Transaction> currentTransaction;
+
+    public TransactionManager(@Nonnull FPRework plugin, @Nonnull ConnectionPool connectionPool) {
+        this.plugin = plugin;
+        this.connectionPool = connectionPool;
+        this.currentTransaction = new ThreadLocal<>();
+    }
+
+    /**
+     * @return the transaction bound to the current thread or null if there is none
+     */
+    @Nullable
+    public Transaction getCurrent() {
+        return this.currentTransaction.get();
+    }
+
+    /**
+     * Runs the work in a transaction. The transaction is committed once the work is done, unless the work threw an exception
+     * or the transaction was marked with {@link Transaction#setRollbackOnly()} (repositories do so when one of their operations fails).
+     * <br><br>
+     * If a transaction is running on the current thread already, the work joins it and the outer transaction decides about the commit.
+     * @return whether the work was committed (or, when joining, didn't mark the transaction for a rollback)
+     */
+    public boolean inTransaction(@Nonnull Consumer<Transaction> work) {
+        var outerTransaction = this.currentTransaction.get();
+        if (outerTransaction != null) {
+            try {
+                work.accept(outerTransaction);
+            } catch (RuntimeException ex) {
+                outerTransaction.setRollbackOnly();
+                throw ex;
+            }
+
+            return !outerTransaction.isRollbackOnly();
+        }
+
+        Transaction transaction;
+        boolean committed;
+
+        try (var conn = this.connectionPool.getConnection()) {
+            conn.setAutoCommit(false);
+            transaction = new Transaction(conn);
+            this.currentTransaction.set(transaction);
+
+            try {
+                work.accept(transaction);
+                committed = this.complete(transaction);
+            } catch (Exception ex) {
+                this.plugin.getFpLogger().error(CLASS_NAME, "inTransaction", ex);
+                transaction.setRollbackOnly();
+                committed = this.complete(transaction);
+            } finally {
+                this.currentTransaction.remove();
+            }
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().warning("Couldn't start a database-transaction.");
+            this.plugin.getFpLogger().error(CLASS_NAME, "inTransaction", ex);
+            return false;
+        }
+
+        // the actions update the repository-caches, which must not be deferred into the (finished) transaction again
+        this.runActions(committed ? transaction.getAfterCommitActions() : transaction.getAfterRollbackActions());
+        return committed;
+    }
+
+    /**
+     * Commits the transaction or rolls it back if it was marked to.
+     * @return whether the transaction was committed
+     */
+    private boolean complete(@Nonnull Transaction transaction) {
+        var conn = transaction.getConnection();
+
+        try {
+            if (!transaction.isRollbackOnly()) {
+                conn.commit();
+                this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Committed transaction.");
+                return true;
+            }
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "complete", ex);
+        }
+
+        try {
+            conn.rollback();
+            this.plugin.getFpLogger().debugGrouped("DATABASE_QUERY", "Rolled back transaction.");
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "complete", ex);
+        }
+
+        return false;
+    }
+
+    private void runActions(@Nonnull List<Runnable> actions) {
+        for (var action : actions) {
+            try {
+                action.run();
+            } catch (Exception ex) {
+                this.plugin.getFpLogger().error(CLASS_NAME, "runActions", ex);
+            }
+        }
+    }
+
+}
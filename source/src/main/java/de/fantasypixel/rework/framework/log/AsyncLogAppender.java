@@ -0,0 +1,228 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Passes the events to another appender on a background-thread, so logging threads (like the server-thread) don't wait for the console.
+ * <br><br>
+ * The events are queued in a bounded {@link LogRingBuffer}, which one consumer-thread drains. What happens when the buffer is full
+ * is decided by the {@link OverflowPolicy}, the amount of dropped events is logged once the buffer has drained.
+ * Once closed, the events are passed on the logging thread.
+ */
+public class AsyncLogAppender implements LogAppender {
+
+    /**
+     * How long the consumer sleeps at most when the buffer is empty, producers wake it up earlier.
+     */
+    private final static long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * How long a blocked producer waits before it checks the buffer again.
+     */
+    private final static long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * The maximum time {@link #flush()} waits for the queued events.
+     */
+    private final static long FLUSH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    public enum OverflowPolicy {
+
+        /**
+         * The logging thread waits until there is space in the buffer, no event is lost.
+         */
+        BLOCK,
+
+        /**
+         * Events below {@link FPLogger.LogLevel#INFO} are dropped, the others wait until there is space.
+         */
+        DROP_DEBUG,
+
+        /**
+         * The oldest queued event is dropped to make space, the logging thread never waits.
+         */
+        DROP_OLDEST
+
+    }
+
+    private final LogAppender delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final LogRingBuffer<LogEvent> buffer;
+    private final Thread thread;
+
+    /**
+     * The amount of events written by the consumer or dropped from the buffer, compared to the added ones by {@link #flush()}.
+     */
+    private final AtomicLong processed;
+    private final AtomicLong dropped;
+    private volatile boolean running;
+    private volatile boolean idle;
+
+    public AsyncLogAppender(@Nonnull LogAppender delegate, @Nonnull AsyncLogConfig config) {
+        this.delegate = delegate;
+        this.overflowPolicy = config.getOverflowPolicy() != null ? config.getOverflowPolicy() : OverflowPolicy.DROP_DEBUG;
+        this.buffer = new LogRingBuffer<>(config.getBufferSize() > 0 ? config.getBufferSize() : 8192);
+        this.processed = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.running = true;
+
+        this.thread = new Thread(this::run, "FP-Logger");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void append(@Nonnull LogEvent event) {
+        if (!this.running) {
+            this.delegate.append(event);
+            return;
+        }
+
+        while (!this.buffer.offer(event)) {
+            switch (this.overflowPolicy) {
+                case DROP_OLDEST -> {
+                    if (this.buffer.poll() != null) {
+                        this.dropped.incrementAndGet();
+                        this.processed.incrementAndGet();
+                    }
+                }
+                case DROP_DEBUG -> {
+                    if (event.level().getValue() < FPLogger.LogLevel.INFO.getValue()) {
+                        this.dropped.incrementAndGet();
+                        return;
+                    }
+
+                    this.awaitSpace(event);
+                }
+                case BLOCK -> this.awaitSpace(event);
+            }
+
+            // closed while waiting, the event was passed on directly
+            if (!this.running)
+                return;
+        }
+
+        // closed after the check above, the consumer may have exited before the event was added
+        if (!this.running) {
+            this.drain();
+            return;
+        }
+
+        if (this.idle)
+            LockSupport.unpark(this.thread);
+    }
+
+    /**
+     * Waits a moment for the consumer to make space. If the appender was closed meanwhile, the event is passed on directly.
+     */
+    private void awaitSpace(@Nonnull LogEvent event) {
+        LockSupport.unpark(this.thread);
+        LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+
+        if (!this.running)
+            this.delegate.append(event);
+    }
+
+    private void run() {
+        while (this.running || !this.buffer.isEmpty()) {
+            var event = this.buffer.poll();
+
+            if (event == null) {
+                this.reportDropped();
+                this.delegate.flush();
+
+                // the producers check the flag after adding, so an event added after the check unparks the thread
+                this.idle = true;
+                if (this.running && this.buffer.isEmpty())
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                this.idle = false;
+                continue;
+            }
+
+            this.write(event);
+            this.processed.incrementAndGet();
+        }
+
+        this.reportDropped();
+        this.delegate.flush();
+    }
+
+    /**
+     * Writes the events left in the buffer on the calling thread, used once the consumer has stopped.
+     */
+    private void drain() {
+        LogEvent event;
+        while ((event = this.buffer.poll()) != null) {
+            this.write(event);
+            this.processed.incrementAndGet();
+        }
+    }
+
+    private void write(@Nonnull LogEvent event) {
+        try {
+            this.delegate.append(event);
+        } catch (RuntimeException ex) {
+            // the logger can't log its own failure
+            ex.printStackTrace();
+        }
+    }
+
+    private void reportDropped() {
+        var droppedEvents = this.dropped.getAndSet(0);
+        if (droppedEvents == 0)
+            return;
+
+        this.write(new LogEvent(
+                System.currentTimeMillis(),
+                this.thread.getName(),
+                FPLogger.LogLevel.WARNING,
+                null,
+                null,
+                null,
+                "Dropped " + droppedEvents + " log-messages as the log-buffer (" + this.buffer.getCapacity() + ") was full.",
+                null
+        ));
+    }
+
+    /**
+     * Waits until the events queued so far are written (up to 5 seconds).
+     */
+    @Override
+    public void flush() {
+        if (Thread.currentThread() == this.thread)
+            return;
+
+        var target = this.buffer.getAdded();
+        var deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+
+        while (this.processed.get() < target && this.thread.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(this.thread);
+            LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        }
+
+        this.delegate.flush();
+    }
+
+    /**
+     * Writes the queued events and stops the consumer-thread, later events are passed on the logging thread.
+     */
+    @Override
+    public void close() {
+        this.flush();
+        this.running = false;
+        LockSupport.unpark(this.thread);
+
+        try {
+            this.thread.join(TimeUnit.NANOSECONDS.toMillis(FLUSH_TIMEOUT_NANOS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.drain();
+        this.delegate.close();
+    }
+
+}
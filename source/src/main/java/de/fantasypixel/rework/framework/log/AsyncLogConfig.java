@@ -0,0 +1,28 @@
+package de.fantasypixel.rework.framework.log;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The configuration of the {@link AsyncLogAppender}, part of the logging.json.
+ */
+@Getter
+@AllArgsConstructor
+public class AsyncLogConfig {
+
+    /**
+     * Whether the messages are written by a background-thread instead of the logging thread.
+     */
+    private boolean enabled;
+
+    /**
+     * The amount of messages the buffer holds, rounded up to a power of two.
+     */
+    private int bufferSize;
+
+    /**
+     * What happens to messages logged while the buffer is full.
+     */
+    private AsyncLogAppender.OverflowPolicy overflowPolicy;
+
+}
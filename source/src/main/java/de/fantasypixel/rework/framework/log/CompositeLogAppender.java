@@ -0,0 +1,35 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Passes the events to multiple appenders (like the console and a log-file), in the given order.
+ */
+public class CompositeLogAppender implements LogAppender {
+
+    private final List<LogAppender> appenders;
+
+    public CompositeLogAppender(@Nonnull List<LogAppender> appenders) {
+        this.appenders = List.copyOf(appenders);
+    }
+
+    @Override
+    public void append(@Nonnull LogEvent event) {
+        for (var appender : this.appenders)
+            appender.append(event);
+    }
+
+    @Override
+    public void flush() {
+        for (var appender : this.appenders)
+            appender.flush();
+    }
+
+    @Override
+    public void close() {
+        for (var appender : this.appenders)
+            appender.close();
+    }
+
+}
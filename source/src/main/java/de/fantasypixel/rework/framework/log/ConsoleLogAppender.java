@@ -0,0 +1,50 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+import java.io.PrintStream;
+
+/**
+ * Writes the events as {@code LEVEL | MESSAGE} to a print-stream (the console by default). Stack traces are enclosed in a debug-section.
+ */
+public class ConsoleLogAppender implements LogAppender {
+
+    private final PrintStream printStream;
+    private final int sectionIndentation;
+    private final boolean debugActive;
+
+    public ConsoleLogAppender(@Nonnull PrintStream printStream, @Nonnull FPLoggerConfig config) {
+        this.printStream = printStream;
+        this.sectionIndentation = config.getSectionIndentation();
+        this.debugActive = FPLogger.LogLevel.DEBUG.getValue() >= config.getLogLevel().getValue();
+    }
+
+    @Override
+    public void append(@Nonnull LogEvent event) {
+        this.println(event.level(), event.message());
+
+        if (event.throwable() == null)
+            return;
+
+        if (this.debugActive)
+            this.println(FPLogger.LogLevel.DEBUG, "-".repeat(this.sectionIndentation) + "[ Start of Start-Trace ]" + "-".repeat(this.sectionIndentation));
+
+        event.throwable().printStackTrace(this.printStream);
+
+        if (this.debugActive)
+            this.println(FPLogger.LogLevel.DEBUG, "-".repeat(this.sectionIndentation + 1) + "[ End of Start-Trace ]" + "-".repeat(this.sectionIndentation + 1));
+    }
+
+    private void println(@Nonnull FPLogger.LogLevel level, @Nonnull String message) {
+        this.printStream.println(
+                "LEVEL | MESSAGE"
+                        .replace("LEVEL", level.name())
+                        .replace("MESSAGE", message)
+        );
+    }
+
+    @Override
+    public void flush() {
+        this.printStream.flush();
+    }
+
+}
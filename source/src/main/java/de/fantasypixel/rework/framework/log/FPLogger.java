@@ -11,10 +11,24 @@ import javax.annotation.Nullable;
 import java.io.*;
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * A logger that supports more log levels than the spigot logger.
  * Under the hood, everything is logged to the INFO level.
+ * <br><br>
+ * The level (and group) is checked before a message is formatted, so disabled messages cost nothing but the call. The overloads with up to
+ * three arguments don't allocate the varargs-array, messages with expensive arguments can be passed as a {@link Supplier}.
+ * <br><br>
+ * If configured, messages are also rate-limited and sampled per debug-group and call site by a {@link LogRateLimiter}. Messages passed as a
+ * {@link Supplier} are identified by the supplier's class, so they're limited by the default limit.
  */
 // todo: as there is a logging.json now, the formats should also be configurable.
 public class FPLogger {
@@ -35,9 +49,30 @@ public class FPLogger {
 
     }
 
-    private final PrintStream printStream;
+    /**
+     * The maximum amount of cached message-patterns, patterns built at runtime are formatted without the cache once it is full.
+     */
+    private final static int MAX_CACHED_PATTERNS = 1024;
+
+    /**
+     * The maximum amount of call sites listed in the summary of suppressed messages.
+     */
+    private final static int SUMMARY_CALL_SITES = 5;
+
     // has to be initialized here because the loading might produce logs and tools.
-    private FPLoggerConfig config = new FPLoggerConfig(LogLevel.DEBUG, 25, false, Collections.emptyMap());
+    private FPLoggerConfig config = new FPLoggerConfig(LogLevel.DEBUG, 25, false, Collections.emptyMap(), null, null, null);
+    private LogAppender appender;
+
+    /**
+     * The parsed message-patterns. A {@link MessageFormat} isn't thread-safe, so it is locked while formatting.
+     */
+    private final Map<String, MessageFormat> messageFormats = new ConcurrentHashMap<>();
+
+    /**
+     * Null if the rate-limiting is disabled.
+     */
+    @Nullable private LogRateLimiter rateLimiter;
+    @Nullable private ScheduledExecutorService summaryExecutor;
 
     public FPLogger() {
         this(System.out);
@@ -51,7 +86,7 @@ public class FPLogger {
      * Constructs a logger. Gson is used to load the configuration from plugins/FP-Next/config/logging.json (if a plugin is passed).
      */
     public FPLogger(@Nonnull PrintStream printStream, @Nullable Gson gson, @Nullable JavaPlugin plugin) {
-        this.printStream = printStream;
+        this.appender = new ConsoleLogAppender(printStream, this.config);
 
         // load config
         if (plugin != null && gson != null) {
@@ -63,6 +98,9 @@ public class FPLogger {
                 this.config = gson.fromJson(configReader, FPLoggerConfig.class);
                 configReader.close();
 
+                this.appender = this.createAppender(printStream, plugin);
+                this.initRateLimiter();
+
                 this.info("Initialized FPLogger with level {0}.", this.config.getLogLevel().name());
             } catch (FileNotFoundException ex) {
                 this.warning("Couldn't load logging.json (doesn't exist). Using fallback configuration.");
@@ -75,19 +113,176 @@ public class FPLogger {
 
     }
 
+    /**
+     * Creates the appender configured in the logging.json.
+     */
+    @Nonnull
+    private LogAppender createAppender(@Nonnull PrintStream printStream, @Nonnull JavaPlugin plugin) {
+        LogAppender appender = new ConsoleLogAppender(printStream, this.config);
+
+        var fileConfig = this.config.getFile();
+        if (fileConfig != null && fileConfig.isEnabled()) {
+            try {
+                var fileAppender = new FileLogAppender(plugin.getDataFolder().toPath().resolve(fileConfig.getPath()), fileConfig);
+                appender = new CompositeLogAppender(List.of(appender, fileAppender));
+            } catch (IOException | RuntimeException ex) {
+                this.warning("Couldn''t open the log-file {0}, logging to the console only.", fileConfig.getPath());
+            }
+        }
+
+        var asyncConfig = this.config.getAsync();
+        return asyncConfig != null && asyncConfig.isEnabled()
+                ? new AsyncLogAppender(appender, asyncConfig)
+                : appender;
+    }
+
+    /**
+     * Creates the {@link LogRateLimiter} configured in the logging.json and schedules the summary of suppressed messages.
+     */
+    private void initRateLimiter() {
+        var rateLimitConfig = this.config.getRateLimit();
+        if (rateLimitConfig == null || !rateLimitConfig.isEnabled())
+            return;
+
+        this.rateLimiter = new LogRateLimiter(rateLimitConfig);
+
+        var summaryInterval = rateLimitConfig.getSummaryInterval();
+        if (summaryInterval > 0) {
+            this.summaryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "FP-Logger-Summary");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.summaryExecutor.scheduleAtFixedRate(this::logSuppressed, summaryInterval, summaryInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Logs the amount of messages suppressed by the {@link LogRateLimiter} since the last summary, listing the call sites with the most.
+     */
+    private void logSuppressed() {
+        if (this.rateLimiter == null)
+            return;
+
+        var suppressed = this.rateLimiter.drainSuppressed();
+        if (suppressed.isEmpty())
+            return;
+
+        var total = suppressed.values().stream().mapToLong(Long::longValue).sum();
+        var callSites = new StringJoiner(", ");
+        suppressed.entrySet().stream()
+                .limit(SUMMARY_CALL_SITES)
+                .forEach(entry -> callSites.add(this.abbreviate(entry.getKey()) + " (" + entry.getValue() + ")"));
+
+        if (suppressed.size() > SUMMARY_CALL_SITES)
+            callSites.add("...");
+
+        // bypasses the rate-limit, so the summary itself is never suppressed
+        this.resolve(LogLevel.WARNING, "Suppressed " + total + " log-messages due to the rate-limit: " + callSites + ".");
+    }
+
+    @Nonnull
+    private String abbreviate(@Nonnull String callSite) {
+        return callSite.length() > 80 ? callSite.substring(0, 77) + "..." : callSite;
+    }
+
+    /**
+     * Waits until the logged messages are written.
+     */
+    public void flush() {
+        this.appender.flush();
+    }
+
+    /**
+     * Writes the logged messages and stops the background-thread of the {@link AsyncLogAppender}. Messages logged afterward are written directly.
+     */
+    public void close() {
+        if (this.summaryExecutor != null)
+            this.summaryExecutor.shutdownNow();
+
+        this.logSuppressed();
+        this.appender.close();
+    }
+
     /**
      * Checks if the specified log level is active based on {@link LogLevel#value}.
      */
-    private boolean isLogLevelActive(LogLevel logLevel) {
+    public boolean isLogLevelActive(@Nonnull LogLevel logLevel) {
         return logLevel.getValue() >= this.config.getLogLevel().getValue();
     }
 
-    private boolean isGroupActive(String group) {
-        return this.config.isAllGroups() || (this.config.getGroups().containsKey(group) && this.config.getGroups().get(group));
+    /**
+     * @return whether messages of the group are logged, which requires the {@link LogLevel#DEBUG} level to be active
+     */
+    public boolean isGroupActive(@Nonnull String group) {
+        return this.isLogLevelActive(LogLevel.DEBUG)
+                && (this.config.isAllGroups() || Boolean.TRUE.equals(this.config.getGroups().get(group)));
+    }
+
+    /**
+     * @param callSite the message-pattern (or message) identifying the call site, see {@link LogRateLimitConfig#getCallSites()}
+     * @return whether the level is active and the message isn't suppressed by the rate-limit
+     */
+    private boolean isLogged(@Nonnull LogLevel level, @Nonnull String callSite) {
+        return this.isLogLevelActive(level)
+                && (this.rateLimiter == null || this.rateLimiter.tryAcquire(null, callSite));
+    }
+
+    /**
+     * @return whether the group is active and the message isn't suppressed by the group's or call site's rate-limit
+     */
+    private boolean isLoggedGrouped(@Nonnull String group, @Nonnull String callSite) {
+        return this.isGroupActive(group)
+                && (this.rateLimiter == null || this.rateLimiter.tryAcquire(group, callSite));
+    }
+
+    /**
+     * Formats the message with the cached {@link MessageFormat} of the pattern.
+     */
+    @Nonnull
+    private String format(@Nonnull String pattern, @Nullable Object... args) {
+        var messageFormat = this.messageFormats.get(pattern);
+        if (messageFormat == null) {
+            messageFormat = new MessageFormat(pattern);
+            if (this.messageFormats.size() < MAX_CACHED_PATTERNS)
+                this.messageFormats.putIfAbsent(pattern, messageFormat);
+        }
+
+        synchronized (messageFormat) {
+            return messageFormat.format(args);
+        }
     }
 
     public void info(@Nonnull String message) {
-        this.resolve(LogLevel.INFO, message);
+        if (this.isLogged(LogLevel.INFO, message))
+            this.resolve(LogLevel.INFO, message);
+    }
+
+    /**
+     * The message is only built if the level is active.
+     */
+    public void info(@Nonnull Supplier<String> messageSupplier) {
+        if (this.isLogged(LogLevel.INFO, messageSupplier.getClass().getName()))
+            this.resolve(LogLevel.INFO, messageSupplier.get());
+    }
+
+    /**
+     * Uses {@link MessageFormat} to format the message.
+     * @param pattern the message pattern. Can include placeholders like {0}, {1}, ...
+     */
+    public void info(@Nonnull String pattern, @Nullable Object arg0) {
+        if (this.isLogged(LogLevel.INFO, pattern))
+            this.resolve(LogLevel.INFO, this.format(pattern, arg0));
+    }
+
+    public void info(@Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1) {
+        if (this.isLogged(LogLevel.INFO, pattern))
+            this.resolve(LogLevel.INFO, this.format(pattern, arg0, arg1));
+    }
+
+    public void info(@Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1, @Nullable Object arg2) {
+        if (this.isLogged(LogLevel.INFO, pattern))
+            this.resolve(LogLevel.INFO, this.format(pattern, arg0, arg1, arg2));
     }
 
     /**
@@ -96,38 +291,51 @@ public class FPLogger {
      * @param args the arguments to be passed to the pattern
      */
     public void info(@Nonnull String pattern, @Nullable Object... args) {
-        this.resolve(LogLevel.INFO, MessageFormat.format(pattern, args));
+        if (this.isLogged(LogLevel.INFO, pattern))
+            this.resolve(LogLevel.INFO, this.format(pattern, args));
     }
 
     public void error(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull Throwable throwable) {
+        if (this.isLogged(LogLevel.ERROR, fromClass + "::" + fromMethod))
+            this.resolveError(fromClass, fromMethod, throwable);
+    }
+
+    public void error(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull String message) {
+        if (this.isLogged(LogLevel.ERROR, fromClass + "::" + fromMethod))
+            this.resolveError(fromClass, fromMethod, new Exception(message));
+    }
+
+    public void error(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull String pattern, @Nullable Object... args) {
+        if (this.isLogged(LogLevel.ERROR, fromClass + "::" + fromMethod))
+            this.resolveError(fromClass, fromMethod, new Exception(this.format(pattern, args)));
+    }
+
+    private void resolveError(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull Throwable throwable) {
         var errorMessage = throwable.getMessage() == null
                 ? throwable.toString()
                 : throwable.getMessage();
 
+        // the appender writes the stack trace after the message
         this.resolve(
                 LogLevel.ERROR,
+                null,
+                fromClass,
+                fromMethod,
                 "CLASS::METHOD ERROR"
                         .replace("CLASS", fromClass)
                         .replace("METHOD", fromMethod)
-                        .replace("ERROR", errorMessage)
+                        .replace("ERROR", errorMessage),
+                throwable
         );
-        this.sectionStart("Start-Trace");
-        throwable.printStackTrace();
-        this.sectionEnd("Start-Trace");
-    }
-
-    public void error(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull String message) {
-        this.error(fromClass, fromMethod, new Exception(message));
-    }
-
-    public void error(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull String pattern, @Nullable Object... args) {
-        this.error(fromClass, fromMethod, new Exception(MessageFormat.format(pattern, args)));
     }
 
     public void sectionStart(@Nonnull LogLevel level, @Nonnull String section) {
+        if (!this.isLogLevelActive(level))
+            return;
+
         this.resolve(
                 level,
-                MessageFormat.format(
+                this.format(
                         "{0}[ Start of {1} ]{0}",
                         "-".repeat(this.config.getSectionIndentation()),
                         section
@@ -143,9 +351,12 @@ public class FPLogger {
     }
 
     public void sectionEnd(@Nonnull LogLevel level, @Nonnull String section) {
+        if (!this.isLogLevelActive(level))
+            return;
+
         this.resolve(
                 level,
-                MessageFormat.format(
+                this.format(
                         "{0}[ End of {1} ]{0}",
                         "-".repeat(this.config.getSectionIndentation() + 1),
                         section
@@ -161,7 +372,35 @@ public class FPLogger {
     }
 
     public void warning(@Nonnull String message) {
-        this.resolve(LogLevel.WARNING, message);
+        if (this.isLogged(LogLevel.WARNING, message))
+            this.resolve(LogLevel.WARNING, message);
+    }
+
+    /**
+     * The message is only built if the level is active.
+     */
+    public void warning(@Nonnull Supplier<String> messageSupplier) {
+        if (this.isLogged(LogLevel.WARNING, messageSupplier.getClass().getName()))
+            this.resolve(LogLevel.WARNING, messageSupplier.get());
+    }
+
+    /**
+     * Uses {@link MessageFormat} to format the message.
+     * @param pattern the message pattern. Can include placeholders like {0}, {1}, ...
+     */
+    public void warning(@Nonnull String pattern, @Nullable Object arg0) {
+        if (this.isLogged(LogLevel.WARNING, pattern))
+            this.resolve(LogLevel.WARNING, this.format(pattern, arg0));
+    }
+
+    public void warning(@Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1) {
+        if (this.isLogged(LogLevel.WARNING, pattern))
+            this.resolve(LogLevel.WARNING, this.format(pattern, arg0, arg1));
+    }
+
+    public void warning(@Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1, @Nullable Object arg2) {
+        if (this.isLogged(LogLevel.WARNING, pattern))
+            this.resolve(LogLevel.WARNING, this.format(pattern, arg0, arg1, arg2));
     }
 
     /**
@@ -170,31 +409,74 @@ public class FPLogger {
      * @param args the arguments to be passed to the pattern
      */
     public void warning(@Nonnull String pattern, @Nullable Object... args) {
-        this.resolve(LogLevel.WARNING, MessageFormat.format(pattern, args));
+        if (this.isLogged(LogLevel.WARNING, pattern))
+            this.resolve(LogLevel.WARNING, this.format(pattern, args));
     }
 
     public void warn(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull String message) {
+        if (!this.isLogged(LogLevel.WARNING, fromClass + "::" + fromMethod))
+            return;
+
         this.resolve(
                 LogLevel.WARNING,
+                null,
+                fromClass,
+                fromMethod,
                 "CLASS::METHOD MESSAGE"
                         .replace("CLASS", fromClass)
                         .replace("METHOD", fromMethod)
-                        .replace("MESSAGE", message)
+                        .replace("MESSAGE", message),
+                null
         );
     }
 
     public void warn(@Nonnull String fromClass, @Nonnull String fromMethod, @Nonnull String pattern, @Nullable Object... args) {
+        if (!this.isLogged(LogLevel.WARNING, fromClass + "::" + fromMethod))
+            return;
+
         this.resolve(
                 LogLevel.WARNING,
+                null,
+                fromClass,
+                fromMethod,
                 "CLASS::METHOD MESSAGE"
                         .replace("CLASS", fromClass)
                         .replace("METHOD", fromMethod)
-                        .replace("MESSAGE", MessageFormat.format(pattern, args))
+                        .replace("MESSAGE", this.format(pattern, args)),
+                null
         );
     }
 
     public void debug(@Nonnull String message) {
-        this.resolve(LogLevel.DEBUG, message);
+        if (this.isLogged(LogLevel.DEBUG, message))
+            this.resolve(LogLevel.DEBUG, message);
+    }
+
+    /**
+     * The message is only built if the level is active.
+     */
+    public void debug(@Nonnull Supplier<String> messageSupplier) {
+        if (this.isLogged(LogLevel.DEBUG, messageSupplier.getClass().getName()))
+            this.resolve(LogLevel.DEBUG, messageSupplier.get());
+    }
+
+    /**
+     * Uses {@link MessageFormat} to format the message.
+     * @param pattern the message pattern. Can include placeholders like {0}, {1}, ...
+     */
+    public void debug(@Nonnull String pattern, @Nullable Object arg0) {
+        if (this.isLogged(LogLevel.DEBUG, pattern))
+            this.resolve(LogLevel.DEBUG, this.format(pattern, arg0));
+    }
+
+    public void debug(@Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1) {
+        if (this.isLogged(LogLevel.DEBUG, pattern))
+            this.resolve(LogLevel.DEBUG, this.format(pattern, arg0, arg1));
+    }
+
+    public void debug(@Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1, @Nullable Object arg2) {
+        if (this.isLogged(LogLevel.DEBUG, pattern))
+            this.resolve(LogLevel.DEBUG, this.format(pattern, arg0, arg1, arg2));
     }
 
     /**
@@ -203,12 +485,42 @@ public class FPLogger {
      * @param args the arguments to be passed to the pattern
      */
     public void debug(@Nonnull String pattern, @Nullable Object... args) {
-        this.resolve(LogLevel.DEBUG, MessageFormat.format(pattern, args));
+        if (this.isLogged(LogLevel.DEBUG, pattern))
+            this.resolve(LogLevel.DEBUG, this.format(pattern, args));
     }
 
     public void debugGrouped(@Nonnull String group, @Nonnull String message) {
-        if (this.isGroupActive(group))
-            this.resolve(LogLevel.DEBUG, message);
+        if (this.isLoggedGrouped(group, message))
+            this.resolveGrouped(group, message);
+    }
+
+    /**
+     * Logs the message if the group is active, the message is only built then.
+     */
+    public void debugGrouped(@Nonnull String group, @Nonnull Supplier<String> messageSupplier) {
+        if (this.isLoggedGrouped(group, messageSupplier.getClass().getName()))
+            this.resolveGrouped(group, messageSupplier.get());
+    }
+
+    /**
+     * Logs the given message if the group is active. Groups can be toggled in the logging.json
+     * Uses {@link MessageFormat} to format the message.
+     * @param group the log-group's name
+     * @param pattern the message pattern. Can include placeholders like {0}, {1}, ...
+     */
+    public void debugGrouped(@Nonnull String group, @Nonnull String pattern, @Nullable Object arg0) {
+        if (this.isLoggedGrouped(group, pattern))
+            this.resolveGrouped(group, this.format(pattern, arg0));
+    }
+
+    public void debugGrouped(@Nonnull String group, @Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1) {
+        if (this.isLoggedGrouped(group, pattern))
+            this.resolveGrouped(group, this.format(pattern, arg0, arg1));
+    }
+
+    public void debugGrouped(@Nonnull String group, @Nonnull String pattern, @Nullable Object arg0, @Nullable Object arg1, @Nullable Object arg2) {
+        if (this.isLoggedGrouped(group, pattern))
+            this.resolveGrouped(group, this.format(pattern, arg0, arg1, arg2));
     }
 
     /**
@@ -219,21 +531,35 @@ public class FPLogger {
      * @param args the arguments to be passed to the pattern
      */
     public void debugGrouped(@Nonnull String group, @Nonnull String pattern, @Nullable Object... args) {
-        if (this.isGroupActive(group))
-            this.resolve(LogLevel.DEBUG, MessageFormat.format(pattern, args));
+        if (this.isLoggedGrouped(group, pattern))
+            this.resolveGrouped(group, this.format(pattern, args));
     }
 
     public void entering(@Nonnull String fromClass, @Nonnull String fromMethod) {
+        if (!this.isLogLevelActive(LogLevel.ENTERING))
+            return;
+
         this.resolve(
                 LogLevel.ENTERING,
-                fromClass + "::" + fromMethod
+                null,
+                fromClass,
+                fromMethod,
+                fromClass + "::" + fromMethod,
+                null
         );
     }
 
     public void exiting(@Nonnull String fromClass, @Nonnull String fromMethod) {
+        if (!this.isLogLevelActive(LogLevel.EXITING))
+            return;
+
         this.resolve(
                 LogLevel.EXITING,
-                fromClass + "::" + fromMethod
+                null,
+                fromClass,
+                fromMethod,
+                fromClass + "::" + fromMethod,
+                null
         );
     }
 
@@ -242,14 +568,21 @@ public class FPLogger {
     }
 
     private void resolve(@Nonnull LogLevel level, @Nonnull String message) {
+        this.resolve(level, null, null, null, message, null);
+    }
+
+    /**
+     * Logs a message of a debug-group, the group has to be checked by the caller.
+     */
+    private void resolveGrouped(@Nonnull String group, @Nonnull String message) {
+        this.resolve(LogLevel.DEBUG, group, null, null, message, null);
+    }
+
+    private void resolve(@Nonnull LogLevel level, @Nullable String group, @Nullable String fromClass, @Nullable String fromMethod, @Nonnull String message, @Nullable Throwable throwable) {
         if (!this.isLogLevelActive(level))
             return;
 
-        this.printStream.println(
-                "LEVEL | MESSAGE"
-                    .replace("LEVEL", level.name())
-                    .replace("MESSAGE", message)
-        );
+        this.appender.append(new LogEvent(System.currentTimeMillis(), Thread.currentThread().getName(), level, group, fromClass, fromMethod, message, throwable));
     }
 
 }
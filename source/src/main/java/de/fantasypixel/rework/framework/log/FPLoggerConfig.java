@@ -3,6 +3,7 @@ package de.fantasypixel.rework.framework.log;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 
 @Getter
@@ -14,4 +15,19 @@ public class FPLoggerConfig {
     private boolean allGroups;
     private Map<String, Boolean> groups;
 
+    /**
+     * Null if the logging.json has no async-section, the messages are written on the logging thread then.
+     */
+    @Nullable private AsyncLogConfig async;
+
+    /**
+     * Null if the logging.json has no file-section, the messages are only written to the console then.
+     */
+    @Nullable private FileLogConfig file;
+
+    /**
+     * Null if the logging.json has no rateLimit-section, every message is logged then.
+     */
+    @Nullable private LogRateLimitConfig rateLimit;
+
 }
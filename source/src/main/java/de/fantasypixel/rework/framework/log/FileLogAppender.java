@@ -0,0 +1,293 @@
+package de.fantasypixel.rework.framework.log;
+
+import com.google.gson.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the events to a log-file through a buffered {@link FileChannel}, either as one JSON-object per line or as text.
+ * <br><br>
+ * The file is rotated once it exceeds the configured size or age: it's renamed to {@code NAME-TIMESTAMP.EXTENSION} and gzip-compressed
+ * by a background-thread, which also deletes the oldest archives beyond {@link FileLogConfig#getMaxArchives()}.
+ */
+public class FileLogAppender implements LogAppender {
+
+    private final static DateTimeFormatter ARCHIVE_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss").withZone(ZoneId.systemDefault());
+    private final static DateTimeFormatter TEXT_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private final static String ARCHIVE_SUFFIX = ".gz";
+
+    public enum Format {
+
+        /**
+         * One JSON-object per line with the fields timestamp, level, group, class, method, thread, message and exception (null-fields are left out).
+         */
+        JSON,
+
+        /**
+         * {@code TIMESTAMP LEVEL [THREAD] MESSAGE} followed by the stack trace, if there is one.
+         */
+        TEXT
+
+    }
+
+    private final Path file;
+    private final String archivePrefix;
+    private final String archiveExtension;
+    private final Format format;
+    private final long maxFileSize;
+    private final long rotationInterval;
+    private final int maxArchives;
+    private final ByteBuffer buffer;
+    private final ExecutorService compressor;
+
+    private FileChannel channel;
+    private long fileSize;
+    private long fileCreated;
+
+    /**
+     * Opens (or creates) the log-file, new events are appended to it.
+     * @throws IOException if the file or its directory can't be opened
+     */
+    public FileLogAppender(@Nonnull Path file, @Nonnull FileLogConfig config) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.format = config.getFormat() != null ? config.getFormat() : Format.JSON;
+        this.maxFileSize = config.getMaxFileSize();
+        this.rotationInterval = config.getRotationInterval();
+        this.maxArchives = Math.max(0, config.getMaxArchives());
+        this.buffer = ByteBuffer.allocate(config.getBufferSize() > 0 ? config.getBufferSize() : 64 * 1024);
+
+        var fileName = this.file.getFileName().toString();
+        var extensionIndex = fileName.lastIndexOf('.');
+        this.archivePrefix = (extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName) + "-";
+        this.archiveExtension = extensionIndex > 0 ? fileName.substring(extensionIndex) : "";
+
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "FP-Logger-Compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Files.createDirectories(this.file.getParent());
+        this.open();
+    }
+
+    private void open() throws IOException {
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.fileSize = this.channel.size();
+
+        // an existing file keeps its age, so restarts don't postpone the time-based rotation
+        this.fileCreated = this.fileSize > 0
+                ? Files.readAttributes(this.file, BasicFileAttributes.class).creationTime().toMillis()
+                : System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void append(@Nonnull LogEvent event) {
+        // closed with the logger, later events are only written to the console
+        if (!this.channel.isOpen())
+            return;
+
+        var bytes = this.formatEvent(event).getBytes(StandardCharsets.UTF_8);
+
+        try {
+            if (this.isRotationDue(event.timestamp(), bytes.length))
+                this.rotate(event.timestamp());
+
+            if (bytes.length > this.buffer.remaining())
+                this.drain();
+
+            if (bytes.length > this.buffer.capacity())
+                this.writeFully(ByteBuffer.wrap(bytes));
+            else
+                this.buffer.put(bytes);
+
+            this.fileSize += bytes.length;
+        } catch (IOException ex) {
+            // the logger can't log its own failure
+            ex.printStackTrace();
+        }
+    }
+
+    private boolean isRotationDue(long timestamp, int nextWrite) {
+        if (this.fileSize == 0)
+            return false;
+
+        return (this.maxFileSize > 0 && this.fileSize + nextWrite > this.maxFileSize)
+                || (this.rotationInterval > 0 && timestamp - this.fileCreated >= this.rotationInterval);
+    }
+
+    /**
+     * Renames the current file to an archive, which is compressed in the background, and opens a new one.
+     */
+    private void rotate(long timestamp) throws IOException {
+        this.drain();
+        this.channel.force(false);
+        this.channel.close();
+
+        var archiveName = this.archivePrefix + ARCHIVE_TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timestamp));
+        var archive = this.file.resolveSibling(archiveName + this.archiveExtension);
+        for (var i = 1; Files.exists(archive) || Files.exists(archive.resolveSibling(archive.getFileName() + ARCHIVE_SUFFIX)); i++)
+            archive = this.file.resolveSibling(archiveName + "-" + i + this.archiveExtension);
+
+        Files.move(this.file, archive);
+        this.open();
+
+        var rotated = archive;
+        this.compressor.execute(() -> {
+            this.compress(rotated);
+            this.deleteOldArchives();
+        });
+    }
+
+    private void compress(@Nonnull Path archive) {
+        var compressed = archive.resolveSibling(archive.getFileName() + ARCHIVE_SUFFIX);
+
+        try (var output = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            Files.copy(archive, output);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+
+        try {
+            Files.delete(archive);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes the oldest archives (by the timestamp in their name), so at most {@link #maxArchives} are kept.
+     */
+    private void deleteOldArchives() {
+        try (var files = Files.list(this.file.getParent())) {
+            var archives = files
+                    .filter(path -> {
+                        var name = path.getFileName().toString();
+                        return name.startsWith(this.archivePrefix) && name.endsWith(this.archiveExtension + ARCHIVE_SUFFIX);
+                    })
+                    .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                    .toList();
+
+            for (var archive : archives.subList(Math.min(this.maxArchives, archives.size()), archives.size()))
+                Files.deleteIfExists(archive);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Nonnull
+    private String formatEvent(@Nonnull LogEvent event) {
+        return switch (this.format) {
+            case JSON -> {
+                var json = new JsonObject();
+                json.addProperty("timestamp", Instant.ofEpochMilli(event.timestamp()).toString());
+                json.addProperty("level", event.level().name());
+                this.addOptional(json, "group", event.group());
+                this.addOptional(json, "class", event.fromClass());
+                this.addOptional(json, "method", event.fromMethod());
+                json.addProperty("thread", event.thread());
+                json.addProperty("message", event.message());
+                this.addOptional(json, "exception", this.getStackTrace(event.throwable()));
+
+                // toString is compact, unlike the plugin's pretty-printing gson
+                yield json + "\n";
+            }
+            case TEXT -> {
+                var text = "TIMESTAMP LEVEL [THREAD] MESSAGE\n"
+                        .replace("TIMESTAMP", TEXT_TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(event.timestamp())))
+                        .replace("LEVEL", event.level().name())
+                        .replace("THREAD", event.thread())
+                        .replace("MESSAGE", event.message());
+
+                var stackTrace = this.getStackTrace(event.throwable());
+                yield stackTrace != null ? text + stackTrace : text;
+            }
+        };
+    }
+
+    /**
+     * Adds the property unless the value is null, so the lines only contain the set fields.
+     */
+    private void addOptional(@Nonnull JsonObject json, @Nonnull String property, @Nullable String value) {
+        if (value != null)
+            json.addProperty(property, value);
+    }
+
+    @Nullable
+    private String getStackTrace(@Nullable Throwable throwable) {
+        if (throwable == null)
+            return null;
+
+        var writer = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    /**
+     * Writes the buffer's content to the file.
+     */
+    private void drain() throws IOException {
+        this.buffer.flip();
+        this.writeFully(this.buffer);
+        this.buffer.clear();
+    }
+
+    private void writeFully(@Nonnull ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            this.channel.write(bytes);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (!this.channel.isOpen())
+            return;
+
+        try {
+            this.drain();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the buffered events, closes the file and waits for running compressions (up to 10 seconds).
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            this.drain();
+            this.channel.force(false);
+            this.channel.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+
+        this.compressor.shutdown();
+        try {
+            this.compressor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
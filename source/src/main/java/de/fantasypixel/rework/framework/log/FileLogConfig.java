@@ -0,0 +1,48 @@
+package de.fantasypixel.rework.framework.log;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The configuration of the {@link FileLogAppender}, part of the logging.json.
+ */
+@Getter
+@AllArgsConstructor
+public class FileLogConfig {
+
+    /**
+     * Whether the messages are written to the log-file in addition to the console.
+     */
+    private boolean enabled;
+
+    /**
+     * The path of the log-file, relative to the plugin's data-folder.
+     */
+    private String path;
+
+    /**
+     * How each message is written.
+     */
+    private FileLogAppender.Format format;
+
+    /**
+     * The size in bytes after which the log-file is rotated, 0 to disable.
+     */
+    private long maxFileSize;
+
+    /**
+     * The time in milliseconds after which the log-file is rotated, 0 to disable.
+     */
+    private long rotationInterval;
+
+    /**
+     * The amount of rotated (compressed) log-files kept, older ones are deleted.
+     */
+    private int maxArchives;
+
+    /**
+     * The size in bytes of the write-buffer, flushed to the file when full and once the logged messages are written.
+     */
+    private int bufferSize;
+
+}
@@ -0,0 +1,24 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes the events of the {@link FPLogger}. The events passed are already filtered by the log-level and groups.
+ */
+public interface LogAppender {
+
+    void append(@Nonnull LogEvent event);
+
+    /**
+     * Writes the buffered events.
+     */
+    void flush();
+
+    /**
+     * Writes the buffered events and releases the appender's resources.
+     */
+    default void close() {
+        this.flush();
+    }
+
+}
@@ -0,0 +1,24 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A message passed from the {@link FPLogger} to its {@link LogAppender}. The event is created on the logging thread, so it holds its time and name.
+ * @param timestamp the time the message was logged
+ * @param thread the name of the thread that logged the message
+ * @param group the debug-group of the message, null for ungrouped messages
+ * @param fromClass the class passed by the caller (like with {@link FPLogger#error(String, String, Throwable)}), null if none was passed
+ * @param fromMethod the method passed by the caller, null if none was passed
+ * @param throwable the error whose stack trace is written after the message
+ */
+public record LogEvent(
+        long timestamp,
+        @Nonnull String thread,
+        @Nonnull FPLogger.LogLevel level,
+        @Nullable String group,
+        @Nullable String fromClass,
+        @Nullable String fromMethod,
+        @Nonnull String message,
+        @Nullable Throwable throwable
+) {}
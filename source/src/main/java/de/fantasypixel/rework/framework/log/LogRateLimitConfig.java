@@ -0,0 +1,64 @@
+package de.fantasypixel.rework.framework.log;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * The configuration of the {@link LogRateLimiter}, part of the logging.json.
+ */
+@Getter
+@AllArgsConstructor
+public class LogRateLimitConfig {
+
+    /**
+     * Whether messages are rate-limited and sampled.
+     */
+    private boolean enabled;
+
+    /**
+     * The interval in milliseconds in which the amount of suppressed messages is logged, 0 to only log it when the logger is closed.
+     */
+    private long summaryInterval;
+
+    /**
+     * The limit of every call site without an own limit, null to only limit the configured groups and call sites.
+     */
+    @Nullable private Limit defaults;
+
+    /**
+     * The limits of debug-groups (see {@link FPLogger#debugGrouped(String, String)}), shared by all messages of a group.
+     */
+    @Nullable private Map<String, Limit> groups;
+
+    /**
+     * The limits of call sites. A call site is identified by {@code CLASS::METHOD} for {@link FPLogger#error(String, String, Throwable)} and
+     * {@link FPLogger#warn(String, String, String)}, by the message-pattern (or the message) otherwise.
+     * Groups are limited by both, their group's and their call site's limit.
+     */
+    @Nullable private Map<String, Limit> callSites;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Limit {
+
+        /**
+         * The amount of messages logged per second on average, 0 for no rate-limit.
+         */
+        private double permitsPerSecond;
+
+        /**
+         * The amount of messages that can be logged at once before the rate-limit applies, at least one.
+         */
+        private int burst;
+
+        /**
+         * The share of messages (0 to 1) that is logged at all, null to log every message. Sampled messages count against the rate-limit.
+         */
+        @Nullable private Double sampleRate;
+
+    }
+
+}
@@ -0,0 +1,144 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether the {@link FPLogger} writes a message, so floods of the same message (like an error logged for every entity) can't slow the server.
+ * <br><br>
+ * Every debug-group and call site with a limit has a token bucket, messages are first sampled and then need a token of each bucket that applies.
+ * The suppressed messages are counted per bucket and summarized by the logger.
+ */
+class LogRateLimiter {
+
+    /**
+     * The maximum amount of call sites tracked with the default limit, messages of further call sites share one bucket.
+     * Messages built at runtime (instead of using a pattern) are their own call site, so this keeps the buckets bounded.
+     */
+    private final static int MAX_CALL_SITES = 1024;
+    private final static String OTHER_CALL_SITES = "<other call sites>";
+
+    private final LogRateLimitConfig.Limit defaults;
+    private final Map<String, LogRateLimitConfig.Limit> groupLimits;
+    private final Map<String, LogRateLimitConfig.Limit> callSiteLimits;
+    private final Map<String, Bucket> groupBuckets;
+    private final Map<String, Bucket> callSiteBuckets;
+
+    LogRateLimiter(@Nonnull LogRateLimitConfig config) {
+        this.defaults = config.getDefaults();
+        this.groupLimits = config.getGroups() != null ? config.getGroups() : Map.of();
+        this.callSiteLimits = config.getCallSites() != null ? config.getCallSites() : Map.of();
+        this.groupBuckets = new ConcurrentHashMap<>();
+        this.callSiteBuckets = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Takes a token of the group's and the call site's bucket.
+     * @param group the debug-group of the message or null
+     * @return whether the message is logged, otherwise it's counted as suppressed
+     */
+    boolean tryAcquire(@Nullable String group, @Nonnull String callSite) {
+        if (group != null) {
+            var groupLimit = this.groupLimits.get(group);
+            if (groupLimit != null && !this.groupBuckets.computeIfAbsent(group, key -> new Bucket(groupLimit)).tryAcquire())
+                return false;
+        }
+
+        var bucket = this.getCallSiteBucket(callSite);
+        return bucket == null || bucket.tryAcquire();
+    }
+
+    @Nullable
+    private Bucket getCallSiteBucket(@Nonnull String callSite) {
+        var bucket = this.callSiteBuckets.get(callSite);
+        if (bucket != null)
+            return bucket;
+
+        var limit = this.callSiteLimits.get(callSite);
+        if (limit != null)
+            return this.callSiteBuckets.computeIfAbsent(callSite, key -> new Bucket(limit));
+
+        if (this.defaults == null)
+            return null;
+
+        return this.callSiteBuckets.size() < MAX_CALL_SITES
+                ? this.callSiteBuckets.computeIfAbsent(callSite, key -> new Bucket(this.defaults))
+                : this.callSiteBuckets.computeIfAbsent(OTHER_CALL_SITES, key -> new Bucket(this.defaults));
+    }
+
+    /**
+     * Resets the suppressed counts.
+     * @return the suppressed messages since the last call per group (prefixed with {@code group }) and call site, highest first
+     */
+    @Nonnull
+    Map<String, Long> drainSuppressed() {
+        var suppressed = new LinkedHashMap<String, Long>();
+        this.groupBuckets.forEach((group, bucket) -> suppressed.put("group " + group, bucket.suppressed.getAndSet(0)));
+        this.callSiteBuckets.forEach((callSite, bucket) -> suppressed.put(callSite, bucket.suppressed.getAndSet(0)));
+
+        var result = new LinkedHashMap<String, Long>();
+        suppressed.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    /**
+     * A token bucket, implemented as the "generic cell rate algorithm": instead of counting tokens, it tracks the time at which the bucket is full again,
+     * so a message only needs one compare-and-set.
+     */
+    private static class Bucket {
+
+        private final double sampleRate;
+        private final long interval;
+        private final long tolerance;
+
+        /**
+         * The time (in nanoseconds) at which the bucket would be full again, each logged message moves it by one {@link #interval}.
+         */
+        private final AtomicLong fullAt;
+        private final AtomicLong suppressed;
+
+        private Bucket(@Nonnull LogRateLimitConfig.Limit limit) {
+            this.sampleRate = limit.getSampleRate() != null ? limit.getSampleRate() : 1;
+            this.interval = limit.getPermitsPerSecond() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / limit.getPermitsPerSecond()) : 0;
+            this.tolerance = this.interval * Math.max(1, limit.getBurst());
+            this.fullAt = new AtomicLong(System.nanoTime());
+            this.suppressed = new AtomicLong();
+        }
+
+        private boolean tryAcquire() {
+            if (this.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= this.sampleRate) {
+                this.suppressed.incrementAndGet();
+                return false;
+            }
+
+            if (this.interval == 0)
+                return true;
+
+            var now = System.nanoTime();
+            while (true) {
+                var current = this.fullAt.get();
+                var next = Math.max(current, now) + this.interval;
+
+                // taking the token would need more than the burst
+                if (next - now > this.tolerance) {
+                    this.suppressed.incrementAndGet();
+                    return false;
+                }
+
+                if (this.fullAt.compareAndSet(current, next))
+                    return true;
+            }
+        }
+
+    }
+
+}
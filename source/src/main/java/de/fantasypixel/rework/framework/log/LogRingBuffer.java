@@ -0,0 +1,100 @@
+package de.fantasypixel.rework.framework.log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free queue backed by a ring of slots, safe for multiple producers and consumers.
+ * <br><br>
+ * Every slot has a sequence telling whether it is free for the write at a position or holds the element for the read at a position.
+ * Producers and consumers claim positions by advancing the tail (or head) with a compare-and-set, so neither side ever waits for a lock.
+ */
+class LogRingBuffer<T> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+
+    /**
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    LogRingBuffer(int capacity) {
+        var size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+        this.mask = size - 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+
+        for (var i = 0; i < size; i++)
+            this.sequences.set(i, i);
+    }
+
+    /**
+     * @return whether the element was added, false if the buffer is full
+     */
+    boolean offer(@Nonnull T element) {
+        while (true) {
+            var position = this.tail.get();
+            var index = (int) (position & this.mask);
+            var difference = this.sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.elements[index] = element;
+                    // publishes the element to the consumers
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0)
+                return false;
+
+            // another producer claimed the position, retry with the next one
+        }
+    }
+
+    /**
+     * @return the oldest element or null if the buffer is empty
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    T poll() {
+        while (true) {
+            var position = this.head.get();
+            var index = (int) (position & this.mask);
+            var difference = this.sequences.get(index) - (position + 1);
+
+            if (difference == 0) {
+                if (this.head.compareAndSet(position, position + 1)) {
+                    var element = (T) this.elements[index];
+                    this.elements[index] = null;
+                    // frees the slot for the write one round later
+                    this.sequences.set(index, position + this.mask + 1);
+                    return element;
+                }
+            } else if (difference < 0)
+                return null;
+        }
+    }
+
+    boolean isEmpty() {
+        return this.head.get() >= this.tail.get();
+    }
+
+    /**
+     * @return the amount of elements ever added
+     */
+    long getAdded() {
+        return this.tail.get();
+    }
+
+    int getCapacity() {
+        return this.mask + 1;
+    }
+
+}
@@ -23,13 +23,20 @@ import de.fantasypixel.rework.framework.web.WebConfig;
 import jakarta.servlet.http.HttpServlet;
 import org.bukkit.Bukkit;
 import org.bukkit.event.Listener;
+import org.bukkit.scheduler.BukkitTask;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.*;
 import java.lang.reflect.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * Manages the framework-layer.
@@ -46,6 +53,16 @@ public class ProviderManager {
     private Map<Class<?>, Object> configs;
     private Map<Class<?>, JsonDataContainer<?>> jsonData;
     private Map<Class<?>, DataRepoProvider<?>> dataProviders;
+    private ConnectionPool connectionPool;
+    private DatabaseExecutor databaseExecutor;
+    private DatabaseMetrics databaseMetrics;
+    private TransactionManager transactionManager;
+    private CacheInvalidator cacheInvalidator;
+    private ReplicaRouter replicaRouter;
+    private SqliteWriter sqliteWriter;
+    private DatabaseBackup databaseBackup;
+    private BukkitTask invalidationTask;
+    private BukkitTask writeBehindTask;
     private final TimerManager timerManager;
     private final CommandManager commandManager;
     private WebServer webServer;
@@ -245,7 +262,10 @@ public class ProviderManager {
             this.hookJsonData();
 
             // data-repos
-            this.dataProviders.values().forEach(DataRepoProvider::clearCache);
+            this.dataProviders.values().forEach(dataRepo -> {
+                dataRepo.flushUpdates();
+                dataRepo.clearCache();
+            });
 
             // after
             this.plugin.getFpLogger().debug("Executing {0} after-reload hooks...", this.afterReloadHooks.size());
@@ -288,7 +308,90 @@ public class ProviderManager {
      * Creates the {@link #databaseManager}.
      */
     private void initDatabaseManager() {
-        this.databaseManager = () -> dataProviders.values().forEach(DataRepoProvider::clear);
+        this.databaseManager = new DatabaseManager() {
+            @Override
+            public void clearDatabase() {
+                dataProviders.values().forEach(DataRepoProvider::clear);
+            }
+
+            @Nullable
+            @Override
+            public ConnectionPool.Stats getConnectionPoolStats() {
+                return connectionPool != null ? connectionPool.getStats() : null;
+            }
+
+            @Nullable
+            @Override
+            public DatabaseMetrics.Snapshot getMetrics() {
+                return databaseMetrics != null ? databaseMetrics.getSnapshot() : null;
+            }
+
+            @Override
+            public boolean inTransaction(@Nonnull Consumer<Transaction> work) {
+                if (transactionManager == null) {
+                    plugin.getFpLogger().warning("Tried to run a database-transaction, but the database isn't connected.");
+                    return false;
+                }
+
+                return transactionManager.inTransaction(work);
+            }
+
+            @Nonnull
+            @Override
+            public CompletableFuture<Boolean> inTransactionAsync(@Nonnull Consumer<Transaction> work) {
+                if (transactionManager == null || databaseExecutor == null) {
+                    plugin.getFpLogger().warning("Tried to run a database-transaction, but the database isn't connected.");
+                    return CompletableFuture.completedFuture(false);
+                }
+
+                return databaseExecutor.supply(() -> transactionManager.inTransaction(work));
+            }
+
+            @Override
+            public void setInvalidationTransport(@Nonnull InvalidationTransport transport) {
+                if (cacheInvalidator != null)
+                    cacheInvalidator.setTransport(transport);
+            }
+
+            @Nonnull
+            @Override
+            public CompletableFuture<DatabaseBackup.Result> createBackup() {
+                if (databaseBackup == null) {
+                    plugin.getFpLogger().warning("Tried to create a database-backup, but the database isn't connected.");
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                return databaseBackup.createBackup();
+            }
+
+            @Nonnull
+            @Override
+            public CompletableFuture<DatabaseBackup.Result> exportDatabase(@Nonnull Path file) {
+                if (databaseBackup == null) {
+                    plugin.getFpLogger().warning("Tried to export the database, but the database isn't connected.");
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                return databaseBackup.export(file);
+            }
+
+            @Nonnull
+            @Override
+            public CompletableFuture<DatabaseBackup.Result> restoreDatabase(@Nonnull Path file) {
+                if (databaseBackup == null) {
+                    plugin.getFpLogger().warning("Tried to restore the database, but the database isn't connected.");
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                return databaseBackup.restore(file);
+            }
+
+            @Nullable
+            @Override
+            public Path getBackupDirectory() {
+                return databaseBackup != null ? databaseBackup.getBackupDirectory() : null;
+            }
+        };
     }
 
     /**
@@ -568,15 +671,34 @@ public class ProviderManager {
                     this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_PASSWORD", ""),
                     this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_PORT").orElseThrow(),
                     this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_NAME").orElseThrow(),
-                    this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_PRELOAD", "false").equalsIgnoreCase("true"),
-                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_PRELOAD_LIMIT", "0"))
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_POOL_SIZE", "10")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_POOL_TIMEOUT", "5000")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_POOL_VALIDATION_INTERVAL", "30000")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_WRITE_BEHIND_INTERVAL", "100")),
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_WRITE_BEHIND_BATCH_SIZE", "100")),
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_ASYNC_THREADS", "4")),
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_ASYNC_QUEUE_SIZE", "1000")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_NEGATIVE_CACHE_TTL", "5000")),
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_NEGATIVE_CACHE_SIZE", "1000")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_SLOW_QUERY_THRESHOLD", "250")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_INVALIDATION_INTERVAL", "0")),
+                    this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_NODE_ID", UUID.randomUUID().toString()),
+                    Arrays.stream(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_READ_REPLICAS", "").split(","))
+                            .map(String::trim)
+                            .filter(endpoint -> !endpoint.isEmpty())
+                            .toList(),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_REPLICA_PIN_DURATION", "1000")),
+                    this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_SQLITE_SYNCHRONOUS", "NORMAL"),
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_SQLITE_CACHE_SIZE", "16384")),
+                    Long.parseLong(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_SQLITE_MMAP_SIZE", "268435456")),
+                    Integer.parseInt(this.plugin.getFpUtils().getEnvironmentVar("FP_NEXT_DATABASE_SQLITE_WRITE_BATCH_SIZE", "100"))
             );
         } catch (NoSuchElementException ex) {
             this.plugin.getFpLogger().warning("Tried to connect to database, at least one environment variable is missing! Please set FP_NEXT_DATABASE_TYPE, FP_NEXT_DATABASE_HOST, FP_NEXT_DATABASE_USER, FP_NEXT_DATABASE_PASSWORD?, FP_NEXT_DATABASE_PORT, FP_NEXT_DATABASE_NAME.");
             this.plugin.getFpLogger().error(CLASS_NAME, "createDataRepos", ex);
             return;
         } catch (NumberFormatException ex) {
-            this.plugin.getFpLogger().warning("Tried to connect to database, but FP_NEXT_DATABASE_PRELOAD_LIMIT isn't a number!");
+            this.plugin.getFpLogger().warning("Tried to connect to database, but one of the FP_NEXT_DATABASE_POOL_* / FP_NEXT_DATABASE_WRITE_BEHIND_* / FP_NEXT_DATABASE_ASYNC_* / FP_NEXT_DATABASE_NEGATIVE_CACHE_* / FP_NEXT_DATABASE_SLOW_QUERY_THRESHOLD / FP_NEXT_DATABASE_INVALIDATION_INTERVAL / FP_NEXT_DATABASE_REPLICA_PIN_DURATION / FP_NEXT_DATABASE_SQLITE_* variables isn't a number!");
             return;
         } catch (IllegalArgumentException ex) {
             this.plugin.getFpLogger().warning("Tried to connect to database, but the type in the environment variables isn't MYSQL, POSTGRESQL, SQLITE!");
@@ -594,11 +716,26 @@ public class ProviderManager {
             this.plugin.getServer().shutdown();
         }
 
+        this.connectionPool = new ConnectionPool(this.plugin, databaseConfig);
+        this.databaseExecutor = new DatabaseExecutor(this.plugin, databaseConfig);
+        this.databaseMetrics = new DatabaseMetrics(this.plugin, databaseConfig.getSlowQueryThreshold());
+        this.transactionManager = new TransactionManager(this.plugin, this.connectionPool);
         this.dataProviders = new HashMap<>();
 
+        var changePublisher = new EntityChangePublisher(this.plugin);
+        this.initEntityChangeListeners(changePublisher);
+        this.initSqliteWriter(databaseConfig);
+        this.initCacheInvalidator(databaseConfig);
+        this.initReplicaRouter(databaseConfig);
+
+        var databaseContext = new DatabaseContext(this.plugin, databaseConfig, this.connectionPool, this.databaseExecutor, this.databaseMetrics, this.transactionManager, changePublisher, this.cacheInvalidator, this.replicaRouter, this.sqliteWriter);
+
+        // the hooks are collected first, so every repository can be created (and preloaded) in parallel
+        var dataRepoHookTypes = new LinkedHashMap<Field, Class<?>>();
+        var dataRepoHookProviders = new HashMap<Field, Class<?>>();
+
         this.serviceProviderClasses.forEach(serviceProviderClass -> {
             var dataRepoHooks = this.plugin.getFpUtils().getFieldsAnnotatedWith(DataRepo.class, serviceProviderClass);
-            var serviceProvider = this.serviceProviders.get(serviceProviderClass);
 
             dataRepoHooks.forEach(dataRepoHook -> {
 
@@ -621,24 +758,172 @@ public class ProviderManager {
                     return;
                 }
 
-                if (!this.dataProviders.containsKey(dataRepoEntityType)) {
-                    var dataRepoInstance = (DataRepoProvider<?>) this.plugin.getFpUtils().instantiate(DataRepoProvider.class, dataRepoEntityType, this.plugin, databaseConfig);
-                    this.dataProviders.put(dataRepoEntityType, dataRepoInstance);
-                    this.plugin.getFpLogger().debug("Created data-repo {0}.", dataRepoEntityType.getSimpleName());
-                }
+                dataRepoHookTypes.put(dataRepoHook, dataRepoEntityType);
+                dataRepoHookProviders.put(dataRepoHook, serviceProviderClass);
+            });
+        });
 
-                var dataRepo = this.dataProviders.get(dataRepoEntityType);
+        var dataRepoEntityTypes = new LinkedHashSet<>(dataRepoHookTypes.values());
 
-                try {
-                    dataRepoHook.set(serviceProvider, dataRepo);
-                    this.plugin.getFpLogger().debug("Setup data-repo hook {0} in service {1}.", dataRepoEntityType.getSimpleName(), serviceProviderClass.getSimpleName());
-                } catch (IllegalAccessException e) {
-                    this.plugin.getFpLogger().error(CLASS_NAME, "createDataRepos", e);
+        // missing tables and indexes are created before the repositories read them
+        new SchemaMigrator(databaseContext).migrate(dataRepoEntityTypes);
+
+        // the repositories preload their tables in the constructor, they are created on the (bounded) database-executor
+        var startTime = System.currentTimeMillis();
+        var dataRepoFutures = new LinkedHashMap<Class<?>, CompletableFuture<DataRepoProvider<?>>>();
+
+        dataRepoEntityTypes.forEach(dataRepoEntityType -> dataRepoFutures.put(
+                dataRepoEntityType,
+                this.databaseExecutor.supply(() -> {
+                    var dataRepoInstance = (DataRepoProvider<?>) this.plugin.getFpUtils().instantiate(DataRepoProvider.class, dataRepoEntityType, databaseContext);
+
+                    // known after a complete preload, otherwise counted once here instead of on the server-thread
+                    if (dataRepoInstance != null)
+                        dataRepoInstance.getEntryCount();
+
+                    return dataRepoInstance;
+                })
+        ));
+
+        // wait until every repository is ready, the startup continues with the services using them
+        try {
+            CompletableFuture.allOf(dataRepoFutures.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException ex) {
+            this.plugin.getFpLogger().error(CLASS_NAME, "createDataRepos", ex);
+        }
+
+        dataRepoFutures.forEach((dataRepoEntityType, dataRepoFuture) -> {
+            var dataRepoInstance = dataRepoFuture.isCompletedExceptionally() ? null : dataRepoFuture.join();
+            if (dataRepoInstance == null) {
+                this.plugin.getFpLogger().warning("The data-repo {0} couldn't be created.", dataRepoEntityType.getSimpleName());
+                return;
+            }
+
+            this.dataProviders.put(dataRepoEntityType, dataRepoInstance);
+            this.plugin.getFpLogger().debug("Created data-repo {0}.", dataRepoEntityType.getSimpleName());
+        });
+
+        this.plugin.getFpLogger().debug("Created {0} data-repos in {1}ms.", this.dataProviders.size(), System.currentTimeMillis() - startTime);
+
+        dataRepoHookTypes.forEach((dataRepoHook, dataRepoEntityType) -> {
+            var serviceProviderClass = dataRepoHookProviders.get(dataRepoHook);
+            var serviceProvider = this.serviceProviders.get(serviceProviderClass);
+            var dataRepo = this.dataProviders.get(dataRepoEntityType);
+
+            try {
+                dataRepoHook.set(serviceProvider, dataRepo);
+                this.plugin.getFpLogger().debug("Setup data-repo hook {0} in service {1}.", dataRepoEntityType.getSimpleName(), serviceProviderClass.getSimpleName());
+            } catch (IllegalAccessException e) {
+                this.plugin.getFpLogger().error(CLASS_NAME, "createDataRepos", e);
+            }
+        });
+
+        this.databaseBackup = new DatabaseBackup(databaseContext, this.dataProviders.values());
+
+        this.writeBehindTask = this.plugin.getServer().getScheduler().runTaskTimerAsynchronously(
+                this.plugin,
+                this::flushDataRepos,
+                databaseConfig.getWriteBehindInterval(),
+                databaseConfig.getWriteBehindInterval()
+        );
+
+        if (this.cacheInvalidator != null)
+            this.invalidationTask = this.plugin.getServer().getScheduler().runTaskTimerAsynchronously(
+                    this.plugin,
+                    this.cacheInvalidator::poll,
+                    databaseConfig.getInvalidationInterval(),
+                    databaseConfig.getInvalidationInterval()
+            );
+    }
+
+    /**
+     * Creates the {@link #cacheInvalidator} with the {@link ChangeLogTransport}, if the cross-node invalidation is enabled.
+     * The polling is started once the data-repos are created.
+     */
+    private void initCacheInvalidator(@Nonnull DatabaseConfig databaseConfig) {
+        if (databaseConfig.getInvalidationInterval() <= 0)
+            return;
+
+        try {
+            this.cacheInvalidator = new CacheInvalidator(this.plugin, new ChangeLogTransport(this.plugin, this.connectionPool, this.sqliteWriter, databaseConfig));
+            this.plugin.getFpLogger().info("Enabled the cross-node cache-invalidation for node {0}.", databaseConfig.getNodeId());
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().warning("Couldn't create the change-log, the caches of other nodes sharing the database won't be invalidated!");
+            this.plugin.getFpLogger().error(CLASS_NAME, "initCacheInvalidator", ex);
+        }
+    }
+
+    /**
+     * Creates the {@link #replicaRouter}, if read-replicas are configured.
+     */
+    private void initReplicaRouter(@Nonnull DatabaseConfig databaseConfig) {
+        if (databaseConfig.getReadReplicas().isEmpty())
+            return;
+
+        if (databaseConfig.getType() == DatabaseType.SQLITE) {
+            this.plugin.getFpLogger().warning("SQLite doesn't support read-replicas, the configured FP_NEXT_DATABASE_READ_REPLICAS are ignored.");
+            return;
+        }
+
+        this.replicaRouter = new ReplicaRouter(this.plugin, databaseConfig);
+        this.plugin.getFpLogger().info("Load-balancing reads across {0} read-replicas.", databaseConfig.getReadReplicas().size());
+    }
+
+    /**
+     * Creates the {@link #sqliteWriter} for SQLite databases, the connection-pool is only used for reads and transactions then.
+     */
+    private void initSqliteWriter(@Nonnull DatabaseConfig databaseConfig) {
+        if (databaseConfig.getType() != DatabaseType.SQLITE)
+            return;
+
+        try {
+            this.sqliteWriter = new SqliteWriter(this.plugin, databaseConfig);
+        } catch (SQLException ex) {
+            this.plugin.getFpLogger().warning("Couldn't start the sqlite-writer, the repositories write on their own connections.");
+            this.plugin.getFpLogger().error(CLASS_NAME, "initSqliteWriter", ex);
+        }
+    }
+
+    /**
+     * Subscribes the methods annotated with {@link OnEntityChange} in service-providers and controllers to the given publisher.
+     */
+    private void initEntityChangeListeners(@Nonnull EntityChangePublisher changePublisher) {
+        var listenerInstances = new ArrayList<>(this.serviceProviders.values());
+        listenerInstances.addAll(this.controllers);
+
+        listenerInstances.forEach(instance -> {
+            var instanceClass = instance.getClass();
+
+            this.plugin.getFpUtils().getMethodsAnnotatedWith(OnEntityChange.class, instanceClass).forEach(listenerMethod -> {
+                var listenerName = instanceClass.getSimpleName() + "#" + listenerMethod.getName();
+
+                if (listenerMethod.getParameterCount() != 1 || listenerMethod.getParameterTypes()[0] != EntityChange.class) {
+                    this.plugin.getFpLogger().warning("The change-listener {0} must have exactly one parameter of type EntityChange, it's ignored.", listenerName);
+                    return;
                 }
+
+                var annotation = listenerMethod.getAnnotation(OnEntityChange.class);
+                changePublisher.subscribe(annotation.value(), annotation.delivery(), listenerName, change -> {
+                    try {
+                        listenerMethod.invoke(instance, change);
+                    } catch (IllegalAccessException | InvocationTargetException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+
+                this.plugin.getFpLogger().debug("Subscribed change-listener {0} to entity {1}.", listenerName, annotation.value().getSimpleName());
             });
         });
     }
 
+    /**
+     * Flushes the queued write-behind updates of all data-repos, see {@link DataRepoProvider#queueUpdate(Object)}.
+     */
+    private void flushDataRepos() {
+        if (this.dataProviders != null)
+            this.dataProviders.values().forEach(DataRepoProvider::flushUpdates);
+    }
+
     /**
      * Calls onEnable on all controllers, registers listeners & commands and starts the timers.
      * <b>Note:</b> This method waits for the {@link net.citizensnpcs.api.event.CitizensEnableEvent} so that NPCs are available.
@@ -691,8 +976,9 @@ public class ProviderManager {
         int totalDatabaseEntryCount = this.dataProviders
                 .values()
                 .stream()
-                .map(DataRepoProvider::getEntryCount)
-                .reduce(0, Integer::sum);
+                .mapToInt(DataRepoProvider::getEntryCount)
+                .filter(count -> count > 0)
+                .sum();
 
         this.plugin.getFpLogger().line(FPLogger.LogLevel.INFO);
         this.plugin.getFpLogger().info("The Server-Startup was finished.");
@@ -704,7 +990,7 @@ public class ProviderManager {
     }
 
     /**
-     * Calls onDisable on all controllers, stops the timers, webserver & discord-bot.
+     * Calls onDisable on all controllers, stops the timers, webserver & discord-bot and flushes the queued database-updates.
      */
     public void onDisable() {
         this.controllers.forEach(controller -> {
@@ -720,5 +1006,28 @@ public class ProviderManager {
         this.timerManager.stopTimers();
         this.webServer.stop();
         this.discordManager.stop();
+
+        if (this.writeBehindTask != null)
+            this.writeBehindTask.cancel();
+
+        if (this.invalidationTask != null)
+            this.invalidationTask.cancel();
+
+        if (this.databaseExecutor != null)
+            this.databaseExecutor.shutdown();
+
+        this.flushDataRepos();
+
+        if (this.cacheInvalidator != null)
+            this.cacheInvalidator.close();
+
+        if (this.sqliteWriter != null)
+            this.sqliteWriter.close();
+
+        if (this.replicaRouter != null)
+            this.replicaRouter.close();
+
+        if (this.connectionPool != null)
+            this.connectionPool.close();
     }
 }
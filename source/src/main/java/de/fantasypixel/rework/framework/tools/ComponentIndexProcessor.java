@@ -0,0 +1,124 @@
+package de.fantasypixel.rework.framework.tools;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An annotation-processor writing the component-index at compile time, which the {@link de.fantasypixel.rework.framework.FPUtils} reads
+ * instead of scanning the classpath on startup. The index lists (one entry per line):
+ * <ul>
+ *     <li>{@code type ANNOTATION CLASS} for classes annotated with one of the plugin's annotations</li>
+ *     <li>{@code field ANNOTATION CLASS FIELD} for fields annotated with one of the plugin's annotations</li>
+ *     <li>{@code subtype SUPERTYPE CLASS} for the direct superclass and interfaces of every class</li>
+ *     <li>{@code classes COUNT} once, the amount of compiled top-level classes, so an index of a partial compile can be told apart</li>
+ * </ul>
+ * The processor is compiled before the other classes (see the pom.xml), so it must not reference them.
+ */
+@SupportedAnnotationTypes("*")
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    public final static String INDEX_FILE = "META-INF/fp-next/component-index";
+    public final static String INDEXED_PACKAGE = "de.fantasypixel.rework.";
+
+    /**
+     * Sorted, so the index doesn't change between builds of the same sources.
+     */
+    private final Set<String> entries = new TreeSet<>();
+    private final Set<String> compiledTypes = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            this.writeIndex();
+            return false;
+        }
+
+        for (var element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement type) {
+                this.indexType(type);
+
+                var typeName = this.getBinaryName(type);
+                if (typeName.startsWith(INDEXED_PACKAGE))
+                    this.compiledTypes.add(typeName);
+            }
+        }
+
+        // the annotations aren't claimed, so other processors (like lombok) still see them
+        return false;
+    }
+
+    private void indexType(TypeElement type) {
+        var typeName = this.getBinaryName(type);
+
+        for (var annotation : type.getAnnotationMirrors())
+            if (this.isIndexed(annotation))
+                this.entries.add("type " + this.getAnnotationName(annotation) + " " + typeName);
+
+        if (type.getSuperclass().getKind() == TypeKind.DECLARED) {
+            var superclassName = this.getTypeName(type.getSuperclass());
+            if (!superclassName.equals(Object.class.getName()))
+                this.entries.add("subtype " + superclassName + " " + typeName);
+        }
+
+        for (var implemented : type.getInterfaces())
+            this.entries.add("subtype " + this.getTypeName(implemented) + " " + typeName);
+
+        for (var enclosed : type.getEnclosedElements()) {
+            if (enclosed.getKind().isField()) {
+                for (var annotation : enclosed.getAnnotationMirrors())
+                    if (this.isIndexed(annotation))
+                        this.entries.add("field " + this.getAnnotationName(annotation) + " " + typeName + " " + enclosed.getSimpleName());
+            } else if (enclosed instanceof TypeElement nestedType) {
+                this.indexType(nestedType);
+            }
+        }
+    }
+
+    private boolean isIndexed(AnnotationMirror annotation) {
+        return this.getAnnotationName(annotation).startsWith(INDEXED_PACKAGE);
+    }
+
+    private String getAnnotationName(AnnotationMirror annotation) {
+        return this.getBinaryName((TypeElement) annotation.getAnnotationType().asElement());
+    }
+
+    private String getTypeName(TypeMirror type) {
+        return this.getBinaryName((TypeElement) ((DeclaredType) type).asElement());
+    }
+
+    /**
+     * @return the name used by {@link Class#forName(String)}, nested classes are separated by a $
+     */
+    private String getBinaryName(TypeElement type) {
+        return this.processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void writeIndex() {
+        try (var writer = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE).openWriter()) {
+            writer.write("classes " + this.compiledTypes.size() + "\n");
+            for (var entry : this.entries)
+                writer.write(entry + "\n");
+        } catch (IOException ex) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Couldn't write the component-index: " + ex.getMessage());
+        }
+    }
+
+}
@@ -1,6 +1,9 @@
 package de.fantasypixel.rework.modules.account;
 
+import de.fantasypixel.rework.framework.database.CachePolicy;
 import de.fantasypixel.rework.framework.database.Entity;
+import de.fantasypixel.rework.framework.database.Indexed;
+import de.fantasypixel.rework.framework.database.Length;
 import lombok.*;
 
 import javax.annotation.Nullable;
@@ -10,13 +13,13 @@ import javax.annotation.Nullable;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Entity(tableName = "accounts")
+@Entity(tableName = "accounts", cachePolicy = CachePolicy.EAGER)
 public class Account {
 
     @Nullable private Integer id;
-    private String playerUuid;
-    private String name;
-    @Nullable private String password;
-    private String lastLogin; // date-time
+    @Indexed(unique = true) @Length(36) private String playerUuid;
+    @Indexed @Length(50) private String name;
+    @Nullable @Length(200) private String password;
+    @Nullable @Length(19) private String lastLogin; // date-time
 
 }
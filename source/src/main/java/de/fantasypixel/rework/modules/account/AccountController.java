@@ -1,6 +1,7 @@
 package de.fantasypixel.rework.modules.account;
 
 import de.fantasypixel.rework.framework.discord.FPDiscordChannel;
+import de.fantasypixel.rework.framework.events.OnEnable;
 import de.fantasypixel.rework.framework.provider.Controller;
 import de.fantasypixel.rework.framework.provider.Service;
 import de.fantasypixel.rework.modules.discord.DiscordService;
@@ -24,12 +25,17 @@ public class AccountController implements Listener {
     @Service private DiscordService discordService;
     @Service private DateUtils dateUtils;
 
+    @OnEnable
+    public void registerOnlinePlayers() {
+        // players stay online across a reload of the plugin, but don't join again
+        this.accountService.registerOnlinePlayers();
+    }
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         String playerName = player.getName();
         String playerUuid = player.getUniqueId().toString();
-        Account account;
 
         event.setJoinMessage("§7[§a+§7] " + playerName);
         this.discordService.sendEmbed(
@@ -41,20 +47,23 @@ public class AccountController implements Listener {
                         .build()
         );
 
-        if (!this.accountService.hasAccount(playerUuid)) {
-            // first join -> setup account
-            account = this.accountService.createAccount(playerUuid, playerName, null);
-            this.notificationService.sendChatMessage(player, "welcome", playerName, account.getId());
-        } else {
-            account = this.accountService.getAccount(playerUuid);
-        }
+        // the account is loaded (or created on the first join) off the server-thread, the login continues on the server-thread
+        this.accountService.getOrCreateAccountAsync(playerUuid, playerName).thenAccept(result -> {
+            Account account = result.entity();
+            if (account == null || !player.isOnline())
+                return;
+
+            if (result.created())
+                this.notificationService.sendChatMessage(player, "welcome", playerName, account.getId());
 
-        this.accountService.login(player, account);
+            this.accountService.login(player, account);
+        });
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         var playerName = event.getPlayer().getName();
+        this.accountService.logout(event.getPlayer());
 
         event.setQuitMessage("§7[§c-§7] " + playerName);
         this.discordService.sendEmbed(
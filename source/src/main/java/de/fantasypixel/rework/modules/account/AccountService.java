@@ -3,11 +3,15 @@ package de.fantasypixel.rework.modules.account;
 import de.fantasypixel.rework.framework.discord.FPDiscordChannel;
 import de.fantasypixel.rework.framework.log.FPLogger;
 import de.fantasypixel.rework.framework.database.DataRepo;
+import de.fantasypixel.rework.framework.database.DatabaseManager;
+import de.fantasypixel.rework.framework.database.EntityChange;
+import de.fantasypixel.rework.framework.database.OnEntityChange;
 import de.fantasypixel.rework.framework.database.DataRepoProvider;
 import de.fantasypixel.rework.framework.database.Query;
 import de.fantasypixel.rework.framework.provider.Auto;
 import de.fantasypixel.rework.framework.provider.Service;
 import de.fantasypixel.rework.framework.provider.ServiceProvider;
+import de.fantasypixel.rework.modules.account.options.AccountOptionsService;
 import de.fantasypixel.rework.modules.discord.DiscordService;
 import de.fantasypixel.rework.modules.events.AccountLoginEvent;
 import de.fantasypixel.rework.modules.utils.DateUtils;
@@ -17,9 +21,13 @@ import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Objects;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ServiceProvider
 public class AccountService {
@@ -27,10 +35,18 @@ public class AccountService {
     private final static String CLASS_NAME = AccountService.class.getSimpleName();
 
     @Auto private FPLogger logger;
+    @Auto private DatabaseManager databaseManager;
     @DataRepo private DataRepoProvider<Account> accountRepo;
     @Service private DateUtils dateUtils;
     @Service private ServerUtils serverUtils;
     @Service private DiscordService discordService;
+    @Service private AccountOptionsService accountOptionsService;
+
+    /**
+     * The players of the logged in accounts, maintained by {@link #login(Player, Account)}, {@link #logout(Player)} and {@link #onAccountChange(EntityChange)}.
+     * The players online when the plugin is enabled are added by {@link #registerOnlinePlayers()}.
+     */
+    private final Map<Integer, Player> accountPlayers = new ConcurrentHashMap<>();
 
     public boolean hasAccount(@Nonnull String playerUuid) {
         return this.accountRepo.exists(new Query("playerUuid", playerUuid));
@@ -41,6 +57,35 @@ public class AccountService {
         return this.accountRepo.get(new Query("playerUuid", playerUuid));
     }
 
+    /**
+     * Loads the player's account on a database-thread or creates it if the player has none yet, the returned future completes on the server-thread.
+     * A new account and its default account-options are inserted in one transaction.
+     * The result's entity is null if an error occurred.
+     */
+    @Nonnull
+    public CompletableFuture<DataRepoProvider.GetOrCreateResult<Account>> getOrCreateAccountAsync(@Nonnull String playerUuid, @Nonnull String name) {
+        var accountResult = new AtomicReference<DataRepoProvider.GetOrCreateResult<Account>>();
+
+        return this.databaseManager.inTransactionAsync(transaction -> {
+            var result = this.accountRepo.getOrCreate(new Query("playerUuid", playerUuid), () -> new Account(null, playerUuid, name, null, null));
+            accountResult.set(result);
+
+            if (result.entity() == null || (result.created() && this.accountOptionsService.createDefaultOptions(result.entity().getId()) == null))
+                transaction.setRollbackOnly();
+        }).thenApplyAsync(committed -> {
+            var result = accountResult.get();
+            if (!committed || result == null || result.entity() == null) {
+                this.logger.error(CLASS_NAME, "getOrCreateAccountAsync", "Couldn't load or insert the account of player {0}.", playerUuid);
+                return new DataRepoProvider.GetOrCreateResult<Account>(null, false);
+            }
+
+            if (result.created())
+                this.discordService.sendEmbed(FPDiscordChannel.LOGS_USER, Color.GREEN, "Account create", "The account {0} was created for player \"{1}\".", result.entity().getId(), name);
+
+            return result;
+        }, this.accountRepo.getMainThreadExecutor());
+    }
+
     @Nullable
     public Account getAccountByName(@Nonnull String name) {
         return this.accountRepo.get(new Query("name", name));
@@ -56,56 +101,72 @@ public class AccountService {
         return this.accountRepo.get(new Query("id", accountId));
     }
 
+    /**
+     * Gets multiple accounts with one lookup. Ids without an account are ignored.
+     */
+    @Nonnull
+    public Set<Account> getAccounts(@Nonnull Collection<Integer> accountIds) {
+        return this.accountRepo.getMultiple(new Query().whereIn("id", accountIds));
+    }
+
+    /**
+     * @return the player logged into the given account or null if the account is offline
+     */
     @Nullable
     public Player getPlayer(int accountId) {
-        for (Player onlinePlayer : this.serverUtils.getOnlinePlayers()) {
-            var onlinePlayerAccount = this.getAccount(onlinePlayer.getUniqueId());
-
-            if (Objects.equals(onlinePlayerAccount.getId(), accountId))
-                return onlinePlayer;
-        }
-
-        return null;
+        var player = this.accountPlayers.get(accountId);
+        return player != null && player.isOnline() ? player : null;
     }
 
     /**
      * Checks if the given account is online.
      */
     public boolean isAccountOnline(int accountId) {
-        var onlinePlayers = this.serverUtils.getOnlinePlayers();
-        var onlineAccounts = onlinePlayers.stream()
-                .map(player -> this.getAccount(player.getUniqueId()))
-                .collect(Collectors.toSet());
+        return this.getPlayer(accountId) != null;
+    }
 
-        return onlineAccounts.stream()
-                .anyMatch(account -> Objects.equals(account.getId(), accountId));
+    /**
+     * Logs in a player into the given account.
+     */
+    public void login(@Nonnull Player player, @Nonnull Account account) {
+        this.accountPlayers.put(account.getId(), player);
+        account.setLastLogin(this.dateUtils.getCurrentDateTime());
+        this.accountRepo.updateAsync(account).whenComplete((updated, ex) -> {
+            if (ex != null)
+                this.logger.error(CLASS_NAME, "login", ex);
+            else if (!updated)
+                this.logger.warning("Couldn''t save the last login of account {0}.", account.getId());
+        });
+        this.serverUtils.callEvent(new AccountLoginEvent(account, player));
     }
 
     /**
-     * Creates a new account.
-     * @param playerUuid the associated player's uuid
-     * @param name the associated player's name
-     * @param password the password
-     * @return the created account or null if an error occurred
+     * Adds the players that are already online (for example when the plugin is enabled by a reload) to the logged in accounts,
+     * without logging them in again. Players logged in meanwhile are kept.
      */
-    @Nullable
-    public Account createAccount(@Nonnull String playerUuid, @Nonnull String name, @Nullable String password) {
-        Account account = new Account(null, playerUuid, name, password, null);
-        if (!this.accountRepo.insert(account)) {
-            this.logger.error(CLASS_NAME, "createAccount", "Couldn't insert account into the database.");
-            return null;
+    public void registerOnlinePlayers() {
+        for (var player : this.serverUtils.getOnlinePlayers()) {
+            var account = this.getAccount(player.getUniqueId());
+            if (account != null)
+                this.accountPlayers.putIfAbsent(account.getId(), player);
         }
+    }
 
-        this.discordService.sendEmbed(FPDiscordChannel.LOGS_USER, Color.GREEN, "Account create", "The account {0} was created for player \"{1}\".", account.getId(), name);
-        return account;
+    /**
+     * Removes the player from the logged in accounts.
+     */
+    public void logout(@Nonnull Player player) {
+        this.accountPlayers.values().remove(player);
     }
 
     /**
-     * Logs in a player into the given account.
+     * Drops the sessions of deleted accounts.
      */
-    public void login(@Nonnull Player player, @Nonnull Account account) {
-        account.setLastLogin(this.dateUtils.getCurrentDateTime());
-        this.accountRepo.update(account);
-        this.serverUtils.callEvent(new AccountLoginEvent(account, player));
+    @OnEntityChange(Account.class)
+    public void onAccountChange(@Nonnull EntityChange<Account> change) {
+        switch (change.type()) {
+            case DELETE -> this.accountPlayers.remove(change.entity().getId());
+            case CLEAR -> this.accountPlayers.clear();
+        }
     }
 }
@@ -1,6 +1,9 @@
 package de.fantasypixel.rework.modules.account.options;
 
+import de.fantasypixel.rework.framework.database.CachePolicy;
 import de.fantasypixel.rework.framework.database.Entity;
+import de.fantasypixel.rework.framework.database.Indexed;
+import de.fantasypixel.rework.framework.database.Length;
 import lombok.*;
 
 import javax.annotation.Nullable;
@@ -10,12 +13,12 @@ import javax.annotation.Nullable;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Entity(tableName = "account_options")
+@Entity(tableName = "account_options", cachePolicy = CachePolicy.EAGER)
 public class AccountOptions {
 
     @Nullable private Integer id;
-    private int accountId;
-    private String languageKey;
+    @Indexed(unique = true) private int accountId;
+    @Length(3) private String languageKey;
     private boolean buildMode;
 
 }
@@ -21,6 +21,12 @@ public class AccountOptionsController {
     @Command(name = "options", aliases = {"settings", "account"})
     public void optionsCommand(Player player, String[] args) {
         var account = this.accountService.getAccount(player.getUniqueId());
+        if (account == null) {
+            this.notificationService.sendChatMessage(NotificationType.ERROR, player, "500");
+            this.soundService.playSound(player, Sound.ERROR);
+            return;
+        }
+
         var accountId = account.getId();
 
         if (args.length == 0) {
@@ -19,6 +19,7 @@ import discord4j.rest.util.Color;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Locale;
 
 @ServiceProvider
@@ -35,45 +36,59 @@ public class AccountOptionsService {
     @Service private DiscordService discordService;
 
     /**
-     * Creates a new account options entry in the database that uses the default options.
+     * Builds a new account options entity (not yet inserted) that uses the default options.
      * @param accountId the id of the associated account
      */
-    private void createDefaultOptions(int accountId) {
+    @Nonnull
+    private AccountOptions buildDefaultOptions(int accountId) {
         var defaultOptions = this.gson.fromJson(
                 this.gson.toJson(this.config.getDefaultOptions()),
                 AccountOptions.class
         );
 
         defaultOptions.setAccountId(accountId);
+        return defaultOptions;
+    }
 
-        if (this.dataRepo.insert(defaultOptions)) {
-            this.logger.debug("Created default account-options for account {0}.", accountId);
-        } else {
-            this.logger.warning(CLASS_NAME, "createDefaultOptions", "Couldn't insert default account-options for account {0}.", accountId);
+    /**
+     * Inserts the default options for a new account. Called in the transaction creating the account, so both are committed together.
+     * @param accountId the id of the associated account
+     * @return the inserted account options or null if an error occurred
+     */
+    @Nullable
+    public AccountOptions createDefaultOptions(int accountId) {
+        var defaultOptions = this.buildDefaultOptions(accountId);
+
+        if (!this.dataRepo.insert(defaultOptions)) {
+            this.logger.error(CLASS_NAME, "createDefaultOptions", "Couldn't insert default account-options for account {0}.", accountId);
+            return null;
         }
+
+        return defaultOptions;
     }
 
     /**
      * Retrieves the account options from the data-repository.
-     * If none are found, the default options will be applied.
+     * If none are found, the default options will be inserted and returned.
      * @param accountId the id of the associated account
      * @return the current account options
      */
     @Nonnull
     public AccountOptions getOptions(int accountId) {
-        if (this.dataRepo.exists(new Query("accountId", accountId))) {
-            var existingOptions = this.dataRepo.get(new Query("accountId", accountId));
-
-            if (existingOptions == null) {
-                this.logger.error(CLASS_NAME, "getOptions", "Tried to retrieve existing options for account {0}, but found none.", accountId);
-                return this.config.getDefaultOptions();
-            }
+        var result = this.dataRepo.getOrCreate(
+                new Query("accountId", accountId),
+                () -> this.buildDefaultOptions(accountId)
+        );
 
-            return existingOptions;
-        } else {
-            this.createDefaultOptions(accountId);
+        if (result.entity() == null) {
+            this.logger.warning(CLASS_NAME, "getOptions", "Couldn't retrieve or insert account-options for account {0}.", accountId);
             return this.config.getDefaultOptions();
         }
+
+        if (result.created())
+            this.logger.debug("Created default account-options for account {0}.", accountId);
+
+        return result.entity();
     }
 
     /**
@@ -9,9 +9,12 @@ import de.fantasypixel.rework.modules.sound.Sound;
 import de.fantasypixel.rework.modules.sound.SoundService;
 import org.bukkit.SoundCategory;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLoginEvent;
 
 @Controller
-public class AdminController {
+public class AdminController implements Listener {
 
     @Service private AdminService adminService;
     @Service private NotificationService notificationService;
@@ -50,9 +53,26 @@ public class AdminController {
             // clear database
             this.adminService.clearDatabase(player);
 
+        } else if ((args.length == 1) && args[0].equalsIgnoreCase("backup")) {
+
+            // create a database-backup
+            this.adminService.createBackup(player);
+
+        } else if ((args.length == 2) && args[0].equalsIgnoreCase("restore")) {
+
+            // restore the database from a backup
+            this.adminService.restoreBackup(player, args[1]);
+
         }
 
 
     }
 
+    @EventHandler
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        // the restore overwrites the tables, players joining meanwhile would write into them
+        if (this.adminService.isRestoring())
+            event.disallow(PlayerLoginEvent.Result.KICK_OTHER, "... Database-Restore ...");
+    }
+
 }
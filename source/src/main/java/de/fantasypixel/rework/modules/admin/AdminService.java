@@ -9,6 +9,7 @@ import de.fantasypixel.rework.framework.provider.Service;
 import de.fantasypixel.rework.framework.provider.ServiceProvider;
 import de.fantasypixel.rework.modules.discord.DiscordService;
 import de.fantasypixel.rework.modules.notification.NotificationService;
+import de.fantasypixel.rework.modules.notification.NotificationType;
 import de.fantasypixel.rework.modules.sound.Sound;
 import de.fantasypixel.rework.modules.sound.SoundService;
 import de.fantasypixel.rework.modules.utils.ServerUtils;
@@ -16,6 +17,8 @@ import discord4j.rest.util.Color;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
+import java.nio.file.Files;
+import java.util.Map;
 
 @ServiceProvider
 public class AdminService {
@@ -28,6 +31,11 @@ public class AdminService {
     @Service private DiscordService discordService;
     @Service private ServerUtils serverUtils;
 
+    /**
+     * Whether a database-restore is running, players can't join meanwhile.
+     */
+    private volatile boolean restoring;
+
     /**
      * Performs a reload (without user interaction).
      */
@@ -64,21 +72,106 @@ public class AdminService {
     }
 
     /**
-     * Kicks all players and then clears the whole database.
+     * Creates a backup of the database, then kicks all players and clears the whole database.
+     * The database isn't cleared if the backup failed.
      */
     public void clearDatabase(@Nonnull Player fromPlayer) {
-        this.logger.info("Player {0} issued a database-clear. Proceeding...", fromPlayer.getName());
+        this.logger.info("Player {0} issued a database-clear. Creating a backup first...", fromPlayer.getName());
         this.notificationService.sendChatMessage(fromPlayer, "admin-cleardb-start");
 
-        this.discordService.sendEmbed(
-                FPDiscordChannel.LOGS_ADMIN,
-                Color.RED,
-                "Database-Clear",
-                "Player \"{0}\" issued a database-clear.",
-                fromPlayer.getName()
-        );
+        this.databaseManager.createBackup().thenAccept(result -> this.serverUtils.runTaskSynchronously(() -> {
+            if (result == null) {
+                this.logger.warning("The database-clear issued by player {0} was cancelled as the backup failed.", fromPlayer.getName());
+                if (fromPlayer.isOnline()) {
+                    this.notificationService.sendChatMessage(NotificationType.WARNING, fromPlayer, "admin-cleardb-backup-failed");
+                    this.soundService.playSound(fromPlayer, Sound.WARNING);
+                }
+                return;
+            }
+
+            this.discordService.sendEmbed(
+                    FPDiscordChannel.LOGS_ADMIN,
+                    Color.RED,
+                    "Database-Clear",
+                    "Player \"{0}\" issued a database-clear. The backup {1} was created before.",
+                    fromPlayer.getName(),
+                    result.file().getFileName()
+            );
+
+            this.serverUtils.kickAllPlayers("... Database-Clear ...");
+            this.databaseManager.clearDatabase();
+        }));
+    }
+
+    /**
+     * Creates a backup of the database while the server keeps running and keeps the player up-to-date on the status.
+     */
+    public void createBackup(@Nonnull Player fromPlayer) {
+        this.logger.info("Player {0} issued a database-backup. Proceeding...", fromPlayer.getName());
+        this.notificationService.sendChatMessage(fromPlayer, "admin-backup-start");
+
+        this.databaseManager.createBackup().thenAccept(result -> this.serverUtils.runTaskSynchronously(() -> {
+            if (!fromPlayer.isOnline())
+                return;
 
-        this.serverUtils.kickAllPlayers("... Database-Clear ...");
-        this.databaseManager.clearDatabase();
+            if (result == null) {
+                this.notificationService.sendChatMessage(NotificationType.WARNING, fromPlayer, "admin-backup-failed");
+                this.soundService.playSound(fromPlayer, Sound.WARNING);
+                return;
+            }
+
+            this.notificationService.sendChatMessage(fromPlayer, "admin-backup-end", Map.of("FILE", result.file().getFileName(), "ROWS", result.totalRows()));
+            this.soundService.playSound(fromPlayer, Sound.SUCCESS);
+        }));
+    }
+
+    /**
+     * Kicks all players and restores the database from a backup in the backup-directory. Players can't join until the restore is done,
+     * so no gameplay writes the restore overwrites (or mixes with the backup's rows).
+     * @param fileName the name of the backup-file
+     */
+    public void restoreBackup(@Nonnull Player fromPlayer, @Nonnull String fileName) {
+        var backupDirectory = this.databaseManager.getBackupDirectory();
+        var file = backupDirectory != null ? backupDirectory.resolve(fileName).normalize() : null;
+
+        // only files inside the backup-directory can be restored
+        if (file == null || !file.startsWith(backupDirectory) || !Files.isRegularFile(file)) {
+            this.notificationService.sendChatMessage(NotificationType.WARNING, fromPlayer, "admin-restore-not-found");
+            this.soundService.playSound(fromPlayer, Sound.WARNING);
+            return;
+        }
+
+        var playerName = fromPlayer.getName();
+        this.logger.info("Player {0} issued a database-restore from {1}. Kicking all players and proceeding...", playerName, fileName);
+        this.notificationService.sendChatMessage(fromPlayer, "admin-restore-start");
+
+        this.restoring = true;
+        this.serverUtils.kickAllPlayers("... Database-Restore ...");
+
+        this.databaseManager.restoreDatabase(file).thenAccept(result -> this.serverUtils.runTaskSynchronously(() -> {
+            this.restoring = false;
+
+            if (result == null) {
+                this.logger.warning("The database-restore from {0} issued by player {1} failed.", fileName, playerName);
+                return;
+            }
+
+            this.logger.info("Restored the database from {0}.", fileName);
+            this.discordService.sendEmbed(
+                    FPDiscordChannel.LOGS_ADMIN,
+                    Color.RED,
+                    "Database-Restore",
+                    "Player \"{0}\" restored the database from the backup {1}.",
+                    playerName,
+                    fileName
+            );
+        }));
+    }
+
+    /**
+     * @return whether a database-restore is running
+     */
+    public boolean isRestoring() {
+        return this.restoring;
     }
 }
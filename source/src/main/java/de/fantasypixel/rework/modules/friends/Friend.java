@@ -1,6 +1,9 @@
 package de.fantasypixel.rework.modules.friends;
 
+import de.fantasypixel.rework.framework.database.CompositeIndex;
 import de.fantasypixel.rework.framework.database.Entity;
+import de.fantasypixel.rework.framework.database.Indexed;
+import de.fantasypixel.rework.framework.database.LinkEntity;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,10 +14,12 @@ import javax.annotation.Nullable;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(tableName = "friends")
+@CompositeIndex(columns = {"accountId1", "accountId2"}, unique = true)
+@LinkEntity(left = "accountId1", right = "accountId2")
 public class Friend {
 
     @Nullable private Integer id;
-    private int accountId1;
-    private int accountId2;
+    @Indexed private int accountId1;
+    @Indexed private int accountId2;
 
 }
@@ -5,12 +5,12 @@ import de.fantasypixel.rework.framework.provider.Controller;
 import de.fantasypixel.rework.framework.provider.Service;
 import de.fantasypixel.rework.modules.account.Account;
 import de.fantasypixel.rework.modules.account.AccountService;
+import de.fantasypixel.rework.modules.events.AccountLoginEvent;
 import de.fantasypixel.rework.modules.notification.NotificationService;
 import de.fantasypixel.rework.modules.notification.NotificationType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.HashSet;
@@ -28,6 +28,10 @@ public class FriendController implements Listener {
     public void onFriendsCommand(Player player, String[] args) {
 
         Account account = this.accountService.getAccount(player.getUniqueId());
+        if (account == null) {
+            this.notificationService.sendChatMessage(NotificationType.ERROR, player, "500");
+            return;
+        }
 
         if (args.length == 1 && args[0].equalsIgnoreCase("list")) {
 
@@ -149,15 +153,11 @@ public class FriendController implements Listener {
     }
 
     @EventHandler
-    public void onPlayerJoin(PlayerJoinEvent event) {
+    public void onAccountLogin(AccountLoginEvent event) {
 
         // send a message to all befriended players
         var player = event.getPlayer();
-        var account = this.accountService.getAccount(player.getUniqueId());
-
-        if (account == null)
-            return;
-
+        var account = event.getAccount();
         var friends = this.friendService.getFriendsAccounts(account.getId());
 
         for (Account friend : friends) {
@@ -183,6 +183,9 @@ public class FriendController implements Listener {
 
         // send a message to all befriended players
         var account = this.accountService.getAccount(event.getPlayer().getUniqueId());
+        if (account == null)
+            return;
+
         var friends = this.friendService.getFriendsAccounts(account.getId());
 
         for (Account friend : friends) {
@@ -1,6 +1,9 @@
 package de.fantasypixel.rework.modules.friends;
 
+import de.fantasypixel.rework.framework.database.CompositeIndex;
 import de.fantasypixel.rework.framework.database.Entity;
+import de.fantasypixel.rework.framework.database.Indexed;
+import de.fantasypixel.rework.framework.database.LinkEntity;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,11 +14,13 @@ import javax.annotation.Nullable;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(tableName = "friend_requests")
+@CompositeIndex(columns = {"requestingAccountId", "receivingAccountId"}, unique = true)
+@LinkEntity(left = "requestingAccountId", right = "receivingAccountId")
 public class FriendRequest {
 
     @Nullable
     private Integer id;
-    private int requestingAccountId;
-    private int receivingAccountId;
+    @Indexed private int requestingAccountId;
+    @Indexed private int receivingAccountId;
 
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package de.fantasypixel.rework.modules.friends;
 
 import de.fantasypixel.rework.framework.database.DataRepo;
+import de.fantasypixel.rework.framework.database.DatabaseManager;
 import de.fantasypixel.rework.framework.database.DataRepoProvider;
 import de.fantasypixel.rework.framework.database.Query;
 import de.fantasypixel.rework.framework.log.FPLogger;
@@ -14,16 +15,17 @@ import de.fantasypixel.rework.modules.notification.NotificationType;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @ServiceProvider
 public class FriendService {
 
     @Auto private FPLogger logger;
+    @Auto private DatabaseManager databaseManager;
     @DataRepo private DataRepoProvider<Friend> friendsRepo;
     @DataRepo private DataRepoProvider<FriendRequest> friendRequestsRepo;
     @Service private AccountService accountService;
@@ -35,24 +37,29 @@ public class FriendService {
      * @return all friends (no matter online or offline)
      */
     public Set<Account> getFriendsAccounts(int accountId) {
-        var friends1 = this.friendsRepo.getMultiple(new Query("accountId1", accountId));
-        var friends2 = this.friendsRepo.getMultiple(new Query("accountId2", accountId));
-
-        var allFriends = new HashSet<Account>();
+        var friendAccountIds = IntStream.concat(
+                        Arrays.stream(this.friendsRepo.getLinked(accountId)),
+                        Arrays.stream(this.friendsRepo.getLinkedReverse(accountId))
+                )
+                .boxed()
+                .collect(Collectors.toSet());
 
-        allFriends.addAll(
-                friends1.stream()
-                        .map(friend -> this.accountService.getAccount(friend.getAccountId2()))
-                        .collect(Collectors.toSet())
-        );
+        return this.accountService.getAccounts(friendAccountIds);
+    }
 
-        allFriends.addAll(
-                friends2.stream()
-                        .map(friend -> this.accountService.getAccount(friend.getAccountId1()))
-                        .collect(Collectors.toSet())
+    /**
+     * @return a query matching the friend-entry of the two accounts, no matter which one is stored as accountId1
+     */
+    @Nonnull
+    private Query getFriendQuery(int accountId, int otherAccountId) {
+        return Query.anyOf(
+                new Query()
+                        .where("accountId1", accountId)
+                        .where("accountId2", otherAccountId),
+                new Query()
+                        .where("accountId1", otherAccountId)
+                        .where("accountId2", accountId)
         );
-
-        return allFriends;
     }
 
     /**
@@ -62,26 +69,14 @@ public class FriendService {
      * @return whether the two accounts are befriended
      */
     public boolean areAccountsFriends(int accountId1, int accountId2) {
-        var query1 = new Query()
-                .where("accountId1", accountId1)
-                .where("accountId2", accountId2);
-
-        var query2 = new Query()
-                .where("accountId2", accountId2)
-                .where("accountId1", accountId1);
-
-        return this.friendsRepo.exists(query1) || this.friendsRepo.exists(query2);
+        return this.friendsRepo.existsLink(accountId1, accountId2) || this.friendsRepo.existsLink(accountId2, accountId1);
     }
 
     /**
      * Checks whether a friend request exists from account A to B.
      */
     public boolean existsFriendRequest(int requestingAccountId, int receivingAccountId) {
-        return this.friendRequestsRepo.exists(
-                new Query()
-                        .where("requestingAccountId", requestingAccountId)
-                        .where("receivingAccountId", receivingAccountId)
-        );
+        return this.friendRequestsRepo.existsLink(requestingAccountId, receivingAccountId);
     }
 
     /**
@@ -100,12 +95,12 @@ public class FriendService {
         if (this.friendRequestsRepo.insert(friendRequest)) {
             this.logger.debug("Send a friend request from {0} to {1}.", accountId, otherAccountId);
 
-            String sendingPlayerName = this.accountService.getAccount(accountId).getName();
+            var sendingAccount = this.accountService.getAccount(accountId);
 
             // send message to receiving player (if they are online)
             Player player = this.accountService.getPlayer(otherAccountId);
-            if (player != null)
-                this.notificationService.sendChatMessage(NotificationType.SUCCESS, player, "friend-request-received", Map.of("PLAYER_NAME", sendingPlayerName));
+            if (player != null && sendingAccount != null)
+                this.notificationService.sendChatMessage(NotificationType.SUCCESS, player, "friend-request-received", Map.of("PLAYER_NAME", sendingAccount.getName()));
 
             return true;
         }
@@ -124,54 +119,60 @@ public class FriendService {
     }
 
     /**
-     * Accepts a friend request.
+     * Accepts a friend request. Deleting the request and creating the friend-entry is done in one transaction.
      * @param accountId the account that received the request
      * @param otherAccountId the account that sent the request
      */
     public void acceptFriendRequest(int accountId, int otherAccountId) {
-
-        // delete friend-request
-        var friendRequest = this.friendRequestsRepo.get(
-                new Query()
-                        .where("requestingAccountId", otherAccountId)
-                        .where("receivingAccountId", accountId)
-        );
-        if (friendRequest == null) {
-            this.logger.warning("Tried to accept the friend request <{0}->{1}>, but none found.", otherAccountId, accountId);
-            return;
-        }
-        this.friendRequestsRepo.delete(friendRequest);
-
-        // check if players are friends
-        if (this.areAccountsFriends(accountId, otherAccountId)) {
-            this.logger.warning("Tried to accept the friend request <{0}->{1}>, but the players are friends already.", otherAccountId, accountId);
-            return;
-        }
-
-        // create friend entry
-        var friend = new Friend(
-                null,
-                accountId,
-                otherAccountId
-        );
-
-        if (this.friendsRepo.insert(friend)) {
+        var friendCreated = new boolean[1];
+
+        var committed = this.databaseManager.inTransaction(transaction -> {
+
+            // delete friend-request
+            var friendRequest = this.friendRequestsRepo.get(
+                    new Query()
+                            .where("requestingAccountId", otherAccountId)
+                            .where("receivingAccountId", accountId)
+            );
+            if (friendRequest == null) {
+                this.logger.warning("Tried to accept the friend request <{0}->{1}>, but none found.", otherAccountId, accountId);
+                return;
+            }
+            this.friendRequestsRepo.delete(friendRequest);
+
+            // check if players are friends
+            if (this.areAccountsFriends(accountId, otherAccountId)) {
+                this.logger.warning("Tried to accept the friend request <{0}->{1}>, but the players are friends already.", otherAccountId, accountId);
+                return;
+            }
+
+            // create friend entry
+            var friend = new Friend(
+                    null,
+                    accountId,
+                    otherAccountId
+            );
+
+            friendCreated[0] = this.friendsRepo.insert(friend);
+        });
+
+        if (committed && friendCreated[0]) {
             this.logger.debug("Created a friend-entry for {0} & {1}.", accountId, otherAccountId);
 
             Player player = this.accountService.getPlayer(accountId);
             Player otherPlayer = this.accountService.getPlayer(otherAccountId);
 
-            String playerName = this.accountService.getAccount(accountId).getName();
-            String otherPlayerName = this.accountService.getAccount(otherAccountId).getName();
+            var account = this.accountService.getAccount(accountId);
+            var otherAccount = this.accountService.getAccount(otherAccountId);
 
-            if (player != null)
-                this.notificationService.sendChatMessage(NotificationType.SUCCESS, player, "friend-request-accepted", Map.of("PLAYER_NAME", otherPlayerName));
+            if (player != null && otherAccount != null)
+                this.notificationService.sendChatMessage(NotificationType.SUCCESS, player, "friend-request-accepted", Map.of("PLAYER_NAME", otherAccount.getName()));
 
-            if (otherPlayer != null)
-                this.notificationService.sendChatMessage(NotificationType.SUCCESS, otherPlayer, "friend-request-accepted", Map.of("PLAYER_NAME", playerName));
+            if (otherPlayer != null && account != null)
+                this.notificationService.sendChatMessage(NotificationType.SUCCESS, otherPlayer, "friend-request-accepted", Map.of("PLAYER_NAME", account.getName()));
         }
-        else
-            this.logger.warning("Couldn't insert friend-entry for {0} & {1}.", accountId, otherAccountId);
+        else if (!committed)
+            this.logger.warning("Couldn't accept the friend request <{0}->{1}>, the changes were rolled back.", otherAccountId, accountId);
     }
 
     /**
@@ -181,23 +182,27 @@ public class FriendService {
      * @param force when set to false and no friend-requests were received, no message will be sent
      */
     public void informPlayerAboutOpenFriendRequests(@Nonnull Player player, @Nonnull Account account, boolean force) {
-        var friendRequests = this.getOpenFriendRequests(account.getId());
+        var requestingAccountIds = this.friendRequestsRepo.getLinkedReverse(account.getId());
 
-        if (!force && friendRequests.isEmpty())
+        if (!force && requestingAccountIds.length == 0)
             return;
 
+        var requestingAccounts = this.accountService.getAccounts(
+                Arrays.stream(requestingAccountIds)
+                        .boxed()
+                        .collect(Collectors.toSet())
+        );
+
         this.notificationService.sendChatMessage(
                 player,
                 "friend-requests",
                 Map.of(
                         "COUNT",
-                        friendRequests.size(),
+                        requestingAccountIds.length,
                         "NAMES",
                         String.join(
                                 ", ",
-                                friendRequests.stream()
-                                        .map(friendRequest -> this.accountService.getAccount(friendRequest.getRequestingAccountId()))
-                                        .filter(Objects::nonNull)
+                                requestingAccounts.stream()
                                         .map(Account::getName)
                                         .toArray(String[]::new)
                         )
@@ -212,17 +217,7 @@ public class FriendService {
      * @return false, if the 2 accounts aren't friends
      */
     public boolean removeFriend(int accountId, int otherAccountId) {
-        var query1 = new Query()
-                .where("accountId1", accountId)
-                .where("accountId2", otherAccountId);
-
-        var query2 = new Query()
-                .where("accountId2", accountId)
-                .where("accountId1", otherAccountId);
-
-        Friend friend = this.friendsRepo.get(query1);
-        if (friend == null)
-            friend = this.friendsRepo.get(query2);
+        Friend friend = this.friendsRepo.get(this.getFriendQuery(accountId, otherAccountId));
 
         if (friend == null) {
             this.logger.debug("Tried to remove friend <{0}->{1}>, but no record found.", accountId, otherAccountId);
@@ -67,7 +67,7 @@ public class LanguageService {
     @Nonnull
     public String getTranslation(@Nonnull Player player, @Nonnull String entryKey, @Nullable Map<String, Object> args) {
         var account = this.accountService.getAccount(player.getUniqueId());
-        return this.getTranslation(account.getId(), entryKey, args);
+        return this.getTranslation(account != null ? account.getId() : null, entryKey, args);
     }
 
     @Nonnull
@@ -93,7 +93,7 @@ public class LanguageService {
     @Nonnull
     public String getTranslation(@Nonnull Player player, @Nonnull String entryKey, @Nullable Object... args) {
         var account = this.accountService.getAccount(player.getUniqueId());
-        return this.getTranslation(account.getId(), entryKey, args);
+        return this.getTranslation(account != null ? account.getId() : null, entryKey, args);
     }
 
     /**
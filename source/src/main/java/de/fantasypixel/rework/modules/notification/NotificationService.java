@@ -73,23 +73,32 @@ public class NotificationService {
     }
 
     public void sendChatMessage(@Nonnull NotificationType type, @Nonnull Player player, @Nonnull String languageKey, @Nullable Object... args) {
-        var accountId = this.accountService.getAccount(player.getUniqueId()).getId();
+        var accountId = this.getAccountId(player);
         this.sendChatMessage(type, player, this.languageService.getTranslation(accountId, languageKey, args));
     }
 
     public void sendChatMessage(@Nonnull NotificationType type, @Nonnull Player player, @Nonnull String languageKey, @Nonnull Map<String, Object> args) {
-        var accountId = this.accountService.getAccount(player.getUniqueId()).getId();
+        var accountId = this.getAccountId(player);
         this.sendChatMessage(type, player, this.languageService.getTranslation(accountId, languageKey, args));
     }
 
     public void sendChatMessage(@Nonnull Player player, @Nonnull String languageKey, @Nullable Object... args) {
-        var accountId = this.accountService.getAccount(player.getUniqueId()).getId();
+        var accountId = this.getAccountId(player);
         this.sendChatMessage(NotificationType.UNKNOWN, player, this.languageService.getTranslation(accountId, languageKey, args));
     }
 
     public void sendChatMessage(@Nonnull Player player, @Nonnull String languageKey, @Nonnull Map<String, Object> args) {
-        var accountId = this.accountService.getAccount(player.getUniqueId()).getId();
+        var accountId = this.getAccountId(player);
         this.sendChatMessage(NotificationType.UNKNOWN, player, this.languageService.getTranslation(accountId, languageKey, args));
     }
 
+    /**
+     * @return the id of the player's account or null if it isn't loaded yet (the account is loaded asynchronously on join), the default language is used then
+     */
+    @Nullable
+    private Integer getAccountId(@Nonnull Player player) {
+        var account = this.accountService.getAccount(player.getUniqueId());
+        return account != null ? account.getId() : null;
+    }
+
 }
@@ -2,7 +2,11 @@ package de.fantasypixel.rework.modules.playercharacter;
 
 import de.fantasypixel.rework.modules.character.Character;
 import de.fantasypixel.rework.modules.character.Characters;
+import de.fantasypixel.rework.framework.database.CompositeIndex;
+import de.fantasypixel.rework.framework.database.CachePolicy;
 import de.fantasypixel.rework.framework.database.Entity;
+import de.fantasypixel.rework.framework.database.Indexed;
+import de.fantasypixel.rework.framework.database.Length;
 import de.fantasypixel.rework.modules.utils.Locatable;
 import lombok.*;
 
@@ -14,13 +18,14 @@ import javax.annotation.Nullable;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Entity(tableName = "characters")
+@Entity(tableName = "characters", cachePolicy = CachePolicy.EAGER)
+@CompositeIndex(columns = {"accountId", "active"})
 public class PlayerCharacter extends Locatable {
 
     @Nullable private Integer id;
-    private int accountId;
-    private String name;
-    private String locWorld;
+    @Indexed private int accountId;
+    @Length(50) private String name;
+    @Length(50) private String locWorld;
     private double locX;
     private double locY;
     private double locZ;
@@ -32,7 +37,7 @@ public class PlayerCharacter extends Locatable {
     /**
      * The CHARACTER CLASS's unique identifier
      */
-    private String characterClassIdentifier;
+    @Length(50) private String characterClassIdentifier;
 
     /**
      * @return the CHARACTER CLASS
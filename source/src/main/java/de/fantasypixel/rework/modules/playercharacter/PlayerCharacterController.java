@@ -58,9 +58,11 @@ public class PlayerCharacterController implements Listener {
      * @param firstCharacter true, if the player hasn't got any characters yet. Will automatically set it to active.
      */
     private void openCharacterCreateMenu(Player player, @Nullable Integer accountId, boolean firstCharacter) {
-        Integer finalAccountId = accountId == null
-                ? this.accountService.getAccount(player.getUniqueId()).getId()
-                : accountId;
+        var account = accountId == null ? this.accountService.getAccount(player.getUniqueId()) : null;
+        if (accountId == null && account == null)
+            return;
+
+        Integer finalAccountId = accountId != null ? accountId : account.getId();
 
         player.teleport(this.playerCharacterService.getBlackBoxLocation());
 
@@ -100,7 +102,11 @@ public class PlayerCharacterController implements Listener {
     @Timer(interval = 100, type = TimerManager.TimerType.ASYNC)
     public void characterSaveTimer() {
         for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
+            // the account is loaded asynchronously on join
             var account = this.accountService.getAccount(onlinePlayer.getUniqueId());
+            if (account == null)
+                continue;
+
             var character = this.playerCharacterService.getActivePlayerCharacter(account);
 
             if (character == null)
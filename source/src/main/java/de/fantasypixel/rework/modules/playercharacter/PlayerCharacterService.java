@@ -123,7 +123,7 @@ public class PlayerCharacterService {
         character.setLocPitch(location.getPitch());
         character.setFoodLevel(foodLevel);
 
-        this.playerCharacterRepo.update(character);
-        this.logger.debug("Successfully saved the character {0}.", character.getId());
+        this.playerCharacterRepo.queueUpdate(character);
+        this.logger.debug("Queued the save of character {0}.", character.getId());
     }
 }
@@ -48,8 +48,14 @@ public class SavePointController {
             if (savePointInRange == null || savePointInRange.getId() == null)
                 continue;
 
+            // the account is loaded asynchronously on join
             var account = this.accountService.getAccount(onlinePlayer.getUniqueId());
+            if (account == null)
+                continue;
+
             var character = this.characterService.getActivePlayerCharacter(account);
+            if (character == null)
+                continue;
 
             if (!this.savePointService.isSavePointUnlocked(character.getId(), savePointInRange.getId())) {
                 this.notificationService.sendChatMessage(NotificationType.SUCCESS, onlinePlayer, "savepoint-unlocked", Map.of("NAME", savePointInRange.getName()));
@@ -65,7 +71,13 @@ public class SavePointController {
 
             // open menu
             var account = this.accountService.getAccount(player.getUniqueId());
-            var character = this.characterService.getActivePlayerCharacter(account);
+            var character = account != null ? this.characterService.getActivePlayerCharacter(account) : null;
+            if (character == null) {
+                this.notificationService.sendChatMessage(NotificationType.ERROR, player, "500");
+                this.soundService.playSound(player, Sound.ERROR);
+                return;
+            }
+
             var unlockedSavePoints = this.savePointService.getUnlockedSavePoints(character.getId());
             var lockedSavePoints = this.savePointService.getLockedSavePoints(character.getId());
 
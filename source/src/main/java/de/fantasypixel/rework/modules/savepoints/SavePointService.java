@@ -32,20 +32,6 @@ public class SavePointService {
     @Auto private FPLogger logger;
     @Service private DiscordService discordService;
 
-    @Nullable
-    private SavePoint getSavePoint(@Nullable UnlockedSavePoint unlockedSavePoint) {
-        if (unlockedSavePoint == null)
-            return null;
-
-        for (SavePoint savePoint : this.savePoints.getEntries()) {
-            if (Objects.equals(savePoint.getId(), unlockedSavePoint.getSavePointId())) {
-                return savePoint;
-            }
-        }
-
-        return null;
-    }
-
     @Nullable
     public SavePoint getSavePointInRange(@Nonnull Location location) {
         for (SavePoint savePoint : this.savePoints.getEntries()) {
@@ -57,43 +43,38 @@ public class SavePointService {
         return null;
     }
 
+    /**
+     * @return the ids of the save-points the character has unlocked, read from the repository's link-store
+     */
+    @Nonnull
+    private Set<Integer> getUnlockedSavePointIds(int characterId) {
+        return Arrays.stream(this.dataRepo.getLinked(characterId))
+                .boxed()
+                .collect(Collectors.toSet());
+    }
+
     @Nonnull
     public Set<SavePoint> getUnlockedSavePoints(int characterId) {
-        return this.dataRepo.getMultiple(new Query("characterId", characterId))
+        var unlockedSavePointIds = this.getUnlockedSavePointIds(characterId);
+
+        return this.savePoints.getEntries()
                 .stream()
-                .map(this::getSavePoint)
-                .filter(Objects::nonNull)
+                .filter(savePoint -> unlockedSavePointIds.contains(savePoint.getId()))
                 .collect(Collectors.toSet());
     }
 
     @Nonnull
     public Set<SavePoint> getLockedSavePoints(int characterId) {
-        var unlockedSavePoints = this.getUnlockedSavePoints(characterId);
-        var result = new HashSet<SavePoint>();
-
-        for (SavePoint savePoint : this.savePoints.getEntries()) {
-            var found = false;
-
-            for (SavePoint unlockedSavePoint : unlockedSavePoints) {
-                if (Objects.equals(savePoint.getId(), unlockedSavePoint.getId())) {
-                    found = true;
-                    break;
-                }
-            }
+        var unlockedSavePointIds = this.getUnlockedSavePointIds(characterId);
 
-            if (!found)
-                result.add(savePoint);
-        }
-
-        return result;
+        return this.savePoints.getEntries()
+                .stream()
+                .filter(savePoint -> !unlockedSavePointIds.contains(savePoint.getId()))
+                .collect(Collectors.toSet());
     }
 
     public boolean isSavePointUnlocked(int characterId, int savePointId) {
-        return this.dataRepo.exists(
-                new Query()
-                        .where("characterId", characterId)
-                        .where("savePointId", savePointId)
-        );
+        return this.dataRepo.existsLink(characterId, savePointId);
     }
 
     public void unlockSavePoint(int characterId, int savePointId) {
@@ -179,15 +160,16 @@ public class SavePointService {
                 characterId
         );
 
-        var allSavePointIds = this.savePoints.getEntries()
+        var unlockedSavePointIds = this.getUnlockedSavePointIds(characterId);
+        var newUnlockedSavePoints = this.savePoints.getEntries()
                 .stream()
                 .map(SavePoint::getId)
-                .collect(Collectors.toSet());
+                .filter(savePointId -> !unlockedSavePointIds.contains(savePointId))
+                .map(savePointId -> new UnlockedSavePoint(null, characterId, savePointId))
+                .toList();
 
-        allSavePointIds.forEach(savePointId -> {
-            if (!this.isSavePointUnlocked(characterId, savePointId))
-                this.unlockSavePoint(characterId, savePointId);
-        });
+        if (!this.dataRepo.insertAll(newUnlockedSavePoints))
+            this.logger.warning("Couldn't unlock all save-points for character {0}.", characterId);
     }
 
     /**
@@ -1,6 +1,9 @@
 package de.fantasypixel.rework.modules.savepoints;
 
+import de.fantasypixel.rework.framework.database.CompositeIndex;
 import de.fantasypixel.rework.framework.database.Entity;
+import de.fantasypixel.rework.framework.database.Indexed;
+import de.fantasypixel.rework.framework.database.LinkEntity;
 import lombok.*;
 
 import javax.annotation.Nullable;
@@ -11,10 +14,12 @@ import javax.annotation.Nullable;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(tableName = "save_points")
+@CompositeIndex(columns = {"characterId", "savePointId"}, unique = true)
+@LinkEntity(left = "characterId", right = "savePointId")
 public class UnlockedSavePoint {
 
     @Nullable private Integer id;
-    private int characterId;
+    @Indexed private int characterId;
     private int savePointId;
 
 }
@@ -232,7 +232,14 @@ public class ShopService {
         this.logger.debug("Player {0} tries to {1} the item {2} for {3}.", player.getName(), shopMenuType, item.getIdentifier(), itemPrice);
 
         var itemIdentifier = item.getIdentifier();
-        var accountId = this.accountService.getAccount(player.getUniqueId()).getId();
+        var account = this.accountService.getAccount(player.getUniqueId());
+        if (account == null) {
+            this.notificationService.sendChatMessage(NotificationType.ERROR, player, "500");
+            this.soundService.playSound(player, Sound.ERROR);
+            return;
+        }
+
+        var accountId = account.getId();
 
         if (shopMenuType == ShopMenuType.SELL) {
             var hasSellItems = this.itemService.hasItemAmount(player, itemIdentifier, 1);
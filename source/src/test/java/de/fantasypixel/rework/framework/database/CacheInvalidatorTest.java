@@ -0,0 +1,178 @@
+package de.fantasypixel.rework.framework.database;
+
+import de.fantasypixel.rework.FPRework;
+import de.fantasypixel.rework.framework.log.FPLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sun.reflect.ReflectionFactory;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes (each with its own pool, sqlite-writer, change-log transport, invalidator and repository) sharing one SQLite file,
+ * like two plugin-instances sharing a database.
+ */
+class CacheInvalidatorTest {
+
+    @Entity(tableName = "test_entities", cachePolicy = CachePolicy.EAGER)
+    static class TestEntity {
+
+        private Integer id;
+        private String name;
+
+        TestEntity() {}
+
+        TestEntity(String name) {
+            this.name = name;
+        }
+
+    }
+
+    private record Node(ConnectionPool pool, SqliteWriter writer, CacheInvalidator invalidator, DatabaseExecutor executor, DataRepoProvider<TestEntity> repo) {
+
+        private void close() {
+            this.invalidator.close();
+            this.writer.close();
+            this.executor.shutdown();
+            this.pool.close();
+        }
+
+    }
+
+    @TempDir
+    Path directory;
+
+    private FPRework plugin;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.plugin = createPlugin();
+        this.nodeA = this.createNode("A");
+        this.nodeB = this.createNode("B");
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.nodeA.close();
+        this.nodeB.close();
+    }
+
+    @Test
+    void insertIsVisibleOnTheOtherNodeAfterPoll() {
+        assertTrue(this.nodeA.repo().insert(new TestEntity("x")));
+
+        // the complete cache of B answers the miss without asking the database
+        assertNull(this.nodeB.repo().get(new Query("name", "x")));
+
+        this.poll();
+        assertNotNull(this.nodeB.repo().get(new Query("name", "x")));
+    }
+
+    @Test
+    void updateRefreshesTheOtherNodesCache() {
+        var entity = new TestEntity("x");
+        this.nodeA.repo().insert(entity);
+        this.poll();
+        assertNotNull(this.nodeB.repo().get(new Query("name", "x")));
+
+        entity.name = "y";
+        assertTrue(this.nodeA.repo().update(entity));
+        this.poll();
+
+        assertNull(this.nodeB.repo().get(new Query("name", "x")));
+        assertNotNull(this.nodeB.repo().get(new Query("name", "y")));
+    }
+
+    @Test
+    void deleteIsRemovedFromTheOtherNodesCache() {
+        this.nodeA.repo().insert(new TestEntity("x"));
+        this.poll();
+
+        assertTrue(this.nodeB.repo().delete(this.nodeB.repo().get(new Query("name", "x"))));
+        this.poll();
+
+        assertNull(this.nodeA.repo().get(new Query("name", "x")));
+        assertEquals(0, this.nodeA.repo().getEntryCount());
+    }
+
+    @Test
+    void clearDropsTheOtherNodesCache() {
+        this.nodeA.repo().insert(new TestEntity("x"));
+        this.poll();
+
+        this.nodeB.repo().clear();
+        this.nodeB.repo().insert(new TestEntity("y"));
+        this.poll();
+
+        assertNull(this.nodeA.repo().get(new Query("name", "x")));
+        assertNotNull(this.nodeA.repo().get(new Query("name", "y")));
+        assertEquals(1, this.nodeA.repo().getEntryCount());
+    }
+
+    @Test
+    void ownChangesAreNotReceived() throws Exception {
+        var transport = new ChangeLogTransport(this.plugin, this.nodeA.pool(), this.nodeA.writer(), this.createConfig("A"));
+
+        transport.send(List.of(new InvalidationTransport.Invalidation("test_entities", 1)));
+        assertTrue(transport.receive().isEmpty());
+        transport.close();
+    }
+
+    /**
+     * Sends the changes of both nodes, then lets both apply the changes of the other.
+     */
+    private void poll() {
+        this.nodeA.invalidator().poll();
+        this.nodeB.invalidator().poll();
+        this.nodeA.invalidator().poll();
+    }
+
+    private Node createNode(String nodeId) throws Exception {
+        var config = this.createConfig(nodeId);
+        var pool = new ConnectionPool(this.plugin, config);
+        var writer = new SqliteWriter(this.plugin, config);
+        var invalidator = new CacheInvalidator(this.plugin, new ChangeLogTransport(this.plugin, pool, writer, config));
+        var executor = new DatabaseExecutor(this.plugin, config);
+        var transactionManager = new TransactionManager(this.plugin, pool);
+        var context = new DatabaseContext(this.plugin, config, pool, executor, new DatabaseMetrics(this.plugin, 0), transactionManager, new EntityChangePublisher(this.plugin), invalidator, null, writer);
+
+        new SchemaMigrator(context).migrate(List.of(TestEntity.class));
+        return new Node(pool, writer, invalidator, executor, new DataRepoProvider<>(TestEntity.class, context));
+    }
+
+    private DatabaseConfig createConfig(String nodeId) {
+        return new DatabaseConfig(
+                DatabaseType.SQLITE, "", "", "", "", this.directory.resolve("test.db").toString(),
+                2, 5000, 30000,     // pool: size, timeout, validation-interval
+                100, 100,           // write-behind: interval, batch-size
+                1, 100,             // async: threads, queue-size
+                5000, 100,          // negative-cache: ttl, size
+                0,                  // slow-query-threshold
+                1, nodeId,          // invalidation: interval, node-id
+                List.of(), 0,       // read-replicas, pin-duration
+                "NORMAL", 2000, 0, 100
+        );
+    }
+
+    /**
+     * Creates the plugin without running the constructor of {@link org.bukkit.plugin.java.JavaPlugin}, which requires the plugin-classloader of a server.
+     * Only the logger is set, the database-classes don't use anything else.
+     */
+    private static FPRework createPlugin() throws Exception {
+        var constructor = ReflectionFactory.getReflectionFactory().newConstructorForSerialization(FPRework.class, Object.class.getDeclaredConstructor());
+        var plugin = (FPRework) constructor.newInstance();
+
+        var loggerField = FPRework.class.getDeclaredField("fpLogger");
+        loggerField.setAccessible(true);
+        loggerField.set(plugin, new FPLogger());
+        return plugin;
+    }
+
+}
@@ -7,14 +7,17 @@ CREATE TABLE `accounts` (
   `playerUuid` varchar(36) NOT NULL,
   `name` varchar(50) NOT NULL,
   `password` varchar(200) DEFAULT NULL,
-  `lastLogin` varchar(19) DEFAULT NULL
+  `lastLogin` varchar(19) DEFAULT NULL,
+  UNIQUE KEY `uq_accounts` (`playerUuid`),
+  KEY `idx_accounts_name` (`name`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE `account_options` (
   `id` int(11) NOT NULL PRIMARY KEY AUTO_INCREMENT,
   `accountId` int(11) NOT NULL,
   `languageKey` varchar(3) NOT NULL,
-  `buildMode` tinyint(1) NOT NULL
+  `buildMode` tinyint(1) NOT NULL,
+  UNIQUE KEY `uq_account_options` (`accountId`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE `characters` (
@@ -29,25 +32,31 @@ CREATE TABLE `characters` (
   `locPitch` float NOT NULL,
   `active` tinyint(1) NOT NULL,
   `foodLevel` int(11) NOT NULL,
-  `characterClassIdentifier` varchar(50) NOT NULL
+  `characterClassIdentifier` varchar(50) NOT NULL,
+  KEY `idx_characters_accountId_active` (`accountId`, `active`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE `save_points` (
   `id` int(11) NOT NULL PRIMARY KEY AUTO_INCREMENT,
   `characterId` int(11) NOT NULL,
-  `savePointId` int(11) NOT NULL
+  `savePointId` int(11) NOT NULL,
+  UNIQUE KEY `uq_save_points` (`characterId`, `savePointId`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE `friends` (
   `id` int(11) NOT NULL PRIMARY KEY AUTO_INCREMENT,
   `accountId1` int(11) NOT NULL,
-  `accountId2` int(11) NOT NULL
+  `accountId2` int(11) NOT NULL,
+  UNIQUE KEY `uq_friends` (`accountId1`, `accountId2`),
+  KEY `idx_friends_accountId2` (`accountId2`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE `friend_requests` (
   `id` int(11) NOT NULL PRIMARY KEY AUTO_INCREMENT,
   `requestingAccountId` int(11) NOT NULL,
-  `receivingAccountId` int(11) NOT NULL
+  `receivingAccountId` int(11) NOT NULL,
+  UNIQUE KEY `uq_friend_requests` (`requestingAccountId`, `receivingAccountId`),
+  KEY `idx_friend_requests_receivingAccountId` (`receivingAccountId`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 COMMIT;
@@ -5,14 +5,16 @@ CREATE TABLE accounts (
   "playerUuid" varchar(36) NOT NULL,
   "name" varchar(50) NOT NULL,
   "password" varchar(200) DEFAULT NULL,
-  "lastLogin" varchar(19) DEFAULT NULL
+  "lastLogin" varchar(19) DEFAULT NULL,
+  UNIQUE ("playerUuid")
 );
 
 CREATE TABLE account_options (
   "id" int NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
   "accountId" int NOT NULL,
   "languageKey" varchar(3) NOT NULL,
-  "buildMode" boolean NOT NULL
+  "buildMode" boolean NOT NULL,
+  UNIQUE ("accountId")
 );
 
 CREATE TABLE characters (
@@ -33,19 +35,27 @@ CREATE TABLE characters (
 CREATE TABLE save_points (
   "id" int NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
   "characterId" int NOT NULL,
-  "savePointId" int NOT NULL
+  "savePointId" int NOT NULL,
+  UNIQUE ("characterId", "savePointId")
 );
 
 CREATE TABLE friends (
   "id" int NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
   "accountId1" int NOT NULL,
-  "accountId2" int NOT NULL
+  "accountId2" int NOT NULL,
+  UNIQUE ("accountId1", "accountId2")
 );
 
 CREATE TABLE friend_requests (
   "id" int NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
   "requestingAccountId" int NOT NULL,
-  "receivingAccountId" int NOT NULL
+  "receivingAccountId" int NOT NULL,
+  UNIQUE ("requestingAccountId", "receivingAccountId")
 );
 
+CREATE INDEX idx_accounts_name ON accounts ("name");
+CREATE INDEX idx_characters_accountId_active ON characters ("accountId", "active");
+CREATE INDEX idx_friends_accountId2 ON friends ("accountId2");
+CREATE INDEX idx_friend_requests_receivingAccountId ON friend_requests ("receivingAccountId");
+
 COMMIT;
@@ -3,14 +3,16 @@ CREATE TABLE accounts (
   playerUuid varchar(36) NOT NULL,
   name varchar(50) NOT NULL,
   password varchar(200) DEFAULT NULL,
-  lastLogin varchar(19) DEFAULT NULL
+  lastLogin varchar(19) DEFAULT NULL,
+  UNIQUE (playerUuid)
 );
 
 CREATE TABLE account_options (
   id INTEGER PRIMARY KEY,
   accountId INTEGER NOT NULL,
   languageKey varchar(3) NOT NULL,
-  buildMode tinyint(1) NOT NULL
+  buildMode tinyint(1) NOT NULL,
+  UNIQUE (accountId)
 );
 
 CREATE TABLE characters (
@@ -31,17 +33,25 @@ CREATE TABLE characters (
 CREATE TABLE save_points (
   id INTEGER PRIMARY KEY,
   characterId INTEGER NOT NULL,
-  savePointId INTEGER NOT NULL
+  savePointId INTEGER NOT NULL,
+  UNIQUE (characterId, savePointId)
 );
 
 CREATE TABLE friends (
   id INTEGER PRIMARY KEY,
   accountId1 INTEGER NOT NULL,
-  accountId2 INTEGER NOT NULL
+  accountId2 INTEGER NOT NULL,
+  UNIQUE (accountId1, accountId2)
 );
 
 CREATE TABLE friend_requests (
   id INTEGER PRIMARY KEY,
   requestingAccountId INTEGER NOT NULL,
-  receivingAccountId INTEGER NOT NULL
+  receivingAccountId INTEGER NOT NULL,
+  UNIQUE (requestingAccountId, receivingAccountId)
 );
+
+CREATE INDEX idx_accounts_name ON accounts (name);
+CREATE INDEX idx_characters_accountId_active ON characters (accountId, active);
+CREATE INDEX idx_friends_accountId2 ON friends (accountId2);
+CREATE INDEX idx_friend_requests_receivingAccountId ON friend_requests (receivingAccountId);